@@ -0,0 +1,82 @@
+package org.pac4j.lagom.benchmarks;
+
+import akka.NotUsed;
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import com.lightbend.lagom.javadsl.server.ServerServiceCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.authorization.authorizer.IsAuthenticatedAuthorizer;
+import org.pac4j.core.authorization.authorizer.IsFullyAuthenticatedAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAllPermissionsAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAllRolesAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAnyPermissionAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAnyRoleAuthorizer;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.pac4j.core.context.HttpConstants.AUTHORIZATION_HEADER;
+import static org.pac4j.lagom.benchmarks.BenchmarkService.invoke;
+
+/**
+ * Cost of {@code SecuredService.authorize} with built-in authorizers of pac4j (authenticated by {@code HeaderClient}).
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorizerBenchmark {
+
+    @Param({"isAuthenticated", "isFullyAuthenticated", "requireAnyRole", "requireAllRoles", "requireAnyPermission", "requireAllPermissions"})
+    private String authorizer;
+
+    private ServerServiceCall<NotUsed, String> authorize;
+
+    private RequestHeader request;
+
+    @Setup
+    public void setup() {
+        BenchmarkService service = new BenchmarkService();
+        authorize = service.authorize(authorizer(authorizer), BenchmarkService::profileId);
+        request = RequestHeader.DEFAULT.withHeader(AUTHORIZATION_HEADER, "Alice");
+    }
+
+    @Benchmark
+    public String authorize() {
+        return invoke(authorize, request);
+    }
+
+    private static Authorizer<CommonProfile> authorizer(String name) {
+        switch (name) {
+            case "isAuthenticated":
+                return IsAuthenticatedAuthorizer.isAuthenticated();
+            case "isFullyAuthenticated":
+                return IsFullyAuthenticatedAuthorizer.isFullyAuthenticated();
+            case "requireAnyRole":
+                return RequireAnyRoleAuthorizer.requireAnyRole("admin", "user");
+            case "requireAllRoles":
+                return RequireAllRolesAuthorizer.requireAllRoles("user");
+            case "requireAnyPermission":
+                return RequireAnyPermissionAuthorizer.requireAnyPermission("write", "read");
+            case "requireAllPermissions":
+                return RequireAllPermissionsAuthorizer.requireAllPermissions("read");
+            default:
+                throw new IllegalArgumentException("Unknown authorizer " + name);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.pac4j.lagom.benchmarks;
+
+import akka.NotUsed;
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import com.lightbend.lagom.javadsl.server.ServerServiceCall;
+import org.pac4j.core.config.Config;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.http.client.direct.CookieClient;
+import org.pac4j.http.client.direct.HeaderClient;
+import org.pac4j.lagom.javadsl.SecuredService;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.pac4j.core.context.HttpConstants.AUTHORIZATION_HEADER;
+
+/**
+ * Secured service with the same clients as functional tests of the library.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class BenchmarkService implements SecuredService {
+
+    static final String HEADER_CLIENT = "simple_header";
+
+    static final String COOKIE_CLIENT = "cookie_header";
+
+    static final String COOKIE_NAME = "auth";
+
+    private final Config securityConfig;
+
+    BenchmarkService() {
+        HeaderClient headerClient = new HeaderClient(AUTHORIZATION_HEADER, (credentials, webContext) ->
+            credentials.setUserProfile(profile(((TokenCredentials) credentials).getToken()))
+        );
+        headerClient.setName(HEADER_CLIENT);
+        CookieClient cookieClient = new CookieClient(COOKIE_NAME, (credentials, webContext) ->
+            credentials.setUserProfile(profile(((TokenCredentials) credentials).getToken()))
+        );
+        cookieClient.setName(COOKIE_CLIENT);
+        securityConfig = new Config(headerClient, cookieClient);
+        securityConfig.getClients().setDefaultSecurityClients(HEADER_CLIENT);
+    }
+
+    @Override
+    public Config getSecurityConfig() {
+        return securityConfig;
+    }
+
+    /**
+     * Invoke service call synchronously.
+     *
+     * @param serviceCall Service call
+     * @param requestHeader Request header
+     * @return Response
+     */
+    static String invoke(ServerServiceCall<NotUsed, String> serviceCall, RequestHeader requestHeader) {
+        return serviceCall.invokeWithHeaders(requestHeader, NotUsed.getInstance()).toCompletableFuture().join().second();
+    }
+
+    /**
+     * @param profile Profile
+     * @return Service call answering with ID of profile
+     */
+    static ServerServiceCall<NotUsed, String> profileId(CommonProfile profile) {
+        return request -> CompletableFuture.completedFuture(profile.getId());
+    }
+
+    private static CommonProfile profile(String id) {
+        CommonProfile profile = new CommonProfile();
+        profile.setId(id);
+        profile.addRole("user");
+        profile.addPermission("read");
+        return profile;
+    }
+}
@@ -0,0 +1,81 @@
+package org.pac4j.lagom.benchmarks;
+
+import akka.NotUsed;
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import com.lightbend.lagom.javadsl.server.ServerServiceCall;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.pac4j.core.context.HttpConstants.AUTHORIZATION_HEADER;
+import static org.pac4j.lagom.benchmarks.BenchmarkService.COOKIE_CLIENT;
+import static org.pac4j.lagom.benchmarks.BenchmarkService.COOKIE_NAME;
+import static org.pac4j.lagom.benchmarks.BenchmarkService.invoke;
+
+/**
+ * Cost of {@code SecuredService.authenticate} with {@code HeaderClient} and {@code CookieClient}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("PMD.TooManyStaticImports")
+public class ClientBenchmark {
+
+    private ServerServiceCall<NotUsed, String> headerAuthenticate;
+
+    private ServerServiceCall<NotUsed, String> cookieAuthenticate;
+
+    private RequestHeader headerRequest;
+
+    private RequestHeader cookieRequest;
+
+    private RequestHeader anonymousRequest;
+
+    @Setup
+    public void setup() {
+        BenchmarkService service = new BenchmarkService();
+        headerAuthenticate = service.authenticate(BenchmarkService::profileId);
+        cookieAuthenticate = service.authenticate(COOKIE_CLIENT, BenchmarkService::profileId);
+        headerRequest = RequestHeader.DEFAULT.withHeader(AUTHORIZATION_HEADER, "Alice");
+        // Browser-like request with several cookies
+        cookieRequest = RequestHeader.DEFAULT.withHeader(
+            "Cookie", "_ga=GA1.2.1234567890.1234567890; lang=en; theme=dark; " + COOKIE_NAME + "=Alice; csrf=0123456789abcdef"
+        );
+        anonymousRequest = RequestHeader.DEFAULT;
+    }
+
+    @Benchmark
+    public String headerClient() {
+        return invoke(headerAuthenticate, headerRequest);
+    }
+
+    @Benchmark
+    public String cookieClient() {
+        return invoke(cookieAuthenticate, cookieRequest);
+    }
+
+    @Benchmark
+    public String headerClientAnonymous() {
+        return invoke(headerAuthenticate, anonymousRequest);
+    }
+
+    @Benchmark
+    public String cookieClientAnonymous() {
+        return invoke(cookieAuthenticate, anonymousRequest);
+    }
+}
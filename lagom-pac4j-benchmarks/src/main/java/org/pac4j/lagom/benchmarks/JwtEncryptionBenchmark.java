@@ -0,0 +1,71 @@
+package org.pac4j.lagom.benchmarks;
+
+import com.nimbusds.jose.JOSEException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.jwt.JwtAuthenticatorHelper;
+import org.pac4j.lagom.jwt.JwtGeneratorHelper;
+import org.pac4j.lagom.jwt.LagomJwtAuthenticator;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decryption of encrypted JWT (keys of {@code ApplicationConfGenerator}, verified token cache is disabled).
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtEncryptionBenchmark {
+
+    @Param({"dir", "RSA-OAEP-256", "ECDH-ES+A256KW"})
+    private String algorithm;
+
+    private LagomJwtAuthenticator authenticator;
+
+    private String token;
+
+    @Setup
+    public void setup() throws ParseException, JOSEException, MalformedURLException {
+        Config config = ConfigFactory.load().getConfig("pac4j.lagom.jwt");
+        authenticator = JwtAuthenticatorHelper.parseLagom(config.getConfig("authenticator"));
+        token = JwtGeneratorHelper.parse(config.getConfig("generator.encrypt." + generator(algorithm))).generate(JwtTokens.claims());
+    }
+
+    @Benchmark
+    public CommonProfile decrypt() {
+        return authenticator.validateToken(token);
+    }
+
+    private static String generator(String algorithm) {
+        switch (algorithm) {
+            case "dir":
+                return "oct";
+            case "RSA-OAEP-256":
+                return "rsa";
+            case "ECDH-ES+A256KW":
+                return "ec";
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + algorithm);
+        }
+    }
+}
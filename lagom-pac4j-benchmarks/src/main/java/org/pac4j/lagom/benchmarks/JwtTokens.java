@@ -0,0 +1,33 @@
+package org.pac4j.lagom.benchmarks;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Claims of tokens for benchmarks.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class JwtTokens {
+
+    /**
+     * @return Claims of Alice (same as in functional tests), valid for one hour
+     */
+    static Map<String, Object> claims() {
+        return new JWTClaimsSet.Builder()
+            .issuer("https://pac4j.org")
+            .subject("Alice")
+            .issueTime(new Date())
+            .expirationTime(new Date(System.currentTimeMillis() + 3_600_000L))
+            .jwtID(UUID.randomUUID().toString())
+            .build()
+            .getClaims();
+    }
+
+    private JwtTokens() {
+    }
+}
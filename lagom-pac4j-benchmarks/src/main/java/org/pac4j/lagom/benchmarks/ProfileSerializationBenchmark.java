@@ -0,0 +1,106 @@
+package org.pac4j.lagom.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.nimbusds.jose.JOSEException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.ProfileHelper;
+import org.pac4j.lagom.jwt.JwtAuthenticatorHelper;
+import org.pac4j.lagom.jwt.JwtGeneratorHelper;
+import org.pac4j.lagom.serialization.ProfileCodec;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serialization of a profile created from JWT by {@link ProfileCodec} in comparison with Jackson JSON and CBOR
+ * (profile is written as a map of its fields, as it would be in a Jackson-serialized command or event).
+ * Sizes of serialized profile are printed on setup.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProfileSerializationBenchmark {
+
+    @Param({"codec", "json", "cbor"})
+    private String format;
+
+    private CommonProfile profile;
+
+    private ObjectMapper mapper;
+
+    private byte[] bytes;
+
+    @Setup
+    public void setup() throws ParseException, JOSEException, MalformedURLException, IOException {
+        Config config = ConfigFactory.load().getConfig("pac4j.lagom.jwt");
+        profile = JwtAuthenticatorHelper.parse(config.getConfig("authenticator"))
+            .validateToken(JwtGeneratorHelper.parse(config.getConfig("generator.sign.oct")).generate(JwtTokens.claims()));
+        profile.addRoles(Arrays.asList("manager", "user"));
+        profile.addPermission("orders:read");
+        mapper = "cbor".equals(format) ? new ObjectMapper(new CBORFactory()) : new ObjectMapper();
+        bytes = serialize();
+        System.out.printf("%nSize of profile in %s: %d bytes%n", format, bytes.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return "codec".equals(format) ? ProfileCodec.encode(profile) : mapper.writeValueAsBytes(fields(profile));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public CommonProfile deserialize() throws IOException {
+        return "codec".equals(format) ? ProfileCodec.decode(bytes) : profile(mapper.readValue(bytes, Map.class));
+    }
+
+    private static Map<String, Object> fields(CommonProfile profile) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("class", profile.getClass().getName());
+        fields.put("id", profile.getId());
+        fields.put("clientName", profile.getClientName());
+        fields.put("remembered", profile.isRemembered());
+        fields.put("roles", profile.getRoles());
+        fields.put("permissions", profile.getPermissions());
+        fields.put("attributes", profile.getAttributes());
+        fields.put("authenticationAttributes", profile.getAuthenticationAttributes());
+        return fields;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CommonProfile profile(Map<String, Object> fields) {
+        CommonProfile profile = ProfileHelper.buildUserProfileByClassCompleteName((String) fields.get("class"));
+        profile.build(fields.get("id"), (Map<String, Object>) fields.get("attributes"),
+            (Map<String, Object>) fields.get("authenticationAttributes"));
+        profile.setClientName((String) fields.get("clientName"));
+        profile.setRemembered((Boolean) fields.get("remembered"));
+        profile.addRoles((List<String>) fields.get("roles"));
+        profile.addPermissions((List<String>) fields.get("permissions"));
+        return profile;
+    }
+}
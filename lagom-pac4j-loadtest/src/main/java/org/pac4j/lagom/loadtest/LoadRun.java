@@ -0,0 +1,170 @@
+package org.pac4j.lagom.loadtest;
+
+import akka.NotUsed;
+import com.sun.management.OperatingSystemMXBean;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.pac4j.lagom.loadtest.RequestKind.Request;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Run of one scenario of load test: closed loop of concurrent clients, each sends the next request
+ * (kind is picked by weights of scenario) when the previous one is answered.</p>
+ * <p>Latency of each kind is recorded in nanoseconds into HdrHistogram {@link Recorder}, CPU time of the process
+ * (server and clients, they share the JVM) is divided by the number of answered requests.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class LoadRun {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String name;
+
+    private final Map<RequestKind, List<Request>> requests;
+
+    private final RequestKind[] wheel;
+
+    private final Map<RequestKind, Recorder> recorders = new EnumMap<>(RequestKind.class);
+
+    private final Map<RequestKind, LongAdder> errors = new EnumMap<>(RequestKind.class);
+
+    private final Map<RequestKind, Histogram> histograms = new EnumMap<>(RequestKind.class);
+
+    private long elapsedNanos;
+
+    private long cpuNanos;
+
+    /**
+     * @param name Name of scenario
+     * @param requests Prepared requests by kind
+     * @param weights Weights of kinds of request
+     */
+    LoadRun(String name, Map<RequestKind, List<Request>> requests, Map<RequestKind, Integer> weights) {
+        this.name = name;
+        this.requests = requests;
+        List<RequestKind> wheel = new ArrayList<>();
+        for (Map.Entry<RequestKind, Integer> weight : weights.entrySet()) {
+            if (weight.getValue() <= 0) continue;
+            for (int i = 0; i < weight.getValue(); i++) {
+                wheel.add(weight.getKey());
+            }
+            recorders.put(weight.getKey(), new Recorder(SIGNIFICANT_DIGITS));
+            errors.put(weight.getKey(), new LongAdder());
+        }
+        if (wheel.isEmpty()) throw new IllegalArgumentException("Scenario " + name + " has no requests");
+        this.wheel = wheel.toArray(new RequestKind[0]);
+    }
+
+    /**
+     * Run scenario.
+     *
+     * @param clients Number of concurrent clients
+     * @param duration Duration of run
+     * @param requestTimeout Timeout of a request
+     * @return this run with results
+     * @throws InterruptedException if interrupted while waiting for clients
+     */
+    LoadRun run(int clients, Duration duration, Duration requestTimeout) throws InterruptedException {
+        OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long cpuStart = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        for (int i = 0; i < clients; i++) {
+            executor.execute(() -> loop(deadline, requestTimeout.toNanos()));
+        }
+        executor.shutdown();
+        executor.awaitTermination(duration.plus(requestTimeout).toMillis() + 1_000L, TimeUnit.MILLISECONDS);
+        elapsedNanos = System.nanoTime() - start;
+        cpuNanos = os.getProcessCpuTime() - cpuStart;
+        for (Map.Entry<RequestKind, Recorder> recorder : recorders.entrySet()) {
+            histograms.put(recorder.getKey(), recorder.getValue().getIntervalHistogram());
+        }
+        return this;
+    }
+
+    private void loop(long deadline, long requestTimeoutNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            RequestKind kind = wheel[random.nextInt(wheel.length)];
+            List<Request> prepared = requests.get(kind);
+            Request request = prepared.get(random.nextInt(prepared.size()));
+            long start = System.nanoTime();
+            try {
+                String response = request.call.invoke(NotUsed.getInstance()).toCompletableFuture()
+                    .get(requestTimeoutNanos, TimeUnit.NANOSECONDS);
+                if (request.expected.equals(response)) {
+                    recorders.get(kind).recordValue(System.nanoTime() - start);
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Failed or timed out request is counted as error
+            }
+            errors.get(kind).increment();
+        }
+    }
+
+    /**
+     * @return name of scenario
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return latency histograms (nanoseconds) of answered requests by kind
+     */
+    Map<RequestKind, Histogram> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * @param kind Kind of request
+     * @return number of failed or timed out requests
+     */
+    long getErrors(RequestKind kind) {
+        return errors.get(kind).sum();
+    }
+
+    /**
+     * @return number of answered requests
+     */
+    long getRequests() {
+        long requests = 0;
+        for (Histogram histogram : histograms.values()) {
+            requests += histogram.getTotalCount();
+        }
+        return requests;
+    }
+
+    /**
+     * @return duration of run in nanoseconds
+     */
+    long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return CPU time of the process per answered request in nanoseconds
+     */
+    double getCpuNanosPerRequest() {
+        long requests = getRequests();
+        return requests == 0 ? 0 : (double) cpuNanos / requests;
+    }
+}
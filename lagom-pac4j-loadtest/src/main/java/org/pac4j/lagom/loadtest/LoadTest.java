@@ -0,0 +1,133 @@
+package org.pac4j.lagom.loadtest;
+
+import com.lightbend.lagom.javadsl.testkit.ServiceTest;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.pac4j.lagom.loadtest.RequestKind.Request;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.lightbend.lagom.javadsl.testkit.ServiceTest.defaultSetup;
+
+/**
+ * <p>In-process load test of secured Lagom service.</p>
+ * <p>Service is started by Lagom testkit (real HTTP server on a random port), concurrent clients send
+ * prepared requests (anonymous, cookie, JWT signed by HMAC and RSA, encrypted JWT) for each scenario of
+ * {@code pac4j.lagom.loadtest.scenarios}. Latency percentiles and CPU time per request are printed for
+ * each scenario and kind of request.</p>
+ * <p>Clients share the JVM with the server, so CPU time per request includes the overhead of client:
+ * compare it with the {@code unsecured} scenario to get the cost of security.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class LoadTest {
+
+    private static final String MIX = "mix";
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config settings = ConfigFactory.load().getConfig("pac4j.lagom.loadtest");
+        int clients = settings.getInt("clients");
+        Duration warmup = settings.getDuration("warmup");
+        Duration duration = settings.getDuration("duration");
+        Duration requestTimeout = settings.getDuration("request-timeout");
+        int credentials = settings.getInt("credentials");
+        String output = settings.getString("output");
+
+        Map<RequestKind, Integer> mix = new EnumMap<>(RequestKind.class);
+        for (RequestKind kind : RequestKind.values()) {
+            mix.put(kind, settings.getInt("mix." + kind.label()));
+        }
+
+        ServiceTest.TestServer server = ServiceTest.startServer(defaultSetup().withCluster(false));
+        try {
+            LoadTestService service = server.client(LoadTestService.class);
+            Config keys = LoadTestModule.keys();
+            Map<RequestKind, List<Request>> requests = new EnumMap<>(RequestKind.class);
+            for (RequestKind kind : RequestKind.values()) {
+                requests.put(kind, kind.requests(service, keys, credentials));
+            }
+
+            System.out.printf(Locale.ROOT, "Clients: %d, warmup: %s, duration: %s, credentials: %d%n",
+                clients, warmup, duration, credentials);
+            new LoadRun("warmup", requests, mix).run(clients, warmup, requestTimeout);
+
+            Double baseline = null;
+            System.out.printf(Locale.ROOT, "%-10s %-10s %10s %10s %8s %10s %10s %10s %10s %10s %12s %12s%n",
+                "scenario", "kind", "requests", "req/s", "errors",
+                "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "cpu us/req", "vs unsecured");
+            for (String scenario : settings.getStringList("scenarios")) {
+                LoadRun run = new LoadRun(scenario, requests, weights(scenario, mix)).run(clients, duration, requestTimeout);
+                if (baseline == null && RequestKind.UNSECURED.label().equals(scenario)) {
+                    baseline = run.getCpuNanosPerRequest();
+                }
+                report(run, baseline);
+                if (!output.isEmpty()) {
+                    write(run, new File(output));
+                }
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static Map<RequestKind, Integer> weights(String scenario, Map<RequestKind, Integer> mix) {
+        if (MIX.equals(scenario)) {
+            return mix;
+        }
+        for (RequestKind kind : RequestKind.values()) {
+            if (kind.label().equals(scenario)) {
+                return Collections.singletonMap(kind, 1);
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario " + scenario);
+    }
+
+    private static void report(LoadRun run, Double baseline) {
+        double seconds = run.getElapsedNanos() / 1e9;
+        double cpu = run.getCpuNanosPerRequest() / 1e3;
+        String delta = baseline == null ? "" : String.format(Locale.ROOT, "%+.1f", cpu - baseline / 1e3);
+        for (Map.Entry<RequestKind, Histogram> entry : run.getHistograms().entrySet()) {
+            Histogram histogram = entry.getValue();
+            System.out.printf(Locale.ROOT, "%-10s %-10s %10d %10.0f %8d %10.0f %10.0f %10.0f %10.0f %10.0f %12.1f %12s%n",
+                run.getName(), entry.getKey().label(), histogram.getTotalCount(), histogram.getTotalCount() / seconds,
+                run.getErrors(entry.getKey()),
+                micros(histogram, 50), micros(histogram, 90), micros(histogram, 99), micros(histogram, 99.9),
+                histogram.getMaxValue() / 1e3, cpu, delta);
+        }
+    }
+
+    private static double micros(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e3;
+    }
+
+    private static void write(LoadRun run, File directory) throws FileNotFoundException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalStateException("Unable to create directory " + directory);
+        }
+        HistogramLogWriter writer = new HistogramLogWriter(new File(directory, run.getName() + ".hlog"));
+        try {
+            writer.outputLogFormatVersion();
+            writer.outputLegend();
+            for (Map.Entry<RequestKind, Histogram> entry : run.getHistograms().entrySet()) {
+                Histogram histogram = entry.getValue();
+                histogram.setTag(entry.getKey().label());
+                writer.outputIntervalHistogram(histogram);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+}
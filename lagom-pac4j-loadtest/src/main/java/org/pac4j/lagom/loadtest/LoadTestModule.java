@@ -0,0 +1,72 @@
+package org.pac4j.lagom.loadtest;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.lightbend.lagom.javadsl.server.ServiceGuiceSupport;
+import com.nimbusds.jose.JOSEException;
+import com.typesafe.config.ConfigFactory;
+import org.pac4j.core.config.Config;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.http.client.direct.CookieClient;
+import org.pac4j.http.client.direct.HeaderClient;
+import org.pac4j.lagom.jwt.JwtAuthenticatorHelper;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import javax.inject.Singleton;
+
+import static org.pac4j.core.context.HttpConstants.AUTHORIZATION_HEADER;
+import static org.pac4j.core.context.HttpConstants.BEARER_HEADER_PREFIX;
+
+/**
+ * <p>DI module of Lagom service under load, with the same clients as functional tests of the library.</p>
+ * <p>JWT authenticator is parsed from {@code pac4j.lagom.loadtest.authenticator} of application conf
+ * (e.g. to enable {@code cache} or {@code prevalidation}), with fallback to keys of functional tests.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class LoadTestModule extends AbstractModule implements ServiceGuiceSupport {
+
+    static final String COOKIE_CLIENT = "cookie_header";
+
+    static final String HEADER_JWT_CLIENT = "jwt_header";
+
+    static final String COOKIE_NAME = "auth";
+
+    @Override
+    protected void configure() {
+        bindService(LoadTestService.class, LoadTestServiceImpl.class);
+    }
+
+    @Provides
+    @Singleton
+    protected Config provideConfig(com.typesafe.config.Config configuration) throws ParseException, JOSEException, MalformedURLException {
+        CookieClient cookieClient = new CookieClient(COOKIE_NAME, (credentials, webContext) -> {
+            final CommonProfile profile = new CommonProfile();
+            profile.setId(((TokenCredentials) credentials).getToken());
+            credentials.setUserProfile(profile);
+        });
+        cookieClient.setName(COOKIE_CLIENT);
+
+        HeaderClient headerJwtClient = new HeaderClient();
+        headerJwtClient.setHeaderName(AUTHORIZATION_HEADER);
+        headerJwtClient.setPrefixHeader(BEARER_HEADER_PREFIX);
+        headerJwtClient.setAuthenticator(JwtAuthenticatorHelper.parse(
+            configuration.getConfig("pac4j.lagom.loadtest.authenticator").withFallback(keys().getConfig("authenticator"))
+        ));
+        headerJwtClient.setName(HEADER_JWT_CLIENT);
+
+        return new Config(cookieClient, headerJwtClient);
+    }
+
+    /**
+     * Keys of functional tests (generated by {@code ApplicationConfGenerator}).
+     *
+     * @return Configuration of JWT authenticator and generators
+     */
+    static com.typesafe.config.Config keys() {
+        return ConfigFactory.parseResources("keys/application.conf").resolve().getConfig("pac4j.lagom.jwt");
+    }
+}
@@ -0,0 +1,45 @@
+package org.pac4j.lagom.loadtest;
+
+import akka.NotUsed;
+import com.lightbend.lagom.javadsl.api.Descriptor;
+import com.lightbend.lagom.javadsl.api.Service;
+import com.lightbend.lagom.javadsl.api.ServiceCall;
+import org.pac4j.lagom.javadsl.Pac4jExceptionSerializer;
+
+import static com.lightbend.lagom.javadsl.api.Service.named;
+import static com.lightbend.lagom.javadsl.api.Service.pathCall;
+
+/**
+ * Descriptor of Lagom service under load.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public interface LoadTestService extends Service {
+
+    /**
+     * @return Service call without security (baseline)
+     */
+    ServiceCall<NotUsed, String> unsecured();
+
+    /**
+     * @return Service call authenticated by cookie
+     */
+    ServiceCall<NotUsed, String> cookie();
+
+    /**
+     * @return Service call authenticated by JWT in header
+     */
+    ServiceCall<NotUsed, String> jwt();
+
+    @Override
+    default Descriptor descriptor() {
+        return named("loadtest").withCalls(
+            pathCall("/unsecured", this::unsecured),
+            pathCall("/cookie", this::cookie),
+            pathCall("/jwt", this::jwt)
+        )
+            .withExceptionSerializer(new Pac4jExceptionSerializer())
+            .withAutoAcl(true);
+    }
+}
@@ -0,0 +1,52 @@
+package org.pac4j.lagom.loadtest;
+
+import akka.NotUsed;
+import com.lightbend.lagom.javadsl.api.ServiceCall;
+import org.pac4j.core.config.Config;
+import org.pac4j.lagom.javadsl.SecuredService;
+
+import javax.inject.Inject;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.pac4j.lagom.loadtest.LoadTestModule.COOKIE_CLIENT;
+import static org.pac4j.lagom.loadtest.LoadTestModule.HEADER_JWT_CLIENT;
+
+/**
+ * Implementation of Lagom service under load, answering with ID of profile.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class LoadTestServiceImpl implements LoadTestService, SecuredService {
+
+    private final Config securityConfig;
+
+    @Inject
+    public LoadTestServiceImpl(Config securityConfig) {
+        this.securityConfig = securityConfig;
+    }
+
+    @Override
+    public ServiceCall<NotUsed, String> unsecured() {
+        return request -> completedFuture("unsecured");
+    }
+
+    @Override
+    public ServiceCall<NotUsed, String> cookie() {
+        return authenticate(COOKIE_CLIENT, profile ->
+            request -> completedFuture(profile.getId())
+        );
+    }
+
+    @Override
+    public ServiceCall<NotUsed, String> jwt() {
+        return authenticate(HEADER_JWT_CLIENT, profile ->
+            request -> completedFuture(profile.getId())
+        );
+    }
+
+    @Override
+    public Config getSecurityConfig() {
+        return securityConfig;
+    }
+}
@@ -0,0 +1,114 @@
+package org.pac4j.lagom.loadtest;
+
+import akka.NotUsed;
+import com.google.common.net.HttpHeaders;
+import com.lightbend.lagom.javadsl.api.ServiceCall;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.typesafe.config.Config;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+import org.pac4j.lagom.jwt.JwtGeneratorHelper;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import static org.pac4j.lagom.javadsl.transport.RequestHeaderHelper.authorizationBearer;
+import static org.pac4j.lagom.loadtest.LoadTestModule.COOKIE_NAME;
+
+/**
+ * Kind of request sent by clients of load test.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+enum RequestKind {
+
+    /** Request to service call without security (baseline). */
+    UNSECURED(null),
+    /** Request without credentials to service call authenticated by JWT. */
+    ANONYMOUS(null),
+    /** Request with cookie. */
+    COOKIE(null),
+    /** Request with JWT signed by HMAC. */
+    HS256("generator.sign.oct"),
+    /** Request with JWT signed by RSA. */
+    RS256("generator.sign.rsa"),
+    /** Request with JWT signed by RSA, then encrypted by RSA-OAEP-256 and A128GCM. */
+    JWE("generator.encrypt.rsa");
+
+    private final String generator;
+
+    RequestKind(String generator) {
+        this.generator = generator;
+    }
+
+    /**
+     * @return name of kind in settings and report
+     */
+    String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Prepare requests of this kind with distinct credentials.
+     *
+     * @param service Client of service under load
+     * @param keys Keys of functional tests
+     * @param count Number of distinct credentials
+     * @return Requests
+     * @throws ParseException a parse exception
+     * @throws JOSEException a signing/encryption exception
+     */
+    List<Request> requests(LoadTestService service, Config keys, int count) throws ParseException, JOSEException {
+        List<Request> requests = new ArrayList<>(count);
+        switch (this) {
+            case UNSECURED:
+                requests.add(new Request(service.unsecured(), "unsecured"));
+                break;
+            case ANONYMOUS:
+                requests.add(new Request(service.jwt(), "anonymous"));
+                break;
+            case COOKIE:
+                for (int i = 0; i < count; i++) {
+                    String id = "user-" + i;
+                    requests.add(new Request(
+                        service.cookie().handleRequestHeader(header -> header.withHeader(HttpHeaders.COOKIE, COOKIE_NAME + "=" + id)), id));
+                }
+                break;
+            default:
+                Config conf = keys.getConfig(generator);
+                if (this == JWE) conf = conf.withFallback(keys.getConfig("generator.sign.rsa"));
+                JwtGenerator<CommonProfile> jwtGenerator = JwtGeneratorHelper.parse(conf);
+                for (int i = 0; i < count; i++) {
+                    String id = "user-" + i;
+                    String token = jwtGenerator.generate(new JWTClaimsSet.Builder()
+                        .issuer("https://pac4j.org")
+                        .subject(id)
+                        .issueTime(new Date())
+                        .build()
+                        .getClaims());
+                    requests.add(new Request(service.jwt().handleRequestHeader(authorizationBearer(token)), id));
+                }
+        }
+        return requests;
+    }
+
+    /**
+     * Prepared request with expected response.
+     */
+    static final class Request {
+
+        final ServiceCall<NotUsed, String> call;
+
+        final String expected;
+
+        Request(ServiceCall<NotUsed, String> call, String expected) {
+            this.call = call;
+            this.expected = expected;
+        }
+    }
+}
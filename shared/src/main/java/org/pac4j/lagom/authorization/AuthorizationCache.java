@@ -0,0 +1,231 @@
+package org.pac4j.lagom.authorization;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.typesafe.config.Config;
+import org.pac4j.core.authorization.authorizer.AbstractRequireElementAuthorizer;
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.authorization.authorizer.CheckProfileTypeAuthorizer;
+import org.pac4j.core.authorization.authorizer.IsAnonymousAuthorizer;
+import org.pac4j.core.authorization.authorizer.IsAuthenticatedAuthorizer;
+import org.pac4j.core.authorization.authorizer.IsFullyAuthenticatedAuthorizer;
+import org.pac4j.core.authorization.authorizer.IsRememberedAuthorizer;
+import org.pac4j.core.authorization.authorizer.ProfileAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAllPermissionsAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAllRolesAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAnyPermissionAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAnyRoleAuthorizer;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * <p>Bounded cache of authorization decisions of {@code SecuredService}, disabled by default.</p>
+ * <p>Decision is keyed by profile (type, ID and copies of roles, permissions and attributes), authorizer
+ * and context key of {@link CacheableAuthorizer}, and is dropped after {@code ttl}. Authorizers are usually built
+ * on each request (e.g. {@code requireAnyRole("admin")}), so authorizer is identified by the name of
+ * {@link CacheableAuthorizer}, or by the class and the elements of built-in pac4j authorizers; other authorizers
+ * are identified by instance and should be kept in a field to benefit from the cache. Only decisions of
+ * {@link CacheableAuthorizer} and {@link ProfileAuthorizer} (built-in role, permission, attribute and authentication checks)
+ * are cached, other authorizers (CSRF, CORS, IP, HTTP method and unknown ones) are called on each request.</p>
+ * <p>Failed checks (exceptions) are not cached. Decisions may be dropped explicitly, e.g. on change of permissions.</p>
+ * <p>Requires {@code com.github.ben-manes.caffeine:caffeine} in classpath.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class AuthorizationCache {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+
+    private static final Set<String> ELEMENT_AUTHORIZERS = names(
+        RequireAnyRoleAuthorizer.class, RequireAllRolesAuthorizer.class,
+        RequireAnyPermissionAuthorizer.class, RequireAllPermissionsAuthorizer.class,
+        CheckProfileTypeAuthorizer.class
+    );
+
+    private static final Set<String> AUTHENTICATION_AUTHORIZERS = names(
+        IsAnonymousAuthorizer.class, IsAuthenticatedAuthorizer.class,
+        IsFullyAuthenticatedAuthorizer.class, IsRememberedAuthorizer.class
+    );
+
+    private final Cache<Key, Boolean> cache;
+
+    /**
+     * @param maximumSize maximum number of cached decisions
+     * @param ttl time to keep decision in the cache
+     */
+    public AuthorizationCache(long maximumSize, Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .build();
+    }
+
+    private static Set<String> names(Class<?>... types) {
+        Set<String> names = new HashSet<>();
+        for (Class<?> type : types) {
+            names.add(type.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Parse {@link AuthorizationCache} from Lagom conf.
+     *
+     * @param conf Configuration of cache
+     * @return Cache of authorization decisions
+     */
+    public static AuthorizationCache parse(Config conf) {
+        return new AuthorizationCache(
+            conf.hasPath("maximum-size") ? conf.getLong("maximum-size") : DEFAULT_MAXIMUM_SIZE,
+            conf.hasPath("ttl") ? conf.getDuration("ttl") : DEFAULT_TTL
+        );
+    }
+
+    /**
+     * Check authorizations of profile, using cached decision if possible.
+     *
+     * @param context Web context of request
+     * @param profile Authenticated or anonymous profile
+     * @param authorizer Authorizer
+     * @return {@code true} if profile is authorized
+     */
+    public boolean isAuthorized(WebContext context, CommonProfile profile, Authorizer<CommonProfile> authorizer) {
+        String contextKey = contextKey(authorizer, context);
+        if (contextKey == null) return authorizer.isAuthorized(context, singletonList(profile));
+        Key key = new Key(profile, identity(authorizer), contextKey);
+        Boolean decision = cache.getIfPresent(key);
+        if (decision != null) return decision;
+        boolean authorized = authorizer.isAuthorized(context, singletonList(profile));
+        cache.put(key, authorized);
+        return authorized;
+    }
+
+    /**
+     * Drop decisions of the profile.
+     *
+     * @param profileId ID of profile
+     */
+    public void invalidateProfile(String profileId) {
+        cache.asMap().keySet().removeIf(key -> Objects.equals(key.profileId, profileId));
+    }
+
+    /**
+     * Drop decisions of the authorizer (and of other instances with the same name or the same configuration).
+     *
+     * @param authorizer Authorizer
+     */
+    public void invalidateAuthorizer(Authorizer<?> authorizer) {
+        Object identity = identity(authorizer);
+        cache.asMap().keySet().removeIf(key -> key.authorizer.equals(identity));
+    }
+
+    /**
+     * Drop all decisions.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return approximate number of cached decisions
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit/miss/eviction counters of the cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private static Object identity(Authorizer<?> authorizer) {
+        if (authorizer instanceof CacheableAuthorizer) {
+            String name = ((CacheableAuthorizer<?>) authorizer).getName();
+            if (name != null) return Arrays.asList(CacheableAuthorizer.class.getName(), name);
+        }
+        String type = authorizer.getClass().getName();
+        // exact classes only: subclass may check more than its elements
+        if (ELEMENT_AUTHORIZERS.contains(type)) {
+            return Arrays.asList(type, new HashSet<>(((AbstractRequireElementAuthorizer<?, ?>) authorizer).getElements()));
+        }
+        if (AUTHENTICATION_AUTHORIZERS.contains(type)) return type;
+        return authorizer;
+    }
+
+    private static String contextKey(Authorizer<CommonProfile> authorizer, WebContext context) {
+        if (authorizer instanceof CacheableAuthorizer) return ((CacheableAuthorizer<?>) authorizer).getCacheKey(context);
+        if (authorizer instanceof ProfileAuthorizer) return "";
+        return null;
+    }
+
+    private static final class Key {
+
+        private final String profileType;
+
+        private final String profileId;
+
+        private final Set<String> roles;
+
+        private final Set<String> permissions;
+
+        private final Map<String, Object> attributes;
+
+        private final boolean remembered;
+
+        private final Object authorizer;
+
+        private final String contextKey;
+
+        private final int hash;
+
+        private Key(CommonProfile profile, Object authorizer, String contextKey) {
+            this.profileType = profile.getClass().getName();
+            this.profileId = profile.getId();
+            // Copies: profile is mutable, and decision must not be served to other grants with the same hash
+            this.roles = new HashSet<>(profile.getRoles());
+            this.permissions = new HashSet<>(profile.getPermissions());
+            this.attributes = new HashMap<>(profile.getAttributes());
+            this.remembered = profile.isRemembered();
+            this.authorizer = authorizer;
+            this.contextKey = contextKey;
+            this.hash = Objects.hash(profileType, profileId, roles, permissions, authorizer, contextKey);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return remembered == key.remembered
+                && profileType.equals(key.profileType)
+                && Objects.equals(profileId, key.profileId)
+                && contextKey.equals(key.contextKey)
+                && authorizer.equals(key.authorizer)
+                && roles.equals(key.roles)
+                && permissions.equals(key.permissions)
+                && attributes.equals(key.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.pac4j.lagom.authorization;
+
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * <p>Authorizer whose decisions may be kept in {@link AuthorizationCache}.</p>
+ * <p>Decision is cached for the profile, the authorizer and the context key returned by {@link #getCacheKey(WebContext)}.
+ * Authorizer is identified by {@link #getName()}: instances with the same name (e.g. built on each request) share
+ * decisions, so the name must change with the configuration of the authorizer.
+ * Authorizer that depends on the request (path, method, headers) must return the used fields in the key,
+ * or {@code null} to skip the cache for the request.</p>
+ *
+ * @param <U> Type of profile
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public interface CacheableAuthorizer<U extends CommonProfile> extends Authorizer<U> {
+
+    /**
+     * Part of the cache key taken from the request.
+     *
+     * @param context Web context of request
+     * @return Key (empty if decision does not depend on the request) or {@code null} to skip the cache
+     */
+    String getCacheKey(WebContext context);
+
+    /**
+     * Name of the authorizer shared by its instances.
+     *
+     * @return Name or {@code null} to cache decisions of this instance only
+     */
+    default String getName() {
+        return null;
+    }
+
+    /**
+     * Make cacheable the authorizer, that checks only profile (e.g. {@code AndAuthorizer} of role checks).
+     *
+     * @param authorizer Authorizer
+     * @param <U> Type of profile
+     * @return Cacheable authorizer
+     */
+    static <U extends CommonProfile> CacheableAuthorizer<U> of(Authorizer<U> authorizer) {
+        return of(authorizer, context -> "");
+    }
+
+    /**
+     * Make cacheable the authorizer, that checks profile and some fields of the request.
+     *
+     * @param authorizer Authorizer
+     * @param cacheKey Fields of the request used by authorizer ({@code null} to skip the cache)
+     * @param <U> Type of profile
+     * @return Cacheable authorizer
+     */
+    static <U extends CommonProfile> CacheableAuthorizer<U> of(Authorizer<U> authorizer, Function<WebContext, String> cacheKey) {
+        return of(null, authorizer, cacheKey);
+    }
+
+    /**
+     * Make cacheable the named authorizer, that checks profile and some fields of the request.
+     *
+     * @param name Name shared by instances of the authorizer ({@code null} to cache decisions of this instance only)
+     * @param authorizer Authorizer
+     * @param cacheKey Fields of the request used by authorizer ({@code null} to skip the cache)
+     * @param <U> Type of profile
+     * @return Cacheable authorizer
+     */
+    static <U extends CommonProfile> CacheableAuthorizer<U> of(String name, Authorizer<U> authorizer, Function<WebContext, String> cacheKey) {
+        return new CacheableAuthorizer<U>() {
+
+            @Override
+            public String getCacheKey(WebContext context) {
+                return cacheKey.apply(context);
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean isAuthorized(WebContext context, List<U> profiles) {
+                return authorizer.isAuthorized(context, profiles);
+            }
+
+            @Override
+            public String toString() {
+                return authorizer.toString();
+            }
+        };
+    }
+}
@@ -0,0 +1,238 @@
+package org.pac4j.lagom.client;
+
+import org.pac4j.core.client.BaseClient;
+import org.pac4j.core.client.Client;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.credentials.Credentials;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.credentials.authenticator.Authenticator;
+import org.pac4j.core.credentials.extractor.CredentialsExtractor;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.concurrent.SecurityExecutor;
+import org.pac4j.lagom.metrics.SecurityMetrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * <p>Ordered chain of authentication clients, resolved once from comma-separated names (e.g. {@code "jwt,cookie"})
+ * when service call is composed. Profile is taken from the first client that authenticates the request.</p>
+ * <p>In parallel mode (see {@link #inParallel(SecurityExecutor)}), clients that find credentials in the request
+ * (pre-screening by {@link CredentialsExtractor} of {@link BaseClient}, without running authenticator)
+ * are run at the same time on {@link SecurityExecutor}, and the first authenticated profile wins.
+ * Each of them gets own {@link WebContext}, as web context is not thread-safe.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class ClientChain {
+
+    private static final String SEPARATOR = ",";
+
+    private final String name;
+
+    private final List<Client> clients;
+
+    private final SecurityExecutor executor;
+
+    private ClientChain(String name, List<Client> clients, SecurityExecutor executor) {
+        this.name = name;
+        this.clients = clients;
+        this.executor = executor;
+    }
+
+    /**
+     * Resolve clients by names.
+     *
+     * @param clients Clients of pac4j configuration
+     * @param clientNames Comma-separated names of clients (no clients if {@code null} or blank)
+     * @return Chain of clients
+     * @throws org.pac4j.core.exception.TechnicalException if client is not found
+     */
+    public static ClientChain resolve(Clients clients, String clientNames) {
+        List<Client> resolved = new ArrayList<>();
+        if (clientNames != null) {
+            for (String clientName : clientNames.split(SEPARATOR)) {
+                if (!clientName.trim().isEmpty()) resolved.add(clients.findClient(clientName.trim()));
+            }
+        }
+        return new ClientChain(clientNames, Collections.unmodifiableList(resolved), null);
+    }
+
+    /**
+     * Chain that runs clients with credentials in parallel.
+     *
+     * @param executor Executor of checks (each client has own bulkhead)
+     * @return Chain in parallel mode
+     */
+    public ClientChain inParallel(SecurityExecutor executor) {
+        return new ClientChain(name, clients, executor);
+    }
+
+    /**
+     * @return comma-separated names of clients as given
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return clients in order of names
+     */
+    public List<Client> getClients() {
+        return clients;
+    }
+
+    /**
+     * @return {@code true} if clients with credentials are run in parallel
+     */
+    public boolean isParallel() {
+        return executor != null && clients.size() > 1;
+    }
+
+    /**
+     * Authenticate request by clients one by one.
+     *
+     * @param context Web context of request
+     * @param metrics Security metrics
+     * @return Profile of the first client that authenticates the request or {@code null}
+     */
+    public CommonProfile getUserProfile(WebContext context, SecurityMetrics metrics) {
+        for (Client client : clients) {
+            CommonProfile profile = getUserProfile(client, context, metrics);
+            if (profile != null) return profile;
+        }
+        return null;
+    }
+
+    /**
+     * Authenticate request by clients with credentials in parallel (or one by one if chain is not parallel).
+     *
+     * @param context Web context of request (used on the calling thread only)
+     * @param forkContext Factory of web context of the same request for each parallel check
+     * @param metrics Security metrics
+     * @return Profile of the first client that authenticates the request or {@code null}
+     */
+    public CompletableFuture<CommonProfile> getUserProfileAsync(WebContext context, Supplier<? extends WebContext> forkContext,
+                                                                SecurityMetrics metrics) {
+        if (!isParallel()) return CompletableFuture.completedFuture(getUserProfile(context, metrics));
+        List<Client> candidates = new ArrayList<>(clients.size());
+        for (Client client : clients) {
+            if (mayHaveCredentials(client, context)) candidates.add(client);
+        }
+        if (candidates.size() < 2) {
+            return CompletableFuture.completedFuture(candidates.isEmpty() ? null : getUserProfile(candidates.get(0), context, metrics));
+        }
+        CompletableFuture<CommonProfile> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(candidates.size());
+        for (Client client : candidates) {
+            WebContext fork = forkContext.get();
+            executor.supply(client.getName(), () -> getUserProfile(client, fork, metrics)).whenComplete((profile, error) -> {
+                // Rejected or failed check is the same as check without profile
+                if (profile != null) result.complete(profile);
+                else if (pending.decrementAndGet() == 0) result.complete(null);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Authenticate request by clients one by one, each check is submitted to executor under the name of its client,
+     * so a full bulkhead of one client does not reject checks of other clients.
+     *
+     * @param context Web context of request (used by one check at a time)
+     * @param executor Executor of checks
+     * @param metrics Security metrics
+     * @return Profile of the first client that authenticates the request or {@code null},
+     * completed with {@link java.util.concurrent.RejectedExecutionException} if bulkhead of a client is full
+     */
+    public CompletableFuture<CommonProfile> getUserProfileAsync(WebContext context, SecurityExecutor executor,
+                                                                SecurityMetrics metrics) {
+        CompletableFuture<CommonProfile> result = new CompletableFuture<>();
+        getUserProfileAsync(0, context, executor, metrics, result);
+        return result;
+    }
+
+    private void getUserProfileAsync(int index, WebContext context, SecurityExecutor executor, SecurityMetrics metrics,
+                                     CompletableFuture<CommonProfile> result) {
+        if (index == clients.size()) {
+            result.complete(null);
+            return;
+        }
+        Client client = clients.get(index);
+        executor.supply(client.getName(), () -> getUserProfile(client, context, metrics)).whenComplete((profile, error) -> {
+            if (error != null) result.completeExceptionally(error);
+            else if (profile != null) result.complete(profile);
+            else getUserProfileAsync(index + 1, context, executor, metrics, result);
+        });
+    }
+
+    /**
+     * Authenticate token received in-band (e.g. in a message of a stream) by clients one by one.
+     * Only clients with authenticator of {@link TokenCredentials} (header, parameter, JWT clients) may accept it.
+     *
+     * @param token Token
+     * @param context Web context of the request that opened the stream
+     * @param metrics Security metrics
+     * @return Profile of the first client that authenticates the token or {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public CommonProfile getUserProfile(String token, WebContext context, SecurityMetrics metrics) {
+        for (Client client : clients) {
+            if (!(client instanceof BaseClient)) continue;
+            BaseClient baseClient = (BaseClient) client;
+            try {
+                long start = System.nanoTime();
+                baseClient.init();
+                Authenticator<TokenCredentials> authenticator = baseClient.getAuthenticator();
+                if (authenticator == null) continue;
+                TokenCredentials credentials = new TokenCredentials(token);
+                authenticator.validate(credentials, context);
+                CommonProfile profile = baseClient.getUserProfile(credentials, context);
+                metrics.profileResolved(client.getName(), System.nanoTime() - start);
+                if (profile != null) return profile;
+            } catch (Exception ex) {
+                // Invalid token or authenticator of other credentials (ClassCastException), pass to the next client
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CommonProfile getUserProfile(Client client, WebContext context, SecurityMetrics metrics) {
+        try {
+            long start = System.nanoTime();
+            Credentials credentials = client.getCredentials(context);
+            long extracted = System.nanoTime();
+            metrics.credentialsExtracted(client.getName(), extracted - start);
+            // Request without credentials is anonymous, the client is not called at all
+            if (credentials == null) return null;
+            CommonProfile profile = client.getUserProfile(credentials, context);
+            metrics.profileResolved(client.getName(), System.nanoTime() - extracted);
+            return profile;
+        } catch (Exception ex) {
+            // We can throw only TransportException.
+            // Otherwise exception will be sent to the client with stack trace.
+            return null;
+        }
+    }
+
+    private static boolean mayHaveCredentials(Client client, WebContext context) {
+        if (!(client instanceof BaseClient)) return true;
+        BaseClient<?, ?> baseClient = (BaseClient<?, ?>) client;
+        baseClient.init();
+        CredentialsExtractor<?> extractor = baseClient.getCredentialsExtractor();
+        if (extractor == null) return true;
+        try {
+            return extractor.extract(context) != null;
+        } catch (Exception ex) {
+            // Malformed credentials (e.g. wrong prefix of header) are rejected by the client too
+            return false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.pac4j.lagom.client;
+
+import org.pac4j.core.client.DirectClient;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.credentials.extractor.HeaderExtractor;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.jwt.InternalPrincipal;
+
+import static org.pac4j.core.util.CommonHelper.assertNotNull;
+
+/**
+ * <p>Direct client, that authenticates requests by {@link InternalPrincipal} header put by upstream service.</p>
+ * <p>Register it before the clients of edge credentials, e.g. {@code "principal,jwt"}: a call with a valid principal
+ * is authenticated by one MAC check and the bearer token is not verified again.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class InternalPrincipalClient extends DirectClient<TokenCredentials, CommonProfile> {
+
+    private InternalPrincipal principal;
+
+    public InternalPrincipalClient() {
+    }
+
+    /**
+     * @param principal Internal principal
+     */
+    public InternalPrincipalClient(InternalPrincipal principal) {
+        this.principal = principal;
+    }
+
+    @Override
+    protected void clientInit() {
+        assertNotNull("principal", principal);
+        defaultCredentialsExtractor(new HeaderExtractor(principal.getHeaderName(), ""));
+        defaultAuthenticator((credentials, context) -> credentials.setUserProfile(principal.verify(credentials.getToken())));
+    }
+
+    public InternalPrincipal getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(InternalPrincipal principal) {
+        this.principal = principal;
+    }
+}
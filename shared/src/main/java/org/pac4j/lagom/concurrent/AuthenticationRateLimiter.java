@@ -0,0 +1,285 @@
+package org.pac4j.lagom.concurrent;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.typesafe.config.Config;
+import org.pac4j.core.context.HttpConstants;
+import org.pac4j.core.context.WebContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Limiter of failed authentications, checked before credentials are verified, so a client sending invalid
+ * or expired tokens in a loop is refused ({@code 429 Too Many Requests}) without spending CPU on signatures.</p>
+ * <p>Only failures are counted: request with credentials that is not authenticated takes a token from the bucket
+ * of its client address ({@code address-header}, {@code X-Forwarded-For} by default) and from the bucket of its
+ * identity hint (unverified {@code sub} of JWT, or prefix of other credentials).
+ * Request is refused while any of its buckets is empty, authenticated requests never take tokens.</p>
+ * <p>Addresses at the left of {@code X-Forwarded-For} are sent by the client and can be forged (to get around the limit
+ * or to get a victim throttled), so the address is taken at {@code trusted-hops} from the right: {@code 1} (default)
+ * is the last address, appended by the reverse proxy in front of the service, {@code 2} if there are two proxies etc.
+ * The header must be set (not passed through) by the proxy at ingress, or stripped there if there is no proxy.</p>
+ * <p>Each bucket is a single {@link AtomicLong} updated by CAS (generic cell rate algorithm), buckets are kept in
+ * a bounded Caffeine cache and evicted when idle long enough to be full again, so memory does not grow
+ * with the number of attackers. Identity hint is not verified, so a generous {@code per-identity} limit
+ * should be used (or {@code capacity = 0} to disable it), as a forged {@code sub} takes tokens of a real user.</p>
+ * <p>Requires {@code com.github.ben-manes.caffeine:caffeine} in classpath.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class AuthenticationRateLimiter {
+
+    private static final Limit DEFAULT_PER_ADDRESS = new Limit(20, 1.0);
+
+    private static final Limit DEFAULT_PER_IDENTITY = new Limit(10, 0.2);
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 100_000L;
+
+    private static final String DEFAULT_ADDRESS_HEADER = "X-Forwarded-For";
+
+    private static final int DEFAULT_TRUSTED_HOPS = 1;
+
+    private static final int IDENTITY_PREFIX_LENGTH = 32;
+
+    private static final String SUBJECT = "\"sub\"";
+
+    private final Limit perAddress;
+
+    private final Limit perIdentity;
+
+    private final String addressHeader;
+
+    private final int trustedHops;
+
+    private final String credentialsParameter;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    /**
+     * @param perAddress limit of failures per client address
+     * @param perIdentity limit of failures per identity hint
+     * @param maximumSize maximum number of buckets
+     * @param addressHeader header with comma-separated addresses of client and proxies
+     * @param trustedHops position of client address in {@code addressHeader} from the right ({@code 1} is the last)
+     * @param credentialsParameter query parameter with token if there is no {@code Authorization} header
+     *                             (e.g. for WebSocket) or {@code null}
+     */
+    public AuthenticationRateLimiter(Limit perAddress, Limit perIdentity, long maximumSize,
+                                     String addressHeader, int trustedHops, String credentialsParameter) {
+        if (trustedHops < 1) throw new IllegalArgumentException("trusted-hops must be positive");
+        this.perAddress = perAddress;
+        this.perIdentity = perIdentity;
+        this.addressHeader = addressHeader;
+        this.trustedHops = trustedHops;
+        this.credentialsParameter = credentialsParameter;
+        long idleNanos = Math.max(1L, Math.max(perAddress.refillNanos(), perIdentity.refillNanos()));
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterAccess(idleNanos, TimeUnit.NANOSECONDS)
+            .build();
+    }
+
+    /**
+     * Parse {@link AuthenticationRateLimiter} from Lagom conf.
+     *
+     * @param conf Configuration of limiter
+     * @return Limiter of failed authentications
+     */
+    public static AuthenticationRateLimiter parse(Config conf) {
+        return new AuthenticationRateLimiter(
+            conf.hasPath("per-address") ? Limit.parse(conf.getConfig("per-address")) : DEFAULT_PER_ADDRESS,
+            conf.hasPath("per-identity") ? Limit.parse(conf.getConfig("per-identity")) : DEFAULT_PER_IDENTITY,
+            conf.hasPath("maximum-size") ? conf.getLong("maximum-size") : DEFAULT_MAXIMUM_SIZE,
+            conf.hasPath("address-header") ? conf.getString("address-header") : DEFAULT_ADDRESS_HEADER,
+            conf.hasPath("trusted-hops") ? conf.getInt("trusted-hops") : DEFAULT_TRUSTED_HOPS,
+            conf.hasPath("credentials-parameter") ? conf.getString("credentials-parameter") : null
+        );
+    }
+
+    /**
+     * Start authentication of request.
+     *
+     * @param context Web context of request
+     * @return Attempt or {@code null} if request has no credentials (anonymous requests are not limited)
+     */
+    public Attempt attempt(WebContext context) {
+        String credentials = context.getRequestHeader(HttpConstants.AUTHORIZATION_HEADER);
+        if (credentials == null && credentialsParameter != null) credentials = context.getRequestParameter(credentialsParameter);
+        return attempt(credentials, context.getRequestHeader(addressHeader));
+    }
+
+    /**
+     * Start authentication of request.
+     *
+     * @param credentials {@code Authorization} header (or token) of request
+     * @param forwardedFor value of {@code address-header} of request
+     * @return Attempt or {@code null} if request has no credentials (anonymous requests are not limited)
+     */
+    public Attempt attempt(String credentials, String forwardedFor) {
+        if (credentials == null || credentials.isEmpty()) return null;
+        if (credentials.startsWith(HttpConstants.BEARER_HEADER_PREFIX)) {
+            credentials = credentials.substring(HttpConstants.BEARER_HEADER_PREFIX.length());
+        }
+        String address = perAddress.isEnabled() ? address(forwardedFor) : null;
+        String identity = perIdentity.isEnabled() ? identity(credentials) : null;
+        long now = System.nanoTime();
+        boolean limited = isExhausted(address, perAddress, now) || isExhausted(identity, perIdentity, now);
+        return new Attempt(this, address, identity, limited);
+    }
+
+    /**
+     * @return number of buckets (including idle ones not evicted yet)
+     */
+    public long estimatedSize() {
+        return buckets.estimatedSize();
+    }
+
+    private boolean isExhausted(String key, Limit limit, long now) {
+        if (key == null) return false;
+        AtomicLong bucket = buckets.getIfPresent(key);
+        return bucket != null && bucket.get() - now > limit.toleranceNanos;
+    }
+
+    private void charge(String key, Limit limit) {
+        if (key == null) return;
+        long now = System.nanoTime();
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(now));
+        long current;
+        long next;
+        do {
+            current = bucket.get();
+            // Bucket can't be emptier than empty: penalty does not accumulate
+            next = Math.min(Math.max(current, now) + limit.intervalNanos, now + limit.refillNanos());
+        } while (!bucket.compareAndSet(current, next));
+    }
+
+    /**
+     * Address at {@code trusted-hops} from the right, the leftmost one if the header has fewer addresses.
+     */
+    private String address(String header) {
+        if (header == null) return null;
+        int end = header.length();
+        int start = header.lastIndexOf(',', end - 1) + 1;
+        for (int hop = 1; hop < trustedHops && start > 0; hop++) {
+            end = start - 1;
+            start = header.lastIndexOf(',', end - 1) + 1;
+        }
+        String address = header.substring(start, end).trim();
+        return address.isEmpty() ? null : "a:" + address;
+    }
+
+    private static String identity(String credentials) {
+        String subject = unverifiedSubject(credentials);
+        if (subject != null) return "s:" + subject;
+        return "p:" + (credentials.length() > IDENTITY_PREFIX_LENGTH ? credentials.substring(0, IDENTITY_PREFIX_LENGTH) : credentials);
+    }
+
+    /**
+     * {@code sub} of JWT payload, found by a scan of decoded JSON (not parsed, escapes are not supported).
+     */
+    private static String unverifiedSubject(String token) {
+        int first = token.indexOf('.');
+        int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+        if (second < 0) return null;
+        String payload;
+        try {
+            payload = new String(Base64.getUrlDecoder().decode(token.substring(first + 1, second)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int index = payload.indexOf(SUBJECT);
+        if (index < 0) return null;
+        index = skipWhitespace(payload, index + SUBJECT.length());
+        if (index >= payload.length() || payload.charAt(index) != ':') return null;
+        index = skipWhitespace(payload, index + 1);
+        if (index >= payload.length() || payload.charAt(index) != '"') return null;
+        int end = payload.indexOf('"', index + 1);
+        return end < 0 ? null : payload.substring(index + 1, end);
+    }
+
+    private static int skipWhitespace(String value, int index) {
+        while (index < value.length() && Character.isWhitespace(value.charAt(index))) index++;
+        return index;
+    }
+
+    /**
+     * Token bucket settings: up to {@code capacity} failures in a burst, refilled at {@code refill-per-second}.
+     */
+    public static final class Limit {
+
+        private final int capacity;
+
+        private final long intervalNanos;
+
+        private final long toleranceNanos;
+
+        /**
+         * @param capacity size of bucket, {@code 0} disables the limit
+         * @param refillPerSecond tokens added to bucket per second
+         */
+        public Limit(int capacity, double refillPerSecond) {
+            if (capacity > 0 && refillPerSecond <= 0) throw new IllegalArgumentException("refill-per-second must be positive");
+            this.capacity = Math.max(0, capacity);
+            this.intervalNanos = capacity > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / refillPerSecond) : 0L;
+            this.toleranceNanos = intervalNanos * (this.capacity - 1L);
+        }
+
+        /**
+         * Parse {@link Limit} from Lagom conf.
+         *
+         * @param conf Configuration of limit ({@code capacity} and {@code refill-per-second})
+         * @return Limit
+         */
+        public static Limit parse(Config conf) {
+            return new Limit(conf.getInt("capacity"), conf.getDouble("refill-per-second"));
+        }
+
+        private boolean isEnabled() {
+            return capacity > 0;
+        }
+
+        private long refillNanos() {
+            return intervalNanos * capacity;
+        }
+    }
+
+    /**
+     * Authentication of one request.
+     */
+    public static final class Attempt {
+
+        private final AuthenticationRateLimiter limiter;
+
+        private final String address;
+
+        private final String identity;
+
+        private final boolean limited;
+
+        private Attempt(AuthenticationRateLimiter limiter, String address, String identity, boolean limited) {
+            this.limiter = limiter;
+            this.address = address;
+            this.identity = identity;
+            this.limited = limited;
+        }
+
+        /**
+         * @return {@code true} if request must be refused without verification of credentials
+         */
+        public boolean isLimited() {
+            return limited;
+        }
+
+        /**
+         * Credentials of request are not valid: take tokens from the buckets of request.
+         */
+        public void failed() {
+            limiter.charge(address, limiter.perAddress);
+            limiter.charge(identity, limiter.perIdentity);
+        }
+    }
+}
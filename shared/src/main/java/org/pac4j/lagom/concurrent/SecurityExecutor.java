@@ -0,0 +1,140 @@
+package org.pac4j.lagom.concurrent;
+
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * <p>Executor for blocking credential checks (LDAP, SQL, remote introspection etc.), used by asynchronous
+ * variants of {@code authenticate}/{@code authorize} in {@code SecuredService}.</p>
+ * <p>Each client has own bulkhead: no more than {@code max-concurrent-per-client} checks of one client are
+ * in flight at the same time, extra checks are rejected with {@link RejectedExecutionException},
+ * so a slow authenticator can not take all threads of the executor.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class SecurityExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecurityExecutor.class);
+
+    private static final int DEFAULT_POOL_SIZE = 32;
+
+    private static final int DEFAULT_MAX_CONCURRENT_PER_CLIENT = 16;
+
+    private final Executor executor;
+
+    private final int maxConcurrentPerClient;
+
+    private final Map<String, Semaphore> bulkheads = new ConcurrentHashMap<>();
+
+    /**
+     * @param executor executor to run checks on
+     * @param maxConcurrentPerClient maximum number of checks of one client in flight
+     */
+    public SecurityExecutor(Executor executor, int maxConcurrentPerClient) {
+        this.executor = executor;
+        this.maxConcurrentPerClient = maxConcurrentPerClient;
+    }
+
+    /**
+     * <p>Parse {@link SecurityExecutor} from Lagom conf.</p>
+     * <p>Virtual threads ({@code virtual-threads = true}) are used only on JDK 21+,
+     * on older JDK the fixed pool of {@code pool-size} threads is used.</p>
+     *
+     * @param conf Configuration of executor
+     * @return Security executor
+     */
+    public static SecurityExecutor parse(Config conf) {
+        int poolSize = conf.hasPath("pool-size") ? conf.getInt("pool-size") : DEFAULT_POOL_SIZE;
+        ExecutorService executor = null;
+        if (conf.hasPath("virtual-threads") && conf.getBoolean("virtual-threads")) {
+            executor = newVirtualThreadPerTaskExecutor();
+        }
+        if (executor == null) {
+            executor = newFixedThreadPool(poolSize);
+        }
+        return new SecurityExecutor(
+            executor,
+            conf.hasPath("max-concurrent-per-client") ? conf.getInt("max-concurrent-per-client") : DEFAULT_MAX_CONCURRENT_PER_CLIENT
+        );
+    }
+
+    /**
+     * Shared executor with default settings.
+     *
+     * @return Security executor
+     */
+    public static SecurityExecutor defaultExecutor() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Run check of the client on the executor.
+     *
+     * @param clientName name of client (key of bulkhead)
+     * @param task check
+     * @param <T> type of result
+     * @return result of check, completed with {@link RejectedExecutionException} if bulkhead of client is full
+     */
+    public <T> CompletableFuture<T> supply(String clientName, Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Semaphore bulkhead = bulkheads.computeIfAbsent(String.valueOf(clientName), name -> new Semaphore(maxConcurrentPerClient));
+        if (!bulkhead.tryAcquire()) {
+            result.completeExceptionally(new RejectedExecutionException("Too many concurrent checks of client " + clientName));
+            return result;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(task.get());
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                } finally {
+                    bulkhead.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            bulkhead.release();
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private static ExecutorService newFixedThreadPool(int poolSize) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "pac4j-lagom-security-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(poolSize, threadFactory);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            LOGGER.warn("Virtual threads are not supported by this JVM, fixed thread pool is used");
+            return null;
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final SecurityExecutor INSTANCE = new SecurityExecutor(
+            newFixedThreadPool(DEFAULT_POOL_SIZE), DEFAULT_MAX_CONCURRENT_PER_CLIENT
+        );
+    }
+}
@@ -0,0 +1,131 @@
+package org.pac4j.lagom.concurrent;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>Coalescing of concurrent calls with the same key (e.g. verifications of the same token by parallel requests
+ * of a page): the first caller (leader) runs the call, the others wait for its result instead of doing the same work.</p>
+ * <p>There is no global lock, each key has own in-flight future, removed as soon as the call is completed,
+ * so results are not cached. Each waiting caller has own {@code timeout}: if the leader is too slow, the caller
+ * runs the call itself. Waiting caller never cancels the call of the leader: if it is interrupted,
+ * it gives up with {@link CancellationException} and keeps the interrupt status.
+ * Exception of the leader is rethrown to all callers waiting for it.</p>
+ *
+ * @param <K> Type of key
+ * @param <V> Type of result
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class SingleFlight<K, V> {
+
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(1);
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+
+    private final long timeoutNanos;
+
+    private final UnaryOperator<V> share;
+
+    private final LongAdder coalesced = new LongAdder();
+
+    private final LongAdder timedOut = new LongAdder();
+
+    /**
+     * @param timeout maximum time to wait for result of the leader
+     * @param share function applied to non-null result of the leader handed to each waiting caller (e.g. copy of mutable result)
+     */
+    public SingleFlight(Duration timeout, UnaryOperator<V> share) {
+        this.timeoutNanos = timeout.toNanos();
+        this.share = share;
+    }
+
+    /**
+     * Parse {@link SingleFlight} from Lagom conf.
+     *
+     * @param conf Configuration of coalescing
+     * @param share function applied to non-null result of the leader handed to each waiting caller
+     * @param <K> Type of key
+     * @param <V> Type of result
+     * @return Coalescing of calls
+     */
+    public static <K, V> SingleFlight<K, V> parse(Config conf, UnaryOperator<V> share) {
+        return new SingleFlight<>(conf.hasPath("timeout") ? conf.getDuration("timeout") : DEFAULT_TIMEOUT, share);
+    }
+
+    /**
+     * Run the call or wait for result of the same call in flight.
+     *
+     * @param key Key of call
+     * @param call Call
+     * @return Result of the call
+     * @throws CancellationException if waiting caller is interrupted
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = calls.putIfAbsent(key, own);
+        if (inFlight == null) return lead(key, own, call);
+        coalesced.increment();
+        try {
+            V result = inFlight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            // null result (e.g. no profile for expired token) is handed as is
+            return result == null ? null : share.apply(result);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            return call.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for call in flight");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> own, Supplier<V> call) {
+        try {
+            V result = call.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Waiting callers hold the future, the next caller starts a new call
+            calls.remove(key, own);
+        }
+    }
+
+    /**
+     * @return number of calls in flight
+     */
+    public int inFlight() {
+        return calls.size();
+    }
+
+    /**
+     * @return number of callers that waited for result of the leader
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return number of waiting callers that ran the call themselves after timeout
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+}
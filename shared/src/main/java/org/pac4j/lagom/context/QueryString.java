@@ -0,0 +1,56 @@
+package org.pac4j.lagom.context;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Parser of query string of request into parameters of web context (both DSLs).</p>
+ * <p>Parsing is lenient: name or value with malformed escape (e.g. {@code %zz}) is kept as is, as the query is read
+ * by authentication (credentials in parameter) and must not fail it with an exception other than transport one.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class QueryString {
+
+    private QueryString() {
+    }
+
+    /**
+     * Parse query string.
+     *
+     * @param rawQuery Raw (not decoded) query or {@code null}
+     * @return Unmodifiable parameters in order of query, values of repeated parameter in order of query
+     */
+    public static Map<String, String[]> parse(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) return Collections.emptyMap();
+        Map<String, List<String>> decoded = new LinkedHashMap<>();
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) continue;
+            int separator = pair.indexOf('=');
+            String name = decode(separator < 0 ? pair : pair.substring(0, separator));
+            String value = separator < 0 ? "" : decode(pair.substring(separator + 1));
+            decoded.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+        }
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        decoded.forEach((name, values) -> parameters.put(name, values.toArray(new String[0])));
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (IllegalArgumentException e) {
+            // Malformed escape, the raw value is kept
+            return value;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -5,20 +5,24 @@ import org.pac4j.core.context.Cookie;
 import org.pac4j.core.context.WebContext;
 import org.pac4j.core.context.session.SessionStore;
 import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.lagom.context.QueryString;
 import play.core.cookie.encoding.ServerCookieDecoder;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static play.mvc.Http.HeaderNames.COOKIE;
 
-import static java.lang.String.format;
-import static java.util.Collections.emptySet;
-import static java.util.stream.Collectors.toList;
-
 /**
  * <p>Implementation web context of PAC4J for Lagom framework.</p>
  * <p>Context is immutable and the {@link SessionStore} is not supported.</p>
+ * <p>Headers, cookies and query parameters are looked up lazily and memoized, so one context should be created per request
+ * and shared by authentication and authorization. Context is not thread-safe.</p>
  *
  * @author Sergey Morgunov
  * @since 1.0.0
@@ -27,6 +31,12 @@ public class LagomWebContext implements WebContext {
 
     private RequestHeader requestHeader;
 
+    private Map<String, Optional<String>> headers;
+
+    private List<Cookie> cookies;
+
+    private Map<String, String[]> parameters;
+
     public LagomWebContext(RequestHeader requestHeader) {
         this.requestHeader = requestHeader;
     }
@@ -36,14 +46,22 @@ public class LagomWebContext implements WebContext {
         throw new TechnicalException("Operation not supported");
     }
 
+    /**
+     * Parameter of query string (e.g. token of WebSocket client, that can't set headers).
+     *
+     * @param name Name of parameter
+     * @return First value of parameter or {@code null} if request has no such parameter
+     */
     @Override
     public String getRequestParameter(String name) {
-        throw new TechnicalException("Operation not supported");
+        String[] values = getRequestParameters().get(name);
+        return values == null ? null : values[0];
     }
 
     @Override
     public Map<String, String[]> getRequestParameters() {
-        throw new TechnicalException("Operation not supported");
+        if (parameters == null) parameters = QueryString.parse(requestHeader.uri().getRawQuery());
+        return parameters;
     }
 
     @Override
@@ -56,9 +74,25 @@ public class LagomWebContext implements WebContext {
         throw new TechnicalException("Operation not supported");
     }
 
+    /**
+     * Header of request.
+     *
+     * @param name Name of header
+     * @return Value of header or {@code null} if request has no such header (as expected by extractors of pac4j)
+     */
     @Override
     public String getRequestHeader(String name) {
-        return requestHeader.getHeader(name).orElseThrow(() -> new TechnicalException(format("Header %s not found", name)));
+        return getHeader(name).orElse(null);
+    }
+
+    private Optional<String> getHeader(String name) {
+        if (headers == null) headers = new HashMap<>();
+        Optional<String> value = headers.get(name);
+        if (value == null) {
+            value = requestHeader.getHeader(name);
+            headers.put(name, value);
+        }
+        return value;
     }
 
     @Override
@@ -118,12 +152,14 @@ public class LagomWebContext implements WebContext {
 
     @Override
     public Collection<Cookie> getRequestCookies() {
-        return requestHeader.getHeader(COOKIE)
-                .map(ServerCookieDecoder.STRICT::decode)
-                .orElse(emptySet())
-                .stream()
-                .map(cookie -> new Cookie(cookie.name(), cookie.value()))
-                .collect(toList());
+        if (cookies == null) {
+            List<Cookie> decoded = new ArrayList<>();
+            getHeader(COOKIE).ifPresent(header -> ServerCookieDecoder.STRICT.decode(header).forEach(
+                cookie -> decoded.add(new Cookie(cookie.name(), cookie.value()))
+            ));
+            cookies = Collections.unmodifiableList(decoded);
+        }
+        return cookies;
     }
 
     @Override
@@ -1,20 +1,30 @@
 package org.pac4j.lagom.javadsl;
 
-import com.lightbend.lagom.javadsl.api.transport.Forbidden;
 import com.lightbend.lagom.javadsl.server.ServerServiceCall;
 import org.pac4j.core.authorization.authorizer.Authorizer;
-import org.pac4j.core.client.Client;
-import org.pac4j.core.client.Clients;
 import org.pac4j.core.config.Config;
-import org.pac4j.core.profile.AnonymousProfile;
 import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.authorization.AuthorizationCache;
+import org.pac4j.lagom.client.ClientChain;
+import org.pac4j.lagom.concurrent.AuthenticationRateLimiter;
+import org.pac4j.lagom.concurrent.SecurityExecutor;
+import org.pac4j.lagom.javadsl.transport.TooManyRequests;
 import org.pac4j.lagom.javadsl.transport.Unauthorized;
+import org.pac4j.lagom.metrics.SecurityMetrics;
+import org.pac4j.lagom.policy.SecurityPolicies;
+import org.pac4j.lagom.policy.SecurityPolicy;
+import org.pac4j.lagom.stream.StreamSession;
 
 import java.util.function.Function;
 
-import static com.lightbend.lagom.javadsl.server.HeaderServiceCall.compose;
-import static java.util.Collections.singletonList;
-import static java.util.Optional.ofNullable;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.authenticateInParallel;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.authenticateOnExecutor;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.authorizeInParallel;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.authorizeOnExecutor;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.clientChain;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.composeAuthentication;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.composeAuthorization;
+import static org.pac4j.lagom.javadsl.SecuredServiceSupport.secureStream;
 
 /**
  * <p>
@@ -27,6 +37,7 @@ import static java.util.Optional.ofNullable;
  * @author Sergey Morgunov
  * @since 1.0.0
  */
+@SuppressWarnings("PMD.TooManyStaticImports")
 public interface SecuredService {
 
     /**
@@ -36,6 +47,78 @@ public interface SecuredService {
      */
     Config getSecurityConfig();
 
+    /**
+     * Get executor for asynchronous authentication and authorization of this service.
+     * The shared executor with default settings is used unless overridden, e.g. by executor created once
+     * from configuration ({@code SecurityExecutor.parse(conf.getConfig("pac4j.lagom.security-executor"))}).
+     *
+     * @return executor of credential checks
+     */
+    default SecurityExecutor getSecurityExecutor() {
+        return SecurityExecutor.defaultExecutor();
+    }
+
+    /**
+     * Get listener of security metrics of this service.
+     *
+     * @return security metrics
+     */
+    default SecurityMetrics getSecurityMetrics() {
+        return SecurityMetrics.NOOP;
+    }
+
+    /**
+     * Get cache of authorization decisions of this service.
+     *
+     * @return cache of decisions or {@code null} if decisions are not cached (default)
+     */
+    default AuthorizationCache getAuthorizationCache() {
+        return null;
+    }
+
+    /**
+     * Get limiter of failed authentications of this service, checked before credentials are verified.
+     * Requests refused by the limiter are answered with {@link TooManyRequests}.
+     *
+     * @return limiter or {@code null} if failed authentications are not limited (default)
+     */
+    default AuthenticationRateLimiter getAuthenticationRateLimiter() {
+        return null;
+    }
+
+    /**
+     * Get table of security policies of this service calls, compiled once at startup
+     * (e.g. {@code SecurityPolicies.compile(conf.getConfig("pac4j.lagom.policies"), securityConfig)}).
+     * Chains of clients are run in parallel if the table is compiled so ({@link SecurityPolicies#inParallel}).
+     *
+     * @return table of policies, empty by default
+     */
+    default SecurityPolicies getSecurityPolicies() {
+        return SecurityPolicies.EMPTY;
+    }
+
+    /**
+     * Find security policy of service call in {@link #getSecurityPolicies()}.
+     *
+     * @param callName Name of service call
+     * @return Policy with resolved clients and authorizer
+     * @throws org.pac4j.core.exception.TechnicalException if policy is not found
+     */
+    default SecurityPolicy policy(String callName) {
+        return getSecurityPolicies().get(callName);
+    }
+
+    /**
+     * Whether clients of a chain (comma-separated names, e.g. {@code "jwt,cookie"}) that find credentials
+     * in the request are run in parallel on {@link #getSecurityExecutor()}, the first authenticated profile wins.
+     * By default clients are run one by one in order of names.
+     *
+     * @return {@code true} to run clients in parallel
+     */
+    default boolean isParallelClients() {
+        return false;
+    }
+
     /**
      * Service call composition for authentication.
      *
@@ -52,30 +135,16 @@ public interface SecuredService {
     /**
      * Service call composition for authentication.
      *
-     * @param clientName Name of authentication client
+     * @param clientName Name of authentication client or comma-separated names of clients
      * @param serviceCall Service call
      * @param <Request> Type of request
      * @param <Response> Type of response
      * @return Service call with authentication logic
      */
-    @SuppressWarnings("unchecked")
     default <Request, Response> ServerServiceCall<Request, Response> authenticate(
             String clientName,
             Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
-        return compose(requestHeader -> {
-            CommonProfile profile;
-            try {
-                Clients clients = getSecurityConfig().getClients();
-                Client defaultClient = clients.findClient(clientName);
-                LagomWebContext context = new LagomWebContext(requestHeader);
-                profile = defaultClient.getUserProfile(defaultClient.getCredentials(context), context);
-            } catch (Exception ex) {
-                // We can throw only TransportException.
-                // Otherwise exception will be sent to the client with stack trace.
-                profile = new AnonymousProfile();
-            }
-            return serviceCall.apply(ofNullable(profile).orElse(new AnonymousProfile()));
-        });
+        return composeAuthentication(this, clientChain(this, clientName), serviceCall);
     }
 
     /**
@@ -96,7 +165,7 @@ public interface SecuredService {
     /**
      * Service call composition for authorization.
      *
-     * @param clientName Name of authentication client
+     * @param clientName Name of authentication client or comma-separated names of clients
      * @param authorizer Authorizer (may be composite)
      * @param serviceCall Service call
      * @param <Request> Type of request
@@ -107,21 +176,7 @@ public interface SecuredService {
             String clientName,
             Authorizer<CommonProfile> authorizer,
             Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
-        return authenticate(clientName, profile -> compose(requestHeader -> {
-            boolean authorized;
-            try {
-                authorized = authorizer != null && authorizer.isAuthorized(new LagomWebContext(requestHeader), singletonList(profile));
-            } catch (Exception ex) {
-                // We can throw only TransportException.
-                // Otherwise exception will be sent to the client with stack trace.
-                authorized = false;
-            }
-            if (!authorized) {
-                if (profile == null || profile instanceof AnonymousProfile) throw new Unauthorized("Unauthorized");
-                else throw new Forbidden("Authorization failed");
-            }
-            return serviceCall.apply(profile);
-        }));
+        return composeAuthorization(this, clientChain(this, clientName), authorizer, serviceCall);
     }
 
     /**
@@ -143,7 +198,7 @@ public interface SecuredService {
     /**
      * Service call composition for authorization.
      *
-     * @param clientName Name of authentication client
+     * @param clientName Name of authentication client or comma-separated names of clients
      * @param authorizerName Name of authorizer, registered in security config
      * @param serviceCall Service call
      * @param <Request> Type of request
@@ -158,4 +213,213 @@ public interface SecuredService {
         return authorize(clientName, getSecurityConfig().getAuthorizers().get(authorizerName), serviceCall);
     }
 
+    /**
+     * Service call composition for authentication and authorization by policy of service call.
+     *
+     * @param callName Name of service call in {@link #getSecurityPolicies()}
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with security logic of the policy
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> secure(
+            String callName,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return secure(policy(callName), serviceCall);
+    }
+
+    /**
+     * Service call composition for authentication and authorization by policy.
+     * Profile is authorized only if the policy has authorizer.
+     *
+     * @param policy Security policy
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with security logic of the policy
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> secure(
+            SecurityPolicy policy,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        if (policy.requiresAuthorization()) return composeAuthorization(this, policy.getClients(), policy.getAuthorizer(), serviceCall);
+        return composeAuthentication(this, policy.getClients(), serviceCall);
+    }
+
+    /**
+     * Service call composition for authentication of streamed (e.g. WebSocket) service call.
+     * Request is authenticated once, when the stream is opened. WebSocket clients can't set headers,
+     * so token may be passed in query string (e.g. for {@code ParameterClient}).
+     * Request and response streams are failed with {@link Unauthorized} when the profile expires,
+     * fresh token may be passed in-band to {@link StreamSession#refresh(String)}.
+     *
+     * @param serviceCall Service call
+     * @param <Request> Type of request (e.g. {@code Source<In, NotUsed>})
+     * @param <Response> Type of response (e.g. {@code Source<Out, NotUsed>})
+     * @return Service call with authentication logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authenticateStream(
+            Function<StreamSession, ServerServiceCall<Request, Response>> serviceCall) {
+        return authenticateStream(getSecurityConfig().getClients().getDefaultSecurityClients(), serviceCall);
+    }
+
+    /**
+     * Service call composition for authentication of streamed (e.g. WebSocket) service call.
+     * Request is authenticated once, when the stream is opened. WebSocket clients can't set headers,
+     * so token may be passed in query string (e.g. for {@code ParameterClient}).
+     * Request and response streams are failed with {@link Unauthorized} when the profile expires,
+     * fresh token may be passed in-band to {@link StreamSession#refresh(String)}.
+     *
+     * @param clientName Name of authentication client or comma-separated names of clients
+     * @param serviceCall Service call
+     * @param <Request> Type of request (e.g. {@code Source<In, NotUsed>})
+     * @param <Response> Type of response (e.g. {@code Source<Out, NotUsed>})
+     * @return Service call with authentication logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authenticateStream(
+            String clientName,
+            Function<StreamSession, ServerServiceCall<Request, Response>> serviceCall) {
+        ClientChain clients = clientChain(this, clientName);
+        return secureStream(getSecurityMetrics(), getAuthenticationRateLimiter(), getAuthorizationCache(), clients, false, null, serviceCall);
+    }
+
+    /**
+     * Service call composition for authorization of streamed (e.g. WebSocket) service call.
+     * Authorizations are checked once, when the stream is opened (see {@link #authenticateStream(Function)}).
+     *
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request (e.g. {@code Source<In, NotUsed>})
+     * @param <Response> Type of response (e.g. {@code Source<Out, NotUsed>})
+     * @return Service call with authorization logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authorizeStream(
+            Authorizer<CommonProfile> authorizer,
+            Function<StreamSession, ServerServiceCall<Request, Response>> serviceCall) {
+        return authorizeStream(getSecurityConfig().getClients().getDefaultSecurityClients(), authorizer, serviceCall);
+    }
+
+    /**
+     * Service call composition for authorization of streamed (e.g. WebSocket) service call.
+     * Authorizations are checked once, when the stream is opened (see {@link #authenticateStream(Function)}).
+     *
+     * @param clientName Name of authentication client or comma-separated names of clients
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request (e.g. {@code Source<In, NotUsed>})
+     * @param <Response> Type of response (e.g. {@code Source<Out, NotUsed>})
+     * @return Service call with authorization logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authorizeStream(
+            String clientName,
+            Authorizer<CommonProfile> authorizer,
+            Function<StreamSession, ServerServiceCall<Request, Response>> serviceCall) {
+        ClientChain clients = clientChain(this, clientName);
+        return secureStream(getSecurityMetrics(), getAuthenticationRateLimiter(), getAuthorizationCache(), clients, true, authorizer, serviceCall);
+    }
+
+    /**
+     * Service call composition for authentication.
+     * Credentials are checked on {@link #getSecurityExecutor()}, not on the thread handling the request.
+     *
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authentication logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authenticateAsync(
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return authenticateAsync(getSecurityConfig().getClients().getDefaultSecurityClients(), serviceCall);
+    }
+
+    /**
+     * Service call composition for authentication.
+     * Credentials are checked on {@link #getSecurityExecutor()}, not on the thread handling the request.
+     *
+     * @param clientName Name of authentication client or comma-separated names of clients
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authentication logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authenticateAsync(
+            String clientName,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        ClientChain clients = clientChain(this, clientName);
+        if (clients.isParallel()) return authenticateInParallel(getSecurityMetrics(), getAuthenticationRateLimiter(), clients, serviceCall);
+        return authenticateOnExecutor(getSecurityMetrics(), getAuthenticationRateLimiter(), getSecurityExecutor(), clients, serviceCall);
+    }
+
+    /**
+     * Service call composition for authorization.
+     * Credentials and authorizations are checked on {@link #getSecurityExecutor()}, not on the thread handling the request.
+     *
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authorizeAsync(
+            Authorizer<CommonProfile> authorizer,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return authorizeAsync(getSecurityConfig().getClients().getDefaultSecurityClients(), authorizer, serviceCall);
+    }
+
+    /**
+     * Service call composition for authorization.
+     * Credentials and authorizations are checked on {@link #getSecurityExecutor()}, not on the thread handling the request.
+     *
+     * @param clientName Name of authentication client or comma-separated names of clients
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    default <Request, Response> ServerServiceCall<Request, Response> authorizeAsync(
+            String clientName,
+            Authorizer<CommonProfile> authorizer,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        ClientChain clients = clientChain(this, clientName);
+        if (clients.isParallel()) return authorizeInParallel(getSecurityMetrics(), getAuthenticationRateLimiter(), getAuthorizationCache(), clients, authorizer, serviceCall);
+        return authorizeOnExecutor(getSecurityMetrics(), getAuthenticationRateLimiter(), getAuthorizationCache(), getSecurityExecutor(),
+            clients, authorizer, serviceCall);
+    }
+
+    /**
+     * Service call composition for authorization.
+     * Credentials and authorizations are checked on {@link #getSecurityExecutor()}, not on the thread handling the request.
+     *
+     * @param authorizerName Name of authorizer, registered in security config
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    @SuppressWarnings("unchecked")
+    default <Request, Response> ServerServiceCall<Request, Response> authorizeAsync(
+            String authorizerName,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return authorizeAsync(getSecurityConfig().getAuthorizers().get(authorizerName), serviceCall);
+    }
+
+    /**
+     * Service call composition for authorization.
+     * Credentials and authorizations are checked on {@link #getSecurityExecutor()}, not on the thread handling the request.
+     *
+     * @param clientName Name of authentication client or comma-separated names of clients
+     * @param authorizerName Name of authorizer, registered in security config
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    @SuppressWarnings("unchecked")
+    default <Request, Response> ServerServiceCall<Request, Response> authorizeAsync(
+            String clientName,
+            String authorizerName,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return authorizeAsync(clientName, getSecurityConfig().getAuthorizers().get(authorizerName), serviceCall);
+    }
+
 }
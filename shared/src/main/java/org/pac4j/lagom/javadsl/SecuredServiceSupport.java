@@ -0,0 +1,396 @@
+package org.pac4j.lagom.javadsl;
+
+import akka.japi.Pair;
+import akka.stream.javadsl.Source;
+import com.lightbend.lagom.javadsl.api.transport.Forbidden;
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import com.lightbend.lagom.javadsl.api.transport.TransportErrorCode;
+import com.lightbend.lagom.javadsl.api.transport.TransportException;
+import com.lightbend.lagom.javadsl.server.HeaderServiceCall;
+import com.lightbend.lagom.javadsl.server.ServerServiceCall;
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.profile.AnonymousProfile;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.authorization.AuthorizationCache;
+import org.pac4j.lagom.client.ClientChain;
+import org.pac4j.lagom.concurrent.AuthenticationRateLimiter;
+import org.pac4j.lagom.concurrent.AuthenticationRateLimiter.Attempt;
+import org.pac4j.lagom.concurrent.SecurityExecutor;
+import org.pac4j.lagom.javadsl.transport.TooManyRequests;
+import org.pac4j.lagom.javadsl.transport.Unauthorized;
+import org.pac4j.lagom.metrics.SecurityMetrics;
+import org.pac4j.lagom.metrics.SecurityMetrics.Outcome;
+import org.pac4j.lagom.stream.StreamSession;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import static com.lightbend.lagom.javadsl.server.HeaderServiceCall.compose;
+import static com.lightbend.lagom.javadsl.server.HeaderServiceCall.composeAsync;
+import static java.util.Collections.singletonList;
+
+/**
+ * Security logic shared by synchronous, asynchronous and streamed compositions of {@link SecuredService}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class SecuredServiceSupport {
+
+    /**
+     * Resolve clients of service call.
+     *
+     * @param service Secured service
+     * @param clientNames Comma-separated names of authentication clients
+     * @return Chain of clients, in parallel mode if {@link SecuredService#isParallelClients()}
+     */
+    static ClientChain clientChain(SecuredService service, String clientNames) {
+        ClientChain clients = ClientChain.resolve(service.getSecurityConfig().getClients(), clientNames);
+        return service.isParallelClients() ? clients.inParallel(service.getSecurityExecutor()) : clients;
+    }
+
+    /**
+     * Service call composition for authentication by resolved clients.
+     *
+     * @param service Secured service
+     * @param clients Authentication clients
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authentication logic
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> composeAuthentication(
+            SecuredService service, ClientChain clients, Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        SecurityMetrics metrics = service.getSecurityMetrics();
+        AuthenticationRateLimiter limiter = service.getAuthenticationRateLimiter();
+        if (clients.isParallel()) return authenticateInParallel(metrics, limiter, clients, serviceCall);
+        return compose(requestHeader ->
+            serviceCall.apply(getUserProfile(metrics, limiter, clients, new LagomWebContext(requestHeader)))
+        );
+    }
+
+    /**
+     * Service call composition for authorization with authentication by resolved clients.
+     *
+     * @param service Secured service
+     * @param clients Authentication clients
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> composeAuthorization(
+            SecuredService service, ClientChain clients, Authorizer<CommonProfile> authorizer,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        SecurityMetrics metrics = service.getSecurityMetrics();
+        AuthenticationRateLimiter limiter = service.getAuthenticationRateLimiter();
+        AuthorizationCache cache = service.getAuthorizationCache();
+        if (clients.isParallel()) return authorizeInParallel(metrics, limiter, cache, clients, authorizer, serviceCall);
+        return compose(requestHeader -> {
+            LagomWebContext context = new LagomWebContext(requestHeader);
+            CommonProfile profile = getUserProfile(metrics, limiter, clients, context);
+            checkAuthorization(metrics, cache, clients.getName(), authorizer, profile, context);
+            return serviceCall.apply(profile);
+        });
+    }
+
+    /**
+     * Authenticate request by clients.
+     *
+     * @param metrics Security metrics
+     * @param limiter Limiter of failed authentications or {@code null}
+     * @param clients Authentication clients
+     * @param context Web context of request
+     * @return Authenticated profile or new {@link AnonymousProfile}
+     * @throws TooManyRequests if credentials are refused by the limiter
+     */
+    static CommonProfile getUserProfile(SecurityMetrics metrics, AuthenticationRateLimiter limiter, ClientChain clients,
+                                        LagomWebContext context) {
+        Attempt attempt = attempt(metrics, limiter, clients, context);
+        return completed(metrics, clients, attempt, clients.getUserProfile(context, metrics));
+    }
+
+    private static Attempt attempt(SecurityMetrics metrics, AuthenticationRateLimiter limiter, ClientChain clients,
+                                   LagomWebContext context) {
+        if (limiter == null) return null;
+        Attempt attempt = limiter.attempt(context);
+        if (attempt != null && attempt.isLimited()) {
+            metrics.outcome(clients.getName(), Outcome.THROTTLED);
+            throw new TooManyRequests("Too many failed authentications");
+        }
+        return attempt;
+    }
+
+    private static CommonProfile completed(SecurityMetrics metrics, ClientChain clients, Attempt attempt, CommonProfile profile) {
+        if (profile == null && attempt != null) attempt.failed();
+        return anonymousIfNull(metrics, clients, profile);
+    }
+
+    /**
+     * Service call composition for authentication by clients in parallel.
+     *
+     * @param metrics Security metrics
+     * @param limiter Limiter of failed authentications or {@code null}
+     * @param clients Authentication clients in parallel mode
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authentication logic
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> authenticateInParallel(
+            SecurityMetrics metrics, AuthenticationRateLimiter limiter, ClientChain clients,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return composeAsync(requestHeader -> {
+            LagomWebContext context = new LagomWebContext(requestHeader);
+            Attempt attempt = attempt(metrics, limiter, clients, context);
+            return apply(clients.getUserProfileAsync(context, () -> new LagomWebContext(requestHeader), metrics), profile ->
+                serviceCall.apply(completed(metrics, clients, attempt, profile))
+            );
+        });
+    }
+
+    /**
+     * Service call composition for authorization with authentication by clients in parallel.
+     *
+     * @param metrics Security metrics
+     * @param limiter Limiter of failed authentications or {@code null}
+     * @param cache Cache of decisions or {@code null}
+     * @param clients Authentication clients in parallel mode
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> authorizeInParallel(
+            SecurityMetrics metrics, AuthenticationRateLimiter limiter, AuthorizationCache cache, ClientChain clients,
+            Authorizer<CommonProfile> authorizer, Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return composeAsync(requestHeader -> {
+            LagomWebContext context = new LagomWebContext(requestHeader);
+            Attempt attempt = attempt(metrics, limiter, clients, context);
+            return apply(clients.getUserProfileAsync(context, () -> new LagomWebContext(requestHeader), metrics), found -> {
+                CommonProfile profile = completed(metrics, clients, attempt, found);
+                checkAuthorization(metrics, cache, clients.getName(), authorizer, profile, context);
+                return serviceCall.apply(profile);
+            });
+        });
+    }
+
+    /**
+     * Service call composition for authentication on executor, clients are checked one by one
+     * (see {@link ClientChain#getUserProfileAsync(org.pac4j.core.context.WebContext, SecurityExecutor, SecurityMetrics)}).
+     *
+     * @param metrics Security metrics
+     * @param limiter Limiter of failed authentications or {@code null}
+     * @param executor Executor of checks
+     * @param clients Authentication clients
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authentication logic
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> authenticateOnExecutor(
+            SecurityMetrics metrics, AuthenticationRateLimiter limiter, SecurityExecutor executor, ClientChain clients,
+            Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return composeAsync(requestHeader -> {
+            LagomWebContext context = new LagomWebContext(requestHeader);
+            Attempt attempt = attempt(metrics, limiter, clients, context);
+            return apply(unavailableOnRejection(metrics, clients.getName(), clients.getUserProfileAsync(context, executor, metrics)), profile ->
+                serviceCall.apply(completed(metrics, clients, attempt, profile))
+            );
+        });
+    }
+
+    /**
+     * Service call composition for authorization on executor, clients are checked one by one.
+     *
+     * @param metrics Security metrics
+     * @param limiter Limiter of failed authentications or {@code null}
+     * @param cache Cache of decisions or {@code null}
+     * @param executor Executor of checks
+     * @param clients Authentication clients
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authorization logic
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> authorizeOnExecutor(
+            SecurityMetrics metrics, AuthenticationRateLimiter limiter, AuthorizationCache cache, SecurityExecutor executor,
+            ClientChain clients, Authorizer<CommonProfile> authorizer, Function<CommonProfile, ServerServiceCall<Request, Response>> serviceCall) {
+        return composeAsync(requestHeader -> {
+            LagomWebContext context = new LagomWebContext(requestHeader);
+            Attempt attempt = attempt(metrics, limiter, clients, context);
+            return apply(unavailableOnRejection(metrics, clients.getName(), clients.getUserProfileAsync(context, executor, metrics)), found -> {
+                CommonProfile profile = completed(metrics, clients, attempt, found);
+                checkAuthorization(metrics, cache, clients.getName(), authorizer, profile, context);
+                return serviceCall.apply(profile);
+            });
+        });
+    }
+
+    private static CommonProfile anonymousIfNull(SecurityMetrics metrics, ClientChain clients, CommonProfile profile) {
+        if (profile == null) {
+            metrics.outcome(clients.getName(), Outcome.ANONYMOUS);
+            return new AnonymousProfile();
+        }
+        metrics.outcome(clients.getName(), Outcome.AUTHENTICATED);
+        return profile;
+    }
+
+    private static <T, R> CompletionStage<R> apply(CompletableFuture<T> future, Function<T, R> function) {
+        // Exception of function is passed as is (not wrapped into CompletionException), as TransportException is expected
+        CompletableFuture<R> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            try {
+                result.complete(function.apply(value));
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Service call composition for authentication (and authorization) of streamed service call.
+     *
+     * @param metrics Security metrics
+     * @param limiter Limiter of failed authentications or {@code null}
+     * @param cache Cache of decisions or {@code null}
+     * @param clients Authentication clients (in parallel mode if the chain is)
+     * @param authorize Whether authorizations are checked
+     * @param authorizer Authorizer (may be composite)
+     * @param serviceCall Service call
+     * @param <Request> Type of request
+     * @param <Response> Type of response
+     * @return Service call with authentication logic and expiry of streams
+     */
+    static <Request, Response> ServerServiceCall<Request, Response> secureStream(
+            SecurityMetrics metrics, AuthenticationRateLimiter limiter, AuthorizationCache cache, ClientChain clients,
+            boolean authorize, Authorizer<CommonProfile> authorizer,
+            Function<StreamSession, ServerServiceCall<Request, Response>> serviceCall) {
+        if (clients.isParallel()) {
+            return composeAsync(requestHeader -> {
+                LagomWebContext context = new LagomWebContext(requestHeader);
+                Attempt attempt = attempt(metrics, limiter, clients, context);
+                return apply(clients.getUserProfileAsync(context, () -> new LagomWebContext(requestHeader), metrics), found ->
+                    streamCall(metrics, cache, clients, authorize, authorizer, serviceCall, requestHeader,
+                        completed(metrics, clients, attempt, found), context)
+                );
+            });
+        }
+        return compose(requestHeader -> {
+            LagomWebContext context = new LagomWebContext(requestHeader);
+            return streamCall(metrics, cache, clients, authorize, authorizer, serviceCall, requestHeader,
+                getUserProfile(metrics, limiter, clients, context), context);
+        });
+    }
+
+    private static <Request, Response> ServerServiceCall<Request, Response> streamCall(
+            SecurityMetrics metrics, AuthorizationCache cache, ClientChain clients, boolean authorize,
+            Authorizer<CommonProfile> authorizer, Function<StreamSession, ServerServiceCall<Request, Response>> serviceCall,
+            RequestHeader requestHeader, CommonProfile profile, LagomWebContext context) {
+        if (authorize) checkAuthorization(metrics, cache, clients.getName(), authorizer, profile, context);
+        StreamSession session = new StreamSession(
+            profile,
+            token -> clients.getUserProfile(token, new LagomWebContext(requestHeader), metrics),
+            refreshed -> !authorize || isAuthorized(metrics, cache, clients.getName(), authorizer, refreshed,
+                new LagomWebContext(requestHeader)),
+            () -> new Unauthorized("Token expired")
+        );
+        ServerServiceCall<Request, Response> call = serviceCall.apply(session);
+        return HeaderServiceCall.<Request, Response>of((header, request) ->
+            call.invokeWithHeaders(header, expiring(session, request))
+                .thenApply(response -> Pair.create(response.first(), expiring(session, response.second())))
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T expiring(StreamSession session, T message) {
+        if (!(message instanceof Source)) return message;
+        return (T) ((Source<Object, Object>) message).via(session.expiry());
+    }
+
+    /**
+     * Check authorizations of profile.
+     *
+     * @param metrics Security metrics
+     * @param cache Cache of decisions or {@code null}
+     * @param clientName Name of authentication client
+     * @param authorizer Authorizer (may be composite)
+     * @param profile Authenticated or anonymous profile
+     * @param context Web context of request
+     * @throws Unauthorized if profile is anonymous and not authorized
+     * @throws Forbidden if profile is authenticated and not authorized
+     */
+    static void checkAuthorization(SecurityMetrics metrics, AuthorizationCache cache, String clientName,
+                                   Authorizer<CommonProfile> authorizer, CommonProfile profile, LagomWebContext context) {
+        boolean authorized;
+        long start = System.nanoTime();
+        try {
+            if (authorizer == null) authorized = false;
+            else if (cache == null) authorized = authorizer.isAuthorized(context, singletonList(profile));
+            else authorized = cache.isAuthorized(context, profile, authorizer);
+        } catch (Exception ex) {
+            // We can throw only TransportException.
+            // Otherwise exception will be sent to the client with stack trace.
+            authorized = false;
+        }
+        metrics.authorizationChecked(SecurityMetrics.authorizerName(authorizer), System.nanoTime() - start);
+        if (!authorized) {
+            if (profile == null || profile instanceof AnonymousProfile) {
+                metrics.outcome(clientName, Outcome.UNAUTHORIZED);
+                throw new Unauthorized("Unauthorized");
+            } else {
+                metrics.outcome(clientName, Outcome.FORBIDDEN);
+                throw new Forbidden("Authorization failed");
+            }
+        }
+        metrics.outcome(clientName, Outcome.AUTHORIZED);
+    }
+
+    private static boolean isAuthorized(SecurityMetrics metrics, AuthorizationCache cache, String clientName,
+                                        Authorizer<CommonProfile> authorizer, CommonProfile profile, LagomWebContext context) {
+        try {
+            checkAuthorization(metrics, cache, clientName, authorizer, profile, context);
+            return true;
+        } catch (TransportException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Unwrap result of check, submitted to {@link SecurityExecutor}.
+     * Rejection by bulkhead is reported to the client as {@code 503 Service Unavailable}.
+     *
+     * @param metrics Security metrics
+     * @param clientName Comma-separated names of authentication clients
+     * @param future Result of check
+     * @param <T> Type of result
+     * @return Result of check
+     */
+    private static <T> CompletableFuture<T> unavailableOnRejection(SecurityMetrics metrics, String clientName, CompletableFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (error instanceof RejectedExecutionException) {
+                metrics.outcome(clientName, Outcome.REJECTED);
+                result.completeExceptionally(new TransportException(TransportErrorCode.ServiceUnavailable, error.getMessage()));
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    private SecuredServiceSupport() {
+    }
+}
@@ -0,0 +1,40 @@
+package org.pac4j.lagom.javadsl.broker;
+
+import akka.Done;
+import akka.stream.javadsl.Flow;
+import com.lightbend.lagom.javadsl.api.broker.Topic;
+import org.pac4j.lagom.jwt.Revocation;
+import org.pac4j.lagom.jwt.RevocationList;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Feeds {@link RevocationList} from a message broker topic of {@link Revocation}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class RevocationSubscriber {
+
+    /**
+     * Subscribe the denylist to the topic.
+     * Every node must receive all revocations, so {@code groupId} must be unique for the node
+     * (e.g. service name with address of the node). Revocations already expired on arrival are skipped,
+     * so a new consumer group may safely read the topic from the beginning.
+     *
+     * @param topic topic of revocations
+     * @param groupId consumer group of the node
+     * @param revocations denylist
+     * @return completion of the subscription
+     */
+    public static CompletionStage<Done> subscribe(Topic<Revocation> topic, String groupId, RevocationList revocations) {
+        return topic.subscribe()
+            .withGroupId(groupId)
+            .atLeastOnce(Flow.<Revocation>create().map(revocation -> {
+                revocations.revoke(revocation);
+                return Done.getInstance();
+            }));
+    }
+
+    private RevocationSubscriber() {}
+}
@@ -1,8 +1,15 @@
 package org.pac4j.lagom.javadsl.transport;
 
+import com.lightbend.lagom.javadsl.api.ServiceCall;
 import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
 import com.nimbusds.jwt.JWT;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.jwt.InternalPrincipal;
+import org.pac4j.lagom.jwt.JwtTokenCache;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 
 import static org.pac4j.core.context.HttpConstants.AUTHORIZATION_HEADER;
@@ -32,6 +39,44 @@ public final class RequestHeaderHelper {
         return authorizationBearer(jwt.serialize());
     }
 
+    /**
+     * Puts {@code Authorization} header with token of the profile (e.g. identity of the service) to {@link RequestHeader}.
+     * The token is taken from the cache and minted only if it is absent or expired.
+     * @param tokens cache of tokens
+     * @param profile profile
+     */
+    public static Function<RequestHeader, RequestHeader> authorizationBearer(JwtTokenCache tokens, CommonProfile profile) {
+        return header -> authorizationBearer(tokens.getToken(profile)).apply(header);
+    }
+
+    /**
+     * Invokes service call with {@code Authorization} header with token of the profile (e.g. identity of the service).
+     * If the call is failed with {@link Unauthorized} (deserialized by {@code Pac4jExceptionSerializer}),
+     * it is retried once with a renewed token.
+     * Other request header handlers must be applied to the service call before this one.
+     * @param tokens cache of tokens
+     * @param profile profile
+     * @param serviceCall service call
+     */
+    public static <Request, Response> ServiceCall<Request, Response> authorizedBy(
+            JwtTokenCache tokens, CommonProfile profile, ServiceCall<Request, Response> serviceCall) {
+        return request -> {
+            String token = tokens.getToken(profile);
+            return serviceCall.handleRequestHeader(authorizationBearer(token)).invoke(request)
+                .handle((response, error) -> {
+                    if (error == null) return CompletableFuture.completedFuture(response);
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof Unauthorized) {
+                        return serviceCall.handleRequestHeader(authorizationBearer(tokens.renewToken(profile, token))).invoke(request);
+                    }
+                    CompletableFuture<Response> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(cause);
+                    return failed;
+                })
+                .thenCompose(Function.<CompletionStage<Response>>identity());
+        };
+    }
+
     /**
      * Copies specified header from sourced {@link RequestHeader} to target.
      * @param source sourced {@link RequestHeader}
@@ -49,6 +94,24 @@ public final class RequestHeaderHelper {
         return forwardHeader(source, AUTHORIZATION_HEADER);
     }
 
+    /**
+     * Puts {@link InternalPrincipal} header with the verified profile to {@link RequestHeader}.
+     * @param principal internal principal
+     * @param profile verified profile
+     */
+    public static Function<RequestHeader, RequestHeader> internalPrincipal(InternalPrincipal principal, CommonProfile profile) {
+        return header -> header.withHeader(principal.getHeaderName(), principal.sign(profile));
+    }
+
+    /**
+     * Copies {@link InternalPrincipal} header from sourced {@link RequestHeader} to target.
+     * @param source sourced {@link RequestHeader}
+     * @param principal internal principal
+     */
+    public static Function<RequestHeader, RequestHeader> forwardPrincipal(RequestHeader source, InternalPrincipal principal) {
+        return forwardHeader(source, principal.getHeaderName());
+    }
+
     private RequestHeaderHelper() {
     }
 }
@@ -0,0 +1,32 @@
+package org.pac4j.lagom.javadsl.transport;
+
+import com.lightbend.lagom.javadsl.api.deser.ExceptionMessage;
+import com.lightbend.lagom.javadsl.api.transport.TransportErrorCode;
+import com.lightbend.lagom.javadsl.api.transport.TransportException;
+
+/**
+ * <p>Exception thrown when credentials of a service call are refused by rate limiter of failed authentications.</p>
+ * <p>Exception has no stack trace: it is an expected answer to a client that fails authentication in a loop.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class TooManyRequests extends TransportException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final TransportErrorCode ERROR_CODE = TransportErrorCode.fromHttp(429);
+
+    public TooManyRequests(String message) {
+        super(ERROR_CODE, message);
+    }
+
+    public TooManyRequests(TransportErrorCode errorCode, ExceptionMessage exceptionMessage) {
+        super(errorCode, exceptionMessage);
+    }
+
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -5,7 +5,8 @@ import com.lightbend.lagom.javadsl.api.transport.TransportErrorCode;
 import com.lightbend.lagom.javadsl.api.transport.TransportException;
 
 /**
- * Exception thrown when a service call is unauthorized.
+ * <p>Exception thrown when a service call is unauthorized.</p>
+ * <p>Exception has no stack trace: it is an expected answer to anonymous requests, not a failure of the service.</p>
  *
  * @author Sergey Morgunov
  * @since 2.2.0
@@ -27,4 +28,9 @@ public class Unauthorized extends TransportException {
     public Unauthorized(TransportErrorCode errorCode, ExceptionMessage exceptionMessage) {
         super(errorCode, exceptionMessage);
     }
+
+    @Override
+    public Throwable fillInStackTrace() {
+        return this;
+    }
 }
@@ -0,0 +1,289 @@
+package org.pac4j.lagom.jwt;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.cluster.ddata.DistributedData;
+import akka.cluster.ddata.Key;
+import akka.cluster.ddata.LWWMap;
+import akka.cluster.ddata.LWWMapKey;
+import akka.cluster.ddata.Replicator;
+import akka.cluster.ddata.SelfUniqueAddress;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.typesafe.config.Config;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.serialization.ProfileCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Verified JWT shared by nodes of Akka cluster: SHA-256 digest of token is mapped to the profile
+ * (encoded by {@link ProfileCodec}) and its expiration, so a token verified on one node is not verified again on the others.</p>
+ * <p>Entries are replicated by Akka Distributed Data in {@link LWWMap}s (digests are spread over {@code buckets} maps
+ * to keep delta-CRDT gossip small) and are written locally without waiting for other nodes.
+ * Every node keeps a near-cache of entries, updated by subscription to the maps, so lookup never leaves the node.
+ * The near-cache is bounded by {@code maximum-size} (Caffeine, frequency-aware eviction as in {@link JwtProfileCache}):
+ * tokens of evicted entries are verified again, or read back from the maps on their next change.</p>
+ * <p>{@link #invalidateAll()} (called when a key is removed from the authenticator) clears the near-cache of this node
+ * and ignores entries written before it (by time of the writer, so clocks of nodes should be synchronized).</p>
+ * <p>Entry expires at {@code exp} of the token (or after {@code ttl} if it is earlier or the token has no {@code exp}),
+ * expired entries are pruned every {@code prune-interval}. Distributed Data is designed for up to about 100 000 entries
+ * in total: keep {@code ttl} short for services with many users.</p>
+ * <p>Enabled by {@code shared-cache} section of authenticator parsed by
+ * {@link JwtAuthenticatorHelper#parseLagom(Config, ActorSystem)}.</p>
+ * <p>Requires {@code com.typesafe.akka:akka-distributed-data} and {@code com.github.ben-manes.caffeine:caffeine}
+ * in classpath.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class DistributedJwtProfileCache implements JwtProfileStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributedJwtProfileCache.class);
+
+    private static final String DEFAULT_NAME = "pac4j-jwt-profiles";
+
+    private static final int DEFAULT_BUCKETS = 16;
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private static final Duration DEFAULT_PRUNE_INTERVAL = Duration.ofMinutes(1);
+
+    private final ActorRef replicator;
+
+    private final SelfUniqueAddress node;
+
+    private final List<Key<LWWMap<String, byte[]>>> keys;
+
+    private final long ttlMillis;
+
+    private volatile long notBefore;
+
+    private final Map<String, Entry> nearCache;
+
+    private final ActorRef subscriber;
+
+    private final Cancellable pruning;
+
+    /**
+     * @param system actor system (member of the cluster)
+     * @param name prefix of keys of replicated maps
+     * @param buckets number of replicated maps
+     * @param maximumSize maximum number of tokens in the near-cache of this node
+     * @param ttl maximum time to keep token in the cache
+     * @param pruneInterval interval of removal of expired tokens
+     */
+    public DistributedJwtProfileCache(ActorSystem system, String name, int buckets, long maximumSize, Duration ttl,
+                                      Duration pruneInterval) {
+        this.nearCache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new EntryExpiry())
+            .<String, Entry>build()
+            .asMap();
+        DistributedData distributedData = DistributedData.get(system);
+        this.replicator = distributedData.replicator();
+        this.node = distributedData.selfUniqueAddress();
+        this.ttlMillis = ttl.toMillis();
+        List<Key<LWWMap<String, byte[]>>> bucketKeys = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            bucketKeys.add(LWWMapKey.create(name + "-" + i));
+        }
+        this.keys = bucketKeys;
+        this.subscriber = system.actorOf(Props.create(Subscriber.class, () -> new Subscriber(this)));
+        for (Key<LWWMap<String, byte[]>> key : keys) {
+            replicator.tell(new Replicator.Subscribe<>(key, subscriber), subscriber);
+        }
+        FiniteDuration interval = FiniteDuration.create(pruneInterval.toMillis(), TimeUnit.MILLISECONDS);
+        this.pruning = system.scheduler().schedule(interval, interval, this::prune, system.dispatcher());
+    }
+
+    /**
+     * Parse {@link DistributedJwtProfileCache} from Lagom conf.
+     *
+     * @param system actor system (member of the cluster)
+     * @param conf Configuration of cache
+     * @return Cache of verified tokens shared by nodes of the cluster
+     */
+    public static DistributedJwtProfileCache parse(ActorSystem system, Config conf) {
+        return new DistributedJwtProfileCache(
+            system,
+            conf.hasPath("name") ? conf.getString("name") : DEFAULT_NAME,
+            conf.hasPath("buckets") ? conf.getInt("buckets") : DEFAULT_BUCKETS,
+            conf.hasPath("maximum-size") ? conf.getLong("maximum-size") : DEFAULT_MAXIMUM_SIZE,
+            conf.hasPath("ttl") ? conf.getDuration("ttl") : DEFAULT_TTL,
+            conf.hasPath("prune-interval") ? conf.getDuration("prune-interval") : DEFAULT_PRUNE_INTERVAL
+        );
+    }
+
+    /**
+     * Profile of verified token. Entries are written by any member of the cluster: entry that can't be decoded
+     * (e.g. class of profile is not a profile or is unknown on this node) is dropped from the near-cache and the token
+     * is verified by this node.
+     *
+     * @param token token
+     * @return profile or {@code null}
+     */
+    @Override
+    public CommonProfile get(String token) {
+        String digest = JwtProfileCache.digest(token);
+        Entry entry = nearCache.get(digest);
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) return null;
+        try {
+            return ProfileCodec.decode(entry.profile);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Shared profile is dropped: {}", e.getMessage());
+            nearCache.remove(digest, entry);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String token, CommonProfile profile) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        Date expirationTime = JwtProfileCache.expirationTime(profile);
+        if (expirationTime != null) expiresAt = Math.min(expiresAt, expirationTime.getTime());
+        if (expiresAt <= now) return;
+        byte[] encoded;
+        try {
+            encoded = ProfileCodec.encode(profile);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Profile {} is not shared: {}", profile.getId(), e.getMessage());
+            return;
+        }
+        String digest = JwtProfileCache.digest(token);
+        nearCache.put(digest, new Entry(expiresAt, encoded));
+        // layout: expiration, time of writing, encoded profile
+        byte[] value = ByteBuffer.allocate(2 * Long.BYTES + encoded.length).putLong(expiresAt).putLong(now).put(encoded).array();
+        replicator.tell(new Replicator.Update<>(key(digest), LWWMap.create(), Replicator.writeLocal(),
+            map -> map.put(node, digest, value)
+        ), subscriber);
+    }
+
+    /**
+     * Drop tokens from the near-cache of this node and ignore replicated entries written until now.
+     */
+    @Override
+    public void invalidateAll() {
+        notBefore = System.currentTimeMillis();
+        nearCache.clear();
+    }
+
+    /**
+     * @return number of tokens in the near-cache of this node
+     */
+    public long estimatedSize() {
+        return nearCache.size();
+    }
+
+    /**
+     * Stop replication to this node. Entries put by this node stay in the cluster until they expire.
+     */
+    public void close() {
+        pruning.cancel();
+        for (Key<LWWMap<String, byte[]>> key : keys) {
+            replicator.tell(new Replicator.Unsubscribe<>(key, subscriber), subscriber);
+        }
+        subscriber.tell(PoisonPill.getInstance(), ActorRef.noSender());
+        nearCache.clear();
+    }
+
+    private Key<LWWMap<String, byte[]>> key(String digest) {
+        return keys.get(Math.floorMod(digest.hashCode(), keys.size()));
+    }
+
+    private void changed(LWWMap<String, byte[]> map) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, byte[]> replicated : map.getEntries().entrySet()) {
+            if (nearCache.containsKey(replicated.getKey())) continue;
+            byte[] value = replicated.getValue();
+            ByteBuffer buffer = ByteBuffer.wrap(value);
+            long expiresAt = buffer.getLong();
+            long writtenAt = buffer.getLong();
+            if (expiresAt > now && writtenAt >= notBefore) {
+                nearCache.putIfAbsent(replicated.getKey(), new Entry(expiresAt, Arrays.copyOfRange(value, 2 * Long.BYTES, value.length)));
+            }
+        }
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        nearCache.values().removeIf(entry -> entry.expiresAt <= now);
+        for (Key<LWWMap<String, byte[]>> key : keys) {
+            replicator.tell(new Replicator.Update<>(key, LWWMap.create(), Replicator.writeLocal(), map -> {
+                LWWMap<String, byte[]> pruned = map;
+                for (Map.Entry<String, byte[]> replicated : map.getEntries().entrySet()) {
+                    if (ByteBuffer.wrap(replicated.getValue()).getLong() <= now) pruned = pruned.remove(node, replicated.getKey());
+                }
+                return pruned;
+            }), subscriber);
+        }
+    }
+
+    private static final class Entry {
+
+        private final long expiresAt;
+
+        private final byte[] profile;
+
+        private Entry(long expiresAt, byte[] profile) {
+            this.expiresAt = expiresAt;
+            this.profile = profile;
+        }
+    }
+
+    private static final class EntryExpiry implements Expiry<String, Entry> {
+
+        @Override
+        public long expireAfterCreate(String key, Entry value, long currentTime) {
+            return Math.max(0L, Duration.ofMillis(value.expiresAt - System.currentTimeMillis()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * Receives changes of replicated maps, responses to updates are ignored.
+     */
+    private static final class Subscriber extends AbstractActor {
+
+        private final DistributedJwtProfileCache cache;
+
+        private Subscriber(DistributedJwtProfileCache cache) {
+            this.cache = cache;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Receive createReceive() {
+            return receiveBuilder()
+                .match(Replicator.Changed.class, changed -> cache.changed((LWWMap<String, byte[]>) changed.dataValue()))
+                .matchAny(response -> { })
+                .build();
+        }
+    }
+}
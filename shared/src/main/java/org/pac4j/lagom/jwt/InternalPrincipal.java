@@ -0,0 +1,113 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.typesafe.config.Config;
+import org.pac4j.core.exception.CredentialsException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.config.signature.SecretSignatureConfiguration;
+import org.pac4j.jwt.credentials.authenticator.JwtAuthenticator;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * <p>Internal principal: verified profile passed between services of the cluster in a header,
+ * as short-lived JWT signed with a cluster-internal HMAC key (HS256).</p>
+ * <p>The first service that authenticates the request (verifying RS256 signature, decrypting JWE etc.) puts
+ * the principal to outbound calls, downstream services accept it with a single MAC check
+ * by {@link org.pac4j.lagom.client.InternalPrincipalClient}. Downstream services should forward the received header as is,
+ * so the principal keeps its original expiration.</p>
+ * <p>The header must never be accepted from outside of the cluster: strip it at ingress.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class InternalPrincipal {
+
+    /**
+     * Default name of the header.
+     */
+    public static final String DEFAULT_HEADER_NAME = "X-Pac4j-Principal";
+
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final String headerName;
+
+    private final long ttlMillis;
+
+    private final JwtMinter minter;
+
+    private final JwtAuthenticator authenticator;
+
+    /**
+     * @param secret cluster-internal HMAC key (at least 256 bits)
+     * @param ttl time from signing to expiration of principal
+     */
+    public InternalPrincipal(String secret, Duration ttl) {
+        this(DEFAULT_HEADER_NAME, secret, ttl);
+    }
+
+    /**
+     * @param headerName name of the header
+     * @param secret cluster-internal HMAC key (at least 256 bits)
+     * @param ttl time from signing to expiration of principal
+     */
+    public InternalPrincipal(String headerName, String secret, Duration ttl) {
+        SecretSignatureConfiguration signature = new SecretSignatureConfiguration(secret, JWSAlgorithm.HS256);
+        this.headerName = headerName;
+        this.ttlMillis = ttl.toMillis();
+        this.minter = new JwtMinter(new JwtGenerator<>(signature));
+        this.authenticator = new JwtAuthenticator(signature);
+    }
+
+    /**
+     * Parse {@link InternalPrincipal} from Lagom conf.
+     *
+     * @param conf Configuration of principal
+     * @return Internal principal
+     */
+    public static InternalPrincipal parse(Config conf) {
+        return new InternalPrincipal(
+            conf.hasPath("header-name") ? conf.getString("header-name") : DEFAULT_HEADER_NAME,
+            conf.getString("secret"),
+            conf.hasPath("ttl") ? conf.getDuration("ttl") : DEFAULT_TTL
+        );
+    }
+
+    /**
+     * Sign the profile. Principal expires after {@code ttl}, but not later than the profile itself ({@code exp}),
+     * so re-signing at every hop does not extend the lifetime of the original token.
+     *
+     * @param profile verified profile
+     * @return value of the header
+     */
+    public String sign(CommonProfile profile) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        Date expirationTime = JwtProfileCache.expirationTime(profile);
+        if (expirationTime != null) expiresAt = Math.min(expiresAt, expirationTime.getTime());
+        return minter.mint(profile, new Date(now), new Date(expiresAt));
+    }
+
+    /**
+     * Verify the principal.
+     *
+     * @param value value of the header
+     * @return profile or {@code null} if the principal is invalid or expired
+     */
+    public CommonProfile verify(String value) {
+        try {
+            return authenticator.validateToken(value);
+        } catch (CredentialsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return name of the header
+     */
+    public String getHeaderName() {
+        return headerName;
+    }
+}
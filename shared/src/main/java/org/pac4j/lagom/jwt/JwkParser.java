@@ -11,14 +11,8 @@ import com.nimbusds.jose.jwk.RSAKey;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigRenderOptions;
 import org.pac4j.jwt.config.encryption.AbstractEncryptionConfiguration;
-import org.pac4j.jwt.config.encryption.ECEncryptionConfiguration;
 import org.pac4j.jwt.config.encryption.EncryptionConfiguration;
-import org.pac4j.jwt.config.encryption.RSAEncryptionConfiguration;
-import org.pac4j.jwt.config.encryption.SecretEncryptionConfiguration;
 import org.pac4j.jwt.config.signature.AbstractSignatureConfiguration;
-import org.pac4j.jwt.config.signature.ECSignatureConfiguration;
-import org.pac4j.jwt.config.signature.RSASignatureConfiguration;
-import org.pac4j.jwt.config.signature.SecretSignatureConfiguration;
 import org.pac4j.jwt.config.signature.SignatureConfiguration;
 
 import java.text.ParseException;
@@ -31,20 +25,27 @@ class JwkParser {
     static AbstractEncryptionConfiguration parseEncryption(JWK jwk) throws JOSEException {
         AbstractEncryptionConfiguration encryption = null;
         if (jwk instanceof OctetSequenceKey) {
-            encryption = new SecretEncryptionConfiguration(((OctetSequenceKey) jwk).toByteArray());
+            encryption = new ReusableSecretEncryptionConfiguration(((OctetSequenceKey) jwk).toByteArray(), jwk.getKeyID());
         } else if (jwk instanceof RSAKey) {
-            encryption = new RSAEncryptionConfiguration(((RSAKey) jwk).toKeyPair());
+            encryption = new ReusableRSAEncryptionConfiguration(((RSAKey) jwk).toKeyPair(), jwk.getKeyID());
         } else if (jwk instanceof ECKey) {
-            encryption = new ECEncryptionConfiguration(((ECKey) jwk).toKeyPair());
+            encryption = new ReusableECEncryptionConfiguration(((ECKey) jwk).toKeyPair(), jwk.getKeyID());
         }
         return encryption;
     }
 
-    static EncryptionConfiguration parseEncryption(Config conf) throws ParseException, JOSEException {
+    static JWK parseJwk(Config conf) throws ParseException {
         if (!conf.hasPath("jwk")) return null;
-        AbstractEncryptionConfiguration encryption = parseEncryption(
-            JWK.parse(conf.getConfig("jwk").root().render(ConfigRenderOptions.concise()))
-        );
+        return JWK.parse(conf.getConfig("jwk").root().render(ConfigRenderOptions.concise()));
+    }
+
+    static EncryptionConfiguration parseEncryption(Config conf) throws ParseException, JOSEException {
+        JWK jwk = parseJwk(conf);
+        return jwk == null ? null : parseEncryption(jwk, conf);
+    }
+
+    static EncryptionConfiguration parseEncryption(JWK jwk, Config conf) throws JOSEException {
+        AbstractEncryptionConfiguration encryption = parseEncryption(jwk);
         if (encryption != null) {
             if (conf.hasPath("algorithm")) encryption.setAlgorithm(JWEAlgorithm.parse(conf.getString("algorithm")));
             if (conf.hasPath("method")) encryption.setMethod(EncryptionMethod.parse(conf.getString("method")));
@@ -55,20 +56,22 @@ class JwkParser {
     static AbstractSignatureConfiguration parseSignature(JWK jwk) throws JOSEException {
         AbstractSignatureConfiguration signature = null;
         if (jwk instanceof OctetSequenceKey) {
-            signature = new SecretSignatureConfiguration(((OctetSequenceKey) jwk).toByteArray());
+            signature = new ReusableSecretSignatureConfiguration(((OctetSequenceKey) jwk).toByteArray());
         } else if (jwk instanceof RSAKey) {
-            signature = new RSASignatureConfiguration(((RSAKey) jwk).toKeyPair());
+            signature = new ReusableRSASignatureConfiguration(((RSAKey) jwk).toKeyPair());
         } else if (jwk instanceof ECKey) {
-            signature = new ECSignatureConfiguration(((ECKey) jwk).toKeyPair());
+            signature = new ReusableECSignatureConfiguration(((ECKey) jwk).toKeyPair());
         }
         return signature;
     }
 
     static SignatureConfiguration parseSignature(Config conf) throws ParseException, JOSEException {
-        if (!conf.hasPath("jwk")) return null;
-        AbstractSignatureConfiguration signature = parseSignature(
-            JWK.parse(conf.getConfig("jwk").root().render(ConfigRenderOptions.concise()))
-        );
+        JWK jwk = parseJwk(conf);
+        return jwk == null ? null : parseSignature(jwk, conf);
+    }
+
+    static SignatureConfiguration parseSignature(JWK jwk, Config conf) throws JOSEException {
+        AbstractSignatureConfiguration signature = parseSignature(jwk);
         if (signature != null && conf.hasPath("algorithm")) {
             signature.setAlgorithm(JWSAlgorithm.parse(conf.getString("algorithm")));
         }
@@ -0,0 +1,48 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.util.ResourceRetriever;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * <p>Asynchronous loader of JWK set documents, used by {@link JwksRefresher}.</p>
+ * <p>Implementation may use any non-blocking HTTP client (Play WS, Akka HTTP etc.).
+ * Default implementation {@link #of(ResourceRetriever, Executor)} runs {@link ResourceRetriever}
+ * on the dedicated executor, so request threads are never blocked by network I/O.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@FunctionalInterface
+public interface JwksFetcher {
+
+    /**
+     * Load JWK set.
+     *
+     * @param url URL of JWK set
+     * @return JSON of JWK set
+     */
+    CompletionStage<String> fetch(URL url);
+
+    /**
+     * Fetcher running {@link ResourceRetriever} on the executor.
+     *
+     * @param retriever Resource retriever
+     * @param executor Executor for blocking I/O
+     * @return JWK set fetcher
+     */
+    static JwksFetcher of(ResourceRetriever retriever, Executor executor) {
+        return url -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return retriever.retrieveResource(url).getContent();
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+}
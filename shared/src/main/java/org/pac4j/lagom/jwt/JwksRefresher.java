@@ -0,0 +1,497 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.typesafe.config.Config;
+import org.pac4j.jwt.config.encryption.EncryptionConfiguration;
+import org.pac4j.jwt.config.signature.SignatureConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import static com.nimbusds.jose.jwk.source.RemoteJWKSet.DEFAULT_HTTP_CONNECT_TIMEOUT;
+import static com.nimbusds.jose.jwk.source.RemoteJWKSet.DEFAULT_HTTP_READ_TIMEOUT;
+import static com.nimbusds.jose.jwk.source.RemoteJWKSet.DEFAULT_HTTP_SIZE_LIMIT;
+import static org.pac4j.lagom.jwt.JwkParser.parseEncryption;
+import static org.pac4j.lagom.jwt.JwkParser.parseSignature;
+
+/**
+ * <p>Refresher of remote JWK sets ({@code jwk-urls}) of {@link LagomJwtAuthenticator}.</p>
+ * <p>JWK sets are reloaded periodically and when token with unknown {@code kid} is received
+ * (no more often than {@code min-refetch-interval}). All URLs are fetched concurrently, the last good JWK set
+ * of each URL is kept: if one URL fails, keys are still updated from the others, and the failed URL keeps its
+ * last known keys. New keys are swapped into the authenticator atomically.</p>
+ * <p>Last loaded JWK sets may be saved to a snapshot file ({@code jwk-snapshot}), so the next start uses keys
+ * from the snapshot at once and loads live keys in background. {@link #isReady()} tells whether live keys
+ * of all URLs have been loaded since start.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+public final class JwksRefresher implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwksRefresher.class);
+
+    private static final Duration DEFAULT_INTERVAL = Duration.ofMinutes(15);
+
+    private static final Duration DEFAULT_MIN_REFETCH_INTERVAL = Duration.ofSeconds(30);
+
+    private static final Duration DEFAULT_STARTUP_TIMEOUT = Duration.ofSeconds(10);
+
+    private static final long MIN_RETRY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final int MAX_FETCH_THREADS = 8;
+
+    private final LagomJwtAuthenticator authenticator;
+
+    private final List<URL> urls;
+
+    private final JwtKeyIndex staticKeys;
+
+    private final JwksFetcher fetcher;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final long minRefetchIntervalNanos;
+
+    private final AtomicLong lastRefetch;
+
+    private final Path snapshot;
+
+    private final AtomicReferenceArray<JwkSetDocument> documents;
+
+    private final AtomicReference<CompletableFuture<JwtKeyIndex>> inFlight = new AtomicReference<>();
+
+    private final CompletableFuture<JwtKeyIndex> ready = new CompletableFuture<>();
+
+    /**
+     * @param authenticator Authenticator to update
+     * @param urls URLs of JWK sets
+     * @param staticKeys Keys from conf, added to loaded keys
+     * @param fetcher Loader of JWK sets
+     * @param scheduler Scheduler of periodic refresh (shut down by {@link #close()})
+     * @param minRefetchInterval Minimal interval between refetches on unknown {@code kid}
+     */
+    public JwksRefresher(LagomJwtAuthenticator authenticator, List<URL> urls, JwtKeyIndex staticKeys, JwksFetcher fetcher,
+                         ScheduledExecutorService scheduler, Duration minRefetchInterval) {
+        this(authenticator, urls, staticKeys, fetcher, scheduler, minRefetchInterval, null);
+    }
+
+    /**
+     * @param authenticator Authenticator to update
+     * @param urls URLs of JWK sets
+     * @param staticKeys Keys from conf, added to loaded keys
+     * @param fetcher Loader of JWK sets
+     * @param scheduler Scheduler of periodic refresh (shut down by {@link #close()})
+     * @param minRefetchInterval Minimal interval between refetches on unknown {@code kid}
+     * @param snapshot File with the last loaded JWK sets or {@code null}
+     */
+    public JwksRefresher(LagomJwtAuthenticator authenticator, List<URL> urls, JwtKeyIndex staticKeys, JwksFetcher fetcher,
+                         ScheduledExecutorService scheduler, Duration minRefetchInterval, Path snapshot) {
+        this.snapshot = snapshot;
+        this.authenticator = authenticator;
+        this.urls = Collections.unmodifiableList(new ArrayList<>(urls));
+        this.documents = new AtomicReferenceArray<>(this.urls.size());
+        this.staticKeys = staticKeys;
+        this.fetcher = fetcher;
+        this.scheduler = scheduler;
+        this.minRefetchIntervalNanos = minRefetchInterval.toNanos();
+        this.lastRefetch = new AtomicLong(System.nanoTime() - minRefetchIntervalNanos);
+    }
+
+    /**
+     * <p>Parse {@link JwksRefresher} from Lagom conf of authenticator,
+     * load keys of {@code jwk-urls} into the authenticator and schedule refresh.</p>
+     * <p>Refresh is configured by {@code jwk-refresh.interval} (default 15 minutes, {@code 0} disables periodic refresh)
+     * and {@code jwk-refresh.min-refetch-interval} (default 30 seconds).</p>
+     * <p>Keys of {@code jwk-snapshot} file are used at once. If the snapshot has keys of all URLs, live keys are loaded
+     * in background, otherwise start waits for live keys of the missing URLs no longer than
+     * {@code jwk-refresh.startup-timeout} (default 10 seconds). Start fails only if a URL has neither live
+     * nor snapshot keys. Until live keys of all URLs are loaded, they are retried every {@code min-refetch-interval}.</p>
+     *
+     * @param conf Configuration of authenticator
+     * @param authenticator Authenticator to update
+     * @param staticKeys Keys from conf, added to loaded keys
+     * @return JWK set refresher
+     * @throws MalformedURLException if URL of JWK set is invalid
+     * @throws KeySourceException if JWK sets can not be loaded
+     */
+    public static JwksRefresher parse(Config conf, LagomJwtAuthenticator authenticator, JwtKeyIndex staticKeys)
+        throws MalformedURLException, KeySourceException {
+        List<URL> urls = new ArrayList<>();
+        for (String jwkUrl : conf.getStringList("jwk-urls")) {
+            urls.add(new URL(jwkUrl));
+        }
+        DefaultResourceRetriever retriever;
+        if (conf.hasPath("jwk-retriever")) {
+            Config retrieverConf = conf.getConfig("jwk-retriever");
+            retriever = new DefaultResourceRetriever(
+                retrieverConf.hasPath("connect-timeout") ? retrieverConf.getInt("connect-timeout") : DEFAULT_HTTP_CONNECT_TIMEOUT,
+                retrieverConf.hasPath("read-timeout") ? retrieverConf.getInt("read-timeout") : DEFAULT_HTTP_READ_TIMEOUT,
+                retrieverConf.hasPath("size-limit") ? retrieverConf.getInt("size-limit") : DEFAULT_HTTP_SIZE_LIMIT
+            );
+        } else {
+            retriever = new DefaultResourceRetriever(DEFAULT_HTTP_CONNECT_TIMEOUT, DEFAULT_HTTP_READ_TIMEOUT, DEFAULT_HTTP_SIZE_LIMIT);
+        }
+        Config refreshConf = conf.hasPath("jwk-refresh") ? conf.getConfig("jwk-refresh") : null;
+        Duration interval = refreshConf != null && refreshConf.hasPath("interval")
+            ? refreshConf.getDuration("interval") : DEFAULT_INTERVAL;
+        Duration minRefetchInterval = refreshConf != null && refreshConf.hasPath("min-refetch-interval")
+            ? refreshConf.getDuration("min-refetch-interval") : DEFAULT_MIN_REFETCH_INTERVAL;
+        Duration startupTimeout = refreshConf != null && refreshConf.hasPath("startup-timeout")
+            ? refreshConf.getDuration("startup-timeout") : DEFAULT_STARTUP_TIMEOUT;
+        Path snapshot = conf.hasPath("jwk-snapshot") ? Paths.get(conf.getString("jwk-snapshot")) : null;
+
+        // Blocking retriever runs on the scheduler, one thread per URL (up to a limit) to fetch them concurrently
+        AtomicInteger threads = new AtomicInteger();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+            Math.max(1, Math.min(urls.size(), MAX_FETCH_THREADS)),
+            runnable -> {
+                Thread thread = new Thread(runnable, "pac4j-lagom-jwks-refresh-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        JwksRefresher refresher = new JwksRefresher(
+            authenticator, urls, staticKeys, JwksFetcher.of(retriever, scheduler), scheduler, minRefetchInterval, snapshot
+        );
+        if (!refresher.loadSnapshot()) {
+            try {
+                refresher.load(startupTimeout);
+            } catch (KeySourceException ex) {
+                refresher.close();
+                throw ex;
+            }
+        }
+        if (!refresher.isReady()) refresher.refreshUntilReady();
+        refresher.start(interval);
+        authenticator.setJwksRefresher(refresher);
+        return refresher;
+    }
+
+    /**
+     * Load JWK sets and wait for result.
+     *
+     * @throws KeySourceException if a JWK set has neither live nor last known keys
+     */
+    public void load() throws KeySourceException {
+        try {
+            refresh().toCompletableFuture().join();
+        } catch (CompletionException ex) {
+            throw new KeySourceException("Couldn't retrieve remote JWK sets " + urls, ex.getCause());
+        }
+    }
+
+    /**
+     * Load JWK sets and wait for result no longer than timeout.
+     *
+     * @param timeout Maximum time to wait for all JWK sets
+     * @throws KeySourceException if a JWK set has neither live nor last known keys in time
+     */
+    public void load(Duration timeout) throws KeySourceException {
+        try {
+            refresh().toCompletableFuture().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            throw new KeySourceException("Couldn't retrieve remote JWK sets " + urls, ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new KeySourceException("Couldn't retrieve remote JWK sets " + urls + " in " + timeout, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new KeySourceException("Interrupted retrieval of remote JWK sets " + urls, ex);
+        }
+    }
+
+    /**
+     * Load keys from snapshot file into authenticator. Keys of URLs that are already loaded are not replaced.
+     *
+     * @return {@code true} if snapshot has JWK sets of all URLs
+     */
+    public boolean loadSnapshot() {
+        if (snapshot == null || !Files.isRegularFile(snapshot)) return false;
+        try {
+            Map<String, Object> saved = JSONObjectUtils.parse(new String(Files.readAllBytes(snapshot), StandardCharsets.UTF_8));
+            List<JwkSetDocument> loaded = new ArrayList<>(urls.size());
+            for (URL url : urls) {
+                Map<String, Object> document = JSONObjectUtils.getJSONObject(saved, url.toString());
+                loaded.add(document == null ? null : JwkSetDocument.parse(JSONObjectUtils.toJSONString(document), false));
+            }
+            boolean complete = true;
+            for (int i = 0; i < urls.size(); i++) {
+                if (loaded.get(i) == null) {
+                    LOGGER.info("Snapshot {} has no JWK set {}", snapshot, urls.get(i));
+                    complete = false;
+                } else {
+                    documents.compareAndSet(i, null, loaded.get(i));
+                }
+            }
+            authenticator.setKeys(index());
+            LOGGER.info("Keys of JWK sets {} are loaded from snapshot {}", urls, snapshot);
+            return complete;
+        } catch (IOException | ParseException | RuntimeException ex) {
+            LOGGER.warn("Failed to load snapshot {} of JWK sets, it is ignored", snapshot, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Reload JWK sets in background, retried every {@code min-refetch-interval} (at least a second)
+     * until live keys of all URLs are loaded.
+     */
+    public void refreshUntilReady() {
+        refresh().whenComplete((keys, error) -> {
+            if (isReady() || scheduler.isShutdown()) return;
+            try {
+                scheduler.schedule(this::refreshUntilReady,
+                    Math.max(minRefetchIntervalNanos, MIN_RETRY_INTERVAL_NANOS), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException ex) {
+                LOGGER.debug("Refresher of JWK sets {} is closed", urls);
+            }
+        });
+    }
+
+    /**
+     * @return {@code true} if live keys of all URLs have been loaded since start (not only keys of snapshot)
+     */
+    public boolean isReady() {
+        return ready.isDone();
+    }
+
+    /**
+     * @return Stage completed with the first live keys of all URLs loaded since start
+     */
+    public CompletionStage<JwtKeyIndex> ready() {
+        return ready.thenApply(Function.identity());
+    }
+
+    /**
+     * Schedule periodic refresh.
+     *
+     * @param interval Interval of refresh, zero or negative interval disables refresh
+     */
+    public void start(Duration interval) {
+        if (interval.isZero() || interval.isNegative()) return;
+        scheduler.scheduleWithFixedDelay(this::refresh, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reload JWK sets. Concurrent calls share one reload.
+     * JWK set that fails to load keeps its last known keys, keys of the other JWK sets are updated.
+     *
+     * @return New keys of authenticator, completed exceptionally if a JWK set has neither live nor last known keys
+     */
+    public CompletionStage<JwtKeyIndex> refresh() {
+        CompletableFuture<JwtKeyIndex> promise = new CompletableFuture<>();
+        while (!inFlight.compareAndSet(null, promise)) {
+            CompletableFuture<JwtKeyIndex> current = inFlight.get();
+            if (current != null) return current;
+        }
+        List<CompletableFuture<Throwable>> loads = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            loads.add(fetch(i));
+        }
+        CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> update(loads)).whenComplete((index, error) -> {
+            // Reload is finished whatever happened, the next call starts a new one
+            inFlight.set(null);
+            if (error == null) promise.complete(index);
+            else promise.completeExceptionally(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        });
+        return promise;
+    }
+
+    /**
+     * Update keys of authenticator by loaded JWK sets.
+     *
+     * @return New keys of authenticator
+     * @throws CompletionException if a JWK set has neither live nor last known keys
+     */
+    private JwtKeyIndex update(List<CompletableFuture<Throwable>> loads) {
+        Throwable missing = null;
+        boolean fetched = false;
+        for (int i = 0; i < urls.size(); i++) {
+            Throwable error = loads.get(i).join();
+            if (error == null) fetched = true;
+            else if (missing == null && documents.get(i) == null) missing = error;
+        }
+        JwtKeyIndex index = authenticator.getKeys();
+        if (fetched) {
+            try {
+                index = index();
+                authenticator.setKeys(index);
+                saveSnapshot();
+            } catch (RuntimeException ex) {
+                LOGGER.warn("Failed to update keys of JWK sets {}", urls, ex);
+                throw ex;
+            }
+            if (allLive()) ready.complete(index);
+        }
+        if (missing != null) throw new CompletionException(missing);
+        return index;
+    }
+
+    /**
+     * Fetch JWK set of URL and keep it as the last good one.
+     *
+     * @return Stage completed with {@code null} if JWK set is fetched or with the error (it is never failed)
+     */
+    private CompletableFuture<Throwable> fetch(int i) {
+        URL url = urls.get(i);
+        CompletableFuture<String> json;
+        try {
+            json = fetcher.fetch(url).toCompletableFuture();
+        } catch (RuntimeException ex) {
+            json = failed(ex);
+        }
+        return json.thenApply(document -> JwkSetDocument.parse(document, true)).handle((document, error) -> {
+            if (error != null) {
+                LOGGER.warn("Failed to refresh JWK set {}, the last known keys are kept", url, error);
+                return error;
+            }
+            documents.set(i, document);
+            return null;
+        });
+    }
+
+    /**
+     * Request refetch of JWK sets because token with unknown {@code kid} is received.
+     * Refetch is started in background no more often than {@code min-refetch-interval}.
+     *
+     * @param keyId Unknown key ID
+     */
+    public void onUnknownKeyId(String keyId) {
+        long now = System.nanoTime();
+        long last = lastRefetch.get();
+        if (now - last < minRefetchIntervalNanos || !lastRefetch.compareAndSet(last, now)) return;
+        LOGGER.debug("Unknown key ID {}, JWK sets {} are refetched", keyId, urls);
+        refresh();
+    }
+
+    /**
+     * Stop periodic refresh.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private JwtKeyIndex index() {
+        JwtKeyIndex.Builder keys = JwtKeyIndex.builder();
+        for (int i = 0; i < documents.length(); i++) {
+            JwkSetDocument document = documents.get(i);
+            if (document != null) keys.addAll(document.keys);
+        }
+        return keys.addAll(staticKeys).build();
+    }
+
+    private boolean allLive() {
+        for (int i = 0; i < documents.length(); i++) {
+            JwkSetDocument document = documents.get(i);
+            if (document == null || !document.live) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the last good JWK sets to a temporary file and move it over the snapshot,
+     * so a crash never leaves a partial snapshot.
+     */
+    private void saveSnapshot() {
+        if (snapshot == null) return;
+        try {
+            Map<String, Object> saved = JSONObjectUtils.newJSONObject();
+            for (int i = 0; i < urls.size(); i++) {
+                JwkSetDocument document = documents.get(i);
+                if (document != null) saved.put(urls.get(i).toString(), JSONObjectUtils.parse(document.json));
+            }
+            Path directory = snapshot.toAbsolutePath().getParent();
+            if (directory != null) Files.createDirectories(directory);
+            Path temporary = Files.createTempFile(directory, snapshot.getFileName().toString(), ".tmp");
+            try {
+                Files.write(temporary, JSONObjectUtils.toJSONString(saved).getBytes(StandardCharsets.UTF_8));
+                Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // No-op if the snapshot is moved, otherwise the partial file is not left behind
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException | ParseException ex) {
+            LOGGER.warn("Failed to save snapshot {} of JWK sets", snapshot, ex);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    /**
+     * JSON of JWK set and keys parsed from it, either fetched since start (live) or read from snapshot.
+     */
+    private static final class JwkSetDocument {
+
+        private final String json;
+
+        private final JwtKeyIndex keys;
+
+        private final boolean live;
+
+        private JwkSetDocument(String json, JwtKeyIndex keys, boolean live) {
+            this.json = json;
+            this.keys = keys;
+            this.live = live;
+        }
+
+        private static JwkSetDocument parse(String json, boolean live) {
+            try {
+                JWKSet jwkSet = JWKSet.parse(json);
+                JwtKeyIndex.Builder keys = JwtKeyIndex.builder();
+                for (JWK jwk : new JWKSelector(new JWKMatcher.Builder().keyUse(KeyUse.SIGNATURE).build()).select(jwkSet)) {
+                    SignatureConfiguration signatureConfiguration = parseSignature(jwk);
+                    if (signatureConfiguration != null) keys.signature(JwtKeyIndex.keyId(jwk), signatureConfiguration);
+                }
+                for (JWK jwk : new JWKSelector(new JWKMatcher.Builder().keyUse(KeyUse.ENCRYPTION).build()).select(jwkSet)) {
+                    EncryptionConfiguration encryptionConfiguration = parseEncryption(jwk);
+                    if (encryptionConfiguration != null) keys.encryption(JwtKeyIndex.keyId(jwk), encryptionConfiguration);
+                }
+                return new JwkSetDocument(json, keys.build(), live);
+            } catch (ParseException | JOSEException ex) {
+                throw new CompletionException(ex);
+            }
+        }
+    }
+}
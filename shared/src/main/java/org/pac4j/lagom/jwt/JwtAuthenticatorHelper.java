@@ -1,30 +1,21 @@
 package org.pac4j.lagom.jwt;
 
+import akka.actor.ActorSystem;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKMatcher;
-import com.nimbusds.jose.jwk.JWKSelector;
-import com.nimbusds.jose.jwk.KeyUse;
-import com.nimbusds.jose.jwk.source.JWKSource;
-import com.nimbusds.jose.jwk.source.RemoteJWKSet;
-import com.nimbusds.jose.util.DefaultResourceRetriever;
-import com.nimbusds.jose.util.ResourceRetriever;
 import com.typesafe.config.Config;
 import org.pac4j.jwt.config.encryption.EncryptionConfiguration;
 import org.pac4j.jwt.config.signature.SignatureConfiguration;
 import org.pac4j.jwt.credentials.authenticator.JwtAuthenticator;
+import org.pac4j.lagom.concurrent.SingleFlight;
 
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.ParseException;
-import java.util.ArrayList;
-import java.util.List;
 
-import static com.nimbusds.jose.jwk.source.RemoteJWKSet.DEFAULT_HTTP_CONNECT_TIMEOUT;
-import static com.nimbusds.jose.jwk.source.RemoteJWKSet.DEFAULT_HTTP_READ_TIMEOUT;
-import static com.nimbusds.jose.jwk.source.RemoteJWKSet.DEFAULT_HTTP_SIZE_LIMIT;
 import static org.pac4j.lagom.jwt.JwkParser.parseEncryption;
+import static org.pac4j.lagom.jwt.JwkParser.parseJwk;
 import static org.pac4j.lagom.jwt.JwkParser.parseSignature;
+import static org.pac4j.lagom.jwt.JwtKeyIndex.keyId;
 
 /**
  * Helper for parsing {@link JwtAuthenticator} from Lagom configuration.
@@ -36,7 +27,7 @@ import static org.pac4j.lagom.jwt.JwkParser.parseSignature;
 public final class JwtAuthenticatorHelper {
 
     /**
-     * Parse {@link JwtAuthenticator} from Lagom conf.
+     * Parse {@link JwtAuthenticator} from Lagom conf (see {@link #parseLagom(Config)}).
      *
      * @param conf Configuration of authenticator
      * @return JWT authenticator
@@ -44,47 +35,81 @@ public final class JwtAuthenticatorHelper {
      * @throws JOSEException a signing/encryption exception
      */
     public static JwtAuthenticator parse(Config conf) throws ParseException, JOSEException, MalformedURLException {
-        List<SignatureConfiguration> signatures = new ArrayList<>();
-        List<EncryptionConfiguration> encryptions = new ArrayList<>();
-        ResourceRetriever jwkRetriever = null;
-        if (conf.hasPath("jwk-retriever")) {
-            Config retrieverConf = conf.getConfig("jwk-retriever");
-            jwkRetriever = new DefaultResourceRetriever(
-                retrieverConf.hasPath("connect-timeout") ? retrieverConf.getInt("connect-timeout") : DEFAULT_HTTP_CONNECT_TIMEOUT,
-                retrieverConf.hasPath("read-timeout") ? retrieverConf.getInt("read-timeout") : DEFAULT_HTTP_READ_TIMEOUT,
-                retrieverConf.hasPath("size-limit") ? retrieverConf.getInt("size-limit") : DEFAULT_HTTP_SIZE_LIMIT
-            );
-        }
-        if (conf.hasPath("jwk-urls")) {
-            for (String jwkUrl : conf.getStringList("jwk-urls")) {
-                JWKSource<?> jwkSet = new RemoteJWKSet<>(new URL(jwkUrl), jwkRetriever);
-                JWKSelector jwkSelector = new JWKSelector(new JWKMatcher.Builder().keyUse(KeyUse.SIGNATURE).build());
-                List<JWK> jwks = jwkSet.get(jwkSelector, null);
-                for (JWK jwk : jwks) {
-                    SignatureConfiguration signatureConfiguration = parseSignature(jwk);
-                    if (signatureConfiguration != null) signatures.add(signatureConfiguration);
-                }
-                jwkSelector = new JWKSelector(new JWKMatcher.Builder().keyUse(KeyUse.ENCRYPTION).build());
-                jwks = jwkSet.get(jwkSelector, null);
-                for (JWK jwk : jwks) {
-                    EncryptionConfiguration encryptionConfiguration = parseEncryption(jwk);
-                    if (encryptionConfiguration != null) encryptions.add(encryptionConfiguration);
-                }
-            }
-        }
+        return parseLagom(conf);
+    }
+
+    /**
+     * Parse {@link LagomJwtAuthenticator} from Lagom conf.
+     * Keys are indexed by {@code kid} (see {@link JwtKeyIndex}).
+     * Keys of {@code jwk-urls} are refreshed in background (see {@link JwksRefresher}).
+     * Verified tokens are cached if {@code cache} section is present (see {@link JwtProfileCache}).
+     * Rejected tokens are remembered if {@code rejection-cache} section is present (see {@link JwtRejectionCache}).
+     * Tokens are checked before decryption and verification if {@code prevalidation} section is present (see {@link JwtPrevalidator}).
+     * Concurrent verifications of the same token are coalesced if {@code single-flight} section is present (see {@link SingleFlight}).
+     * Section {@code shared-cache} requires actor system (see {@link #parseLagom(Config, ActorSystem)}).
+     *
+     * @param conf Configuration of authenticator
+     * @return JWT authenticator with caches and key index
+     * @throws ParseException a parse exception
+     * @throws JOSEException a signing/encryption exception
+     */
+    public static LagomJwtAuthenticator parseLagom(Config conf) throws ParseException, JOSEException, MalformedURLException {
+        return parseLagom(conf, null);
+    }
+
+    /**
+     * Parse {@link LagomJwtAuthenticator} from Lagom conf (see {@link #parseLagom(Config)}).
+     * Verified tokens are shared by nodes of the cluster if {@code shared-cache} section is present
+     * (see {@link DistributedJwtProfileCache}).
+     *
+     * @param conf Configuration of authenticator
+     * @param system Actor system of the service (member of the cluster)
+     * @return JWT authenticator with caches and key index
+     * @throws ParseException a parse exception
+     * @throws JOSEException a signing/encryption exception
+     */
+    public static LagomJwtAuthenticator parseLagom(Config conf, ActorSystem system)
+        throws ParseException, JOSEException, MalformedURLException {
+        JwtKeyIndex.Builder keys = JwtKeyIndex.builder();
         if (conf.hasPath("signatures")) {
             for (Config signature : conf.getConfigList("signatures")) {
-                SignatureConfiguration signatureConfiguration = parseSignature(signature);
-                if (signatureConfiguration != null) signatures.add(signatureConfiguration);
+                JWK jwk = parseJwk(signature);
+                if (jwk == null) continue;
+                SignatureConfiguration signatureConfiguration = parseSignature(jwk, signature);
+                if (signatureConfiguration != null) keys.signature(keyId(jwk), signatureConfiguration);
             }
         }
         if (conf.hasPath("encryptions")) {
-            for (Config signature : conf.getConfigList("encryptions")) {
-                EncryptionConfiguration encryptionConfiguration = parseEncryption(signature);
-                if (encryptionConfiguration != null) encryptions.add(encryptionConfiguration);
+            for (Config encryption : conf.getConfigList("encryptions")) {
+                JWK jwk = parseJwk(encryption);
+                if (jwk == null) continue;
+                EncryptionConfiguration encryptionConfiguration = parseEncryption(jwk, encryption);
+                if (encryptionConfiguration != null) keys.encryption(keyId(jwk), encryptionConfiguration);
             }
         }
-        return new JwtAuthenticator(signatures, encryptions);
+        JwtKeyIndex staticKeys = keys.build();
+        LagomJwtAuthenticator authenticator = new LagomJwtAuthenticator(staticKeys);
+        if (conf.hasPath("jwk-urls")) {
+            JwksRefresher.parse(conf, authenticator, staticKeys);
+        }
+        if (conf.hasPath("cache")) {
+            authenticator.setProfileCache(JwtProfileCache.parse(conf.getConfig("cache")));
+        }
+        if (conf.hasPath("shared-cache")) {
+            if (system == null) throw new IllegalArgumentException("Section shared-cache of JWT authenticator requires actor system");
+            authenticator.setSharedProfileStore(DistributedJwtProfileCache.parse(system, conf.getConfig("shared-cache")));
+        }
+        if (conf.hasPath("rejection-cache")) {
+            authenticator.setRejectionCache(JwtRejectionCache.parse(conf.getConfig("rejection-cache")));
+        }
+        if (conf.hasPath("prevalidation")) {
+            authenticator.setPrevalidator(JwtPrevalidator.parse(conf.getConfig("prevalidation")));
+        }
+        if (conf.hasPath("single-flight")) {
+            authenticator.setSingleFlight(SingleFlight.parse(conf.getConfig("single-flight"),
+                profile -> profile == null ? null : JwtProfileCache.copy(profile)));
+        }
+        return authenticator;
     }
 
     private JwtAuthenticatorHelper() {}
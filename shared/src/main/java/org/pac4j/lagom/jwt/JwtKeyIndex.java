@@ -0,0 +1,214 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import org.pac4j.jwt.config.encryption.EncryptionConfiguration;
+import org.pac4j.jwt.config.signature.SignatureConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Immutable set of keys of {@link LagomJwtAuthenticator}, indexed by key ID.</p>
+ * <p>Key ID is {@code kid} of JWK or, if it is absent, RFC 7638 thumbprint of JWK.
+ * Token with {@code kid} header is checked only against keys with the same ID (and supported {@code alg}),
+ * other tokens are checked against all keys.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class JwtKeyIndex {
+
+    private static final JwtKeyIndex EMPTY = new Builder().build();
+
+    private final List<SignatureConfiguration> signatures;
+
+    private final List<String> signatureKeyIds;
+
+    private final Map<String, List<SignatureConfiguration>> signaturesByKeyId;
+
+    private final List<EncryptionConfiguration> encryptions;
+
+    private final List<String> encryptionKeyIds;
+
+    private final Map<String, List<EncryptionConfiguration>> encryptionsByKeyId;
+
+    private JwtKeyIndex(Builder builder) {
+        this.signatures = Collections.unmodifiableList(new ArrayList<>(builder.signatures));
+        this.signatureKeyIds = Collections.unmodifiableList(new ArrayList<>(builder.signatureKeyIds));
+        this.signaturesByKeyId = freeze(builder.signaturesByKeyId);
+        this.encryptions = Collections.unmodifiableList(new ArrayList<>(builder.encryptions));
+        this.encryptionKeyIds = Collections.unmodifiableList(new ArrayList<>(builder.encryptionKeyIds));
+        this.encryptionsByKeyId = freeze(builder.encryptionsByKeyId);
+    }
+
+    /**
+     * @return index without keys
+     */
+    public static JwtKeyIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return builder of index
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * ID of JWK in the index.
+     *
+     * @param jwk JWK
+     * @return {@code kid} of JWK or its RFC 7638 thumbprint if {@code kid} is absent
+     * @throws JOSEException if thumbprint can not be computed
+     */
+    public static String keyId(JWK jwk) throws JOSEException {
+        return jwk.getKeyID() != null ? jwk.getKeyID() : jwk.computeThumbprint().toString();
+    }
+
+    /**
+     * @return all signature configurations in order of registration
+     */
+    public List<SignatureConfiguration> getSignatureConfigurations() {
+        return signatures;
+    }
+
+    /**
+     * @param keyId key ID ({@code kid} header of token)
+     * @return signature configurations of the key or {@code null} if key is unknown
+     */
+    public List<SignatureConfiguration> getSignatureConfigurations(String keyId) {
+        return keyId == null ? null : signaturesByKeyId.get(keyId);
+    }
+
+    /**
+     * @param signature signature configuration
+     * @return key ID of the configuration or {@code null} if it is not in the index
+     */
+    public String getSignatureKeyId(SignatureConfiguration signature) {
+        for (int i = 0; i < signatures.size(); i++) {
+            if (signatures.get(i) == signature) return signatureKeyIds.get(i);
+        }
+        return null;
+    }
+
+    /**
+     * @return all encryption configurations in order of registration
+     */
+    public List<EncryptionConfiguration> getEncryptionConfigurations() {
+        return encryptions;
+    }
+
+    /**
+     * @param keyId key ID ({@code kid} header of token)
+     * @return encryption configurations of the key or {@code null} if key is unknown
+     */
+    public List<EncryptionConfiguration> getEncryptionConfigurations(String keyId) {
+        return keyId == null ? null : encryptionsByKeyId.get(keyId);
+    }
+
+    /**
+     * Check that no key of other index is missing in this one. Keys are compared by ID, keys without ID by instance
+     * of configuration.
+     *
+     * @param other other index (e.g. previous keys of authenticator)
+     * @return {@code true} if this index has all keys of other index
+     */
+    public boolean containsKeysOf(JwtKeyIndex other) {
+        return containsAll(signatureKeyIds, signatures, other.signatureKeyIds, other.signatures)
+            && containsAll(encryptionKeyIds, encryptions, other.encryptionKeyIds, other.encryptions);
+    }
+
+    private static boolean containsAll(List<String> keyIds, List<?> configurations, List<String> otherKeyIds, List<?> otherConfigurations) {
+        for (int i = 0; i < otherKeyIds.size(); i++) {
+            String keyId = otherKeyIds.get(i);
+            if (keyId != null ? !keyIds.contains(keyId) : !containsInstance(configurations, otherConfigurations.get(i))) return false;
+        }
+        return true;
+    }
+
+    private static boolean containsInstance(List<?> configurations, Object configuration) {
+        for (Object candidate : configurations) {
+            if (candidate == configuration) return true;
+        }
+        return false;
+    }
+
+    private static <T> Map<String, List<T>> freeze(Map<String, List<T>> source) {
+        Map<String, List<T>> target = new HashMap<>();
+        source.forEach((keyId, configurations) -> target.put(keyId, Collections.unmodifiableList(new ArrayList<>(configurations))));
+        return Collections.unmodifiableMap(target);
+    }
+
+    /**
+     * Builder of {@link JwtKeyIndex}.
+     */
+    public static final class Builder {
+
+        private final List<SignatureConfiguration> signatures = new ArrayList<>();
+
+        private final List<String> signatureKeyIds = new ArrayList<>();
+
+        private final Map<String, List<SignatureConfiguration>> signaturesByKeyId = new HashMap<>();
+
+        private final List<EncryptionConfiguration> encryptions = new ArrayList<>();
+
+        private final List<String> encryptionKeyIds = new ArrayList<>();
+
+        private final Map<String, List<EncryptionConfiguration>> encryptionsByKeyId = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param keyId key ID or {@code null} if configuration is not indexed
+         * @param signature signature configuration
+         * @return this builder
+         */
+        public Builder signature(String keyId, SignatureConfiguration signature) {
+            signatures.add(signature);
+            signatureKeyIds.add(keyId);
+            if (keyId != null) signaturesByKeyId.computeIfAbsent(keyId, id -> new ArrayList<>()).add(signature);
+            return this;
+        }
+
+        /**
+         * @param keyId key ID or {@code null} if configuration is not indexed
+         * @param encryption encryption configuration
+         * @return this builder
+         */
+        public Builder encryption(String keyId, EncryptionConfiguration encryption) {
+            encryptions.add(encryption);
+            encryptionKeyIds.add(keyId);
+            if (keyId != null) encryptionsByKeyId.computeIfAbsent(keyId, id -> new ArrayList<>()).add(encryption);
+            return this;
+        }
+
+        /**
+         * Add all keys of other index (keeping their IDs).
+         *
+         * @param index other index
+         * @return this builder
+         */
+        public Builder addAll(JwtKeyIndex index) {
+            for (int i = 0; i < index.signatures.size(); i++) {
+                signature(index.signatureKeyIds.get(i), index.signatures.get(i));
+            }
+            for (int i = 0; i < index.encryptions.size(); i++) {
+                encryption(index.encryptionKeyIds.get(i), index.encryptions.get(i));
+            }
+            return this;
+        }
+
+        /**
+         * @return immutable index
+         */
+        public JwtKeyIndex build() {
+            return new JwtKeyIndex(this);
+        }
+    }
+}
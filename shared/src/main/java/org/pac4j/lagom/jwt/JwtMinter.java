@@ -0,0 +1,38 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * {@link JwtGenerator} with expiration of each token instead of the shared {@code expirationTime}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class JwtMinter extends JwtGenerator<CommonProfile> {
+
+    JwtMinter(JwtGenerator<?> generator) {
+        super(generator.getSignatureConfiguration(), generator.getEncryptionConfiguration());
+    }
+
+    /**
+     * Generate token of the profile with {@code jti}, {@code iat} and {@code exp} claims.
+     *
+     * @param profile profile
+     * @param issueTime time of minting
+     * @param expirationTime time of expiration
+     * @return JWT
+     */
+    String mint(CommonProfile profile, Date issueTime, Date expirationTime) {
+        verifyProfile(profile);
+        return internalGenerate(new JWTClaimsSet.Builder(buildJwtClaimsSet(profile))
+            .jwtID(UUID.randomUUID().toString())
+            .issueTime(issueTime)
+            .expirationTime(expirationTime)
+            .build());
+    }
+}
@@ -0,0 +1,194 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.typesafe.config.Config;
+import org.pac4j.lagom.metrics.SecurityMetrics.TokenRejection;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Cheap checks of JWT made by {@link LagomJwtAuthenticator} before any key operation (decryption,
+ * verification of signature), so malformed, oversized and expired tokens are rejected without cryptography.</p>
+ * <p>Token must not be longer than {@code max-length} characters and must be in compact serialization: 3 (JWS)
+ * or 5 (JWE) non-empty base64url parts, only signature of unsecured JWS and encrypted key of JWE may be empty.
+ * {@code alg} of JWS and {@code alg}/{@code enc} of JWE are checked against allowlists
+ * ({@code algorithms}, {@code encryption-algorithms}, {@code encryption-methods}), if they are set.</p>
+ * <p>Claims of JWS are decoded without verification of signature and token is rejected if it is expired ({@code exp})
+ * or not valid yet ({@code nbf}) with {@code clock-skew}, or if {@code iss}/{@code aud} are not in allowlists
+ * ({@code issuers}, {@code audiences}), if they are set. Claims of JWE are encrypted, so only its header is checked.</p>
+ * <p>Checks may only reject token, passed token is still decrypted and verified.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class JwtPrevalidator {
+
+    private static final int DEFAULT_MAX_LENGTH = 8192;
+
+    private static final Duration DEFAULT_CLOCK_SKEW = Duration.ofSeconds(30);
+
+    private static final String NONE = "none";
+
+    private final int maxLength;
+
+    private final long clockSkewSeconds;
+
+    private final Set<String> algorithms;
+
+    private final Set<String> encryptionAlgorithms;
+
+    private final Set<String> encryptionMethods;
+
+    private final Set<String> issuers;
+
+    private final Set<String> audiences;
+
+    /**
+     * @param maxLength maximum length of token
+     * @param clockSkew allowed clock skew for {@code exp} and {@code nbf}
+     * @param algorithms allowed {@code alg} of JWS or empty to allow any
+     * @param encryptionAlgorithms allowed {@code alg} of JWE or empty to allow any
+     * @param encryptionMethods allowed {@code enc} of JWE or empty to allow any
+     * @param issuers allowed {@code iss} or empty to allow any
+     * @param audiences allowed {@code aud} (any of them must be in token) or empty to allow any
+     */
+    public JwtPrevalidator(int maxLength, Duration clockSkew, Collection<String> algorithms,
+                           Collection<String> encryptionAlgorithms, Collection<String> encryptionMethods,
+                           Collection<String> issuers, Collection<String> audiences) {
+        this.maxLength = maxLength;
+        this.clockSkewSeconds = clockSkew.getSeconds();
+        this.algorithms = Collections.unmodifiableSet(new HashSet<>(algorithms));
+        this.encryptionAlgorithms = Collections.unmodifiableSet(new HashSet<>(encryptionAlgorithms));
+        this.encryptionMethods = Collections.unmodifiableSet(new HashSet<>(encryptionMethods));
+        this.issuers = Collections.unmodifiableSet(new HashSet<>(issuers));
+        this.audiences = Collections.unmodifiableSet(new HashSet<>(audiences));
+    }
+
+    /**
+     * Parse {@link JwtPrevalidator} from Lagom conf.
+     *
+     * @param conf Configuration of checks
+     * @return Checks of token
+     */
+    public static JwtPrevalidator parse(Config conf) {
+        return new JwtPrevalidator(
+            conf.hasPath("max-length") ? conf.getInt("max-length") : DEFAULT_MAX_LENGTH,
+            conf.hasPath("clock-skew") ? conf.getDuration("clock-skew") : DEFAULT_CLOCK_SKEW,
+            strings(conf, "algorithms"),
+            strings(conf, "encryption-algorithms"),
+            strings(conf, "encryption-methods"),
+            strings(conf, "issuers"),
+            strings(conf, "audiences")
+        );
+    }
+
+    private static List<String> strings(Config conf, String path) {
+        return conf.hasPath(path) ? conf.getStringList(path) : Collections.emptyList();
+    }
+
+    /**
+     * Check token before decryption and verification.
+     *
+     * @param token JWT
+     * @return reason of rejection or {@code null} if token may be verified
+     */
+    public TokenRejection check(String token) {
+        if (token.length() > maxLength) return TokenRejection.OVERSIZED;
+        int[] dots = dots(token);
+        if (dots == null) return TokenRejection.MALFORMED;
+        try {
+            Map<String, Object> header = json(token, 0, dots[0]);
+            if (header == null) return TokenRejection.MALFORMED;
+            Object algorithm = header.get("alg");
+            if (!(algorithm instanceof String)) return TokenRejection.MALFORMED;
+            if (dots.length == 4) return checkEncrypted(token, dots, (String) algorithm, header.get("enc"));
+            if (!allowed(algorithms, algorithm)) return TokenRejection.ALGORITHM;
+            // Only unsecured JWS has empty signature
+            if (dots[1] == token.length() - 1 && !NONE.equals(algorithm)) return TokenRejection.MALFORMED;
+            Map<String, Object> claims = json(token, dots[0] + 1, dots[1]);
+            return claims == null ? TokenRejection.MALFORMED : checkClaims(claims);
+        } catch (IllegalArgumentException | ParseException e) {
+            return TokenRejection.MALFORMED;
+        }
+    }
+
+    private TokenRejection checkEncrypted(String token, int[] dots, String algorithm, Object method) {
+        if (!(method instanceof String) || NONE.equals(algorithm)) return TokenRejection.MALFORMED;
+        // Parts after encrypted key (IV, ciphertext and tag) must not be empty
+        for (int i = 1; i < dots.length; i++) {
+            int end = i + 1 < dots.length ? dots[i + 1] : token.length();
+            if (end - dots[i] < 2) return TokenRejection.MALFORMED;
+        }
+        if (!allowed(encryptionAlgorithms, algorithm) || !allowed(encryptionMethods, method)) return TokenRejection.ALGORITHM;
+        return null;
+    }
+
+    private TokenRejection checkClaims(Map<String, Object> claims) {
+        long now = System.currentTimeMillis() / 1000L;
+        Object expiration = claims.get("exp");
+        if (expiration instanceof Number && ((Number) expiration).longValue() + clockSkewSeconds < now) {
+            return TokenRejection.EXPIRED;
+        }
+        Object notBefore = claims.get("nbf");
+        if (notBefore instanceof Number && ((Number) notBefore).longValue() - clockSkewSeconds > now) {
+            return TokenRejection.NOT_YET_VALID;
+        }
+        if (!issuers.isEmpty() && !issuers.contains(claims.get("iss"))) return TokenRejection.ISSUER;
+        if (!audiences.isEmpty() && !hasAudience(claims.get("aud"))) return TokenRejection.AUDIENCE;
+        return null;
+    }
+
+    private boolean hasAudience(Object audience) {
+        if (audience instanceof String) return audiences.contains(audience);
+        if (audience instanceof Collection) {
+            for (Object value : (Collection<?>) audience) {
+                if (audiences.contains(value)) return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean allowed(Set<String> allowlist, Object value) {
+        return allowlist.isEmpty() || allowlist.contains(value);
+    }
+
+    /**
+     * Positions of separators of compact serialization, checked in one pass with the alphabet of parts.
+     *
+     * @return positions of 2 or 4 dots or {@code null} if token is malformed
+     */
+    private static int[] dots(String token) {
+        int[] dots = new int[4];
+        int count = 0;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == '.') {
+                if (count == dots.length) return null;
+                dots[count++] = i;
+            } else if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-' || c == '_')) {
+                return null;
+            }
+        }
+        if (count == 2) {
+            // Header and claims of JWS must not be empty
+            if (dots[0] == 0 || dots[1] == dots[0] + 1) return null;
+            return new int[] {dots[0], dots[1]};
+        }
+        return count == 4 && dots[0] > 0 ? dots : null;
+    }
+
+    private static Map<String, Object> json(String token, int start, int end) throws ParseException {
+        byte[] decoded = Base64.getUrlDecoder().decode(token.substring(start, end));
+        if (decoded.length == 0 || decoded[0] != '{') return null;
+        return JSONObjectUtils.parse(new String(decoded, StandardCharsets.UTF_8));
+    }
+}
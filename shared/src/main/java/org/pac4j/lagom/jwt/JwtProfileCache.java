@@ -0,0 +1,194 @@
+package org.pac4j.lagom.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.typesafe.config.Config;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.ProfileHelper;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Bounded cache of verified JWT, that maps SHA-256 digest of token to {@link CommonProfile} created from it.</p>
+ * <p>Entry is dropped at {@code exp} of the token (or after {@code ttl} if it is earlier or the token has no {@code exp}).
+ * Eviction is frequency-aware (Window TinyLFU of Caffeine), so tokens used once do not push out the hot ones.</p>
+ * <p>Cached profile is never handed out directly, each hit returns a copy of it.</p>
+ * <p>Requires {@code com.github.ben-manes.caffeine:caffeine} in classpath.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class JwtProfileCache implements JwtProfileStore {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private static final String EXPIRATION_TIME = "exp";
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Cache<String, Entry> cache;
+
+    private final long ttlMillis;
+
+    /**
+     * @param maximumSize maximum number of cached tokens
+     * @param ttl maximum time to keep token in the cache
+     */
+    public JwtProfileCache(long maximumSize, Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new EntryExpiry())
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Parse {@link JwtProfileCache} from Lagom conf.
+     *
+     * @param conf Configuration of cache
+     * @return Cache of verified tokens
+     */
+    public static JwtProfileCache parse(Config conf) {
+        return new JwtProfileCache(
+            conf.hasPath("maximum-size") ? conf.getLong("maximum-size") : DEFAULT_MAXIMUM_SIZE,
+            conf.hasPath("ttl") ? conf.getDuration("ttl") : DEFAULT_TTL
+        );
+    }
+
+    @Override
+    public CommonProfile get(String token) {
+        Entry entry = cache.getIfPresent(digest(token));
+        if (entry == null || entry.expiresAt <= System.currentTimeMillis()) return null;
+        return copy(entry.profile);
+    }
+
+    @Override
+    public void put(String token, CommonProfile profile) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttlMillis;
+        Date expirationTime = expirationTime(profile);
+        if (expirationTime != null) expiresAt = Math.min(expiresAt, expirationTime.getTime());
+        if (expiresAt > now) cache.put(digest(token), new Entry(copy(profile), expiresAt));
+    }
+
+    /**
+     * Drop all cached tokens.
+     */
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return approximate number of cached tokens
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit/miss/eviction counters of the cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    static String digest(String token) {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return Base64.getEncoder().encodeToString(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    static CommonProfile copy(CommonProfile profile) {
+        CommonProfile copy = ProfileHelper.buildUserProfileByClassCompleteName(profile.getClass().getName());
+        if (copy == null) copy = new CommonProfile();
+        copy.build(profile.getId(), copyAttributes(profile.getAttributes()), copyAttributes(profile.getAuthenticationAttributes()));
+        copy.addRoles(profile.getRoles());
+        copy.addPermissions(profile.getPermissions());
+        copy.setRemembered(profile.isRemembered());
+        copy.setClientName(profile.getClientName());
+        copy.setLinkedId(profile.getLinkedId());
+        return copy;
+    }
+
+    private static Map<String, Object> copyAttributes(Map<String, Object> attributes) {
+        Map<String, Object> copy = new LinkedHashMap<>();
+        attributes.forEach((name, value) -> copy.put(name, copyValue(value)));
+        return copy;
+    }
+
+    // Mutable values (e.g. list of aud, JSON object claims, dates) must not be shared by the cached profile and its copies
+    private static Object copyValue(Object value) {
+        if (value instanceof List) {
+            List<Object> copy = new ArrayList<>(((List<?>) value).size());
+            for (Object element : (List<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((key, element) -> copy.put(key, copyValue(element)));
+            return copy;
+        }
+        if (value instanceof Date) return new Date(((Date) value).getTime());
+        return value;
+    }
+
+    static Date expirationTime(CommonProfile profile) {
+        Object exp = profile.getAttribute(EXPIRATION_TIME);
+        if (exp instanceof Date) return (Date) exp;
+        if (exp instanceof Number) return new Date(((Number) exp).longValue() * 1000L);
+        return null;
+    }
+
+    private static final class Entry {
+
+        private final CommonProfile profile;
+
+        private final long expiresAt;
+
+        private Entry(CommonProfile profile, long expiresAt) {
+            this.profile = profile;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class EntryExpiry implements Expiry<String, Entry> {
+
+        @Override
+        public long expireAfterCreate(String key, Entry value, long currentTime) {
+            return Math.max(0L, Duration.ofMillis(value.expiresAt - System.currentTimeMillis()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Entry value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Entry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
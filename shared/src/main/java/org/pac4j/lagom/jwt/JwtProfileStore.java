@@ -0,0 +1,35 @@
+package org.pac4j.lagom.jwt;
+
+import org.pac4j.core.profile.CommonProfile;
+
+/**
+ * Store of verified JWT, that maps token to {@link CommonProfile} created from it.
+ * Used by {@link LagomJwtAuthenticator} as local cache ({@link JwtProfileCache})
+ * and as a tier shared by nodes of the cluster ({@link DistributedJwtProfileCache}).
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public interface JwtProfileStore {
+
+    /**
+     * Get copy of the profile created from the token.
+     *
+     * @param token JWT
+     * @return profile or {@code null} if the token is not stored or expired
+     */
+    CommonProfile get(String token);
+
+    /**
+     * Put the profile created from the token.
+     *
+     * @param token JWT
+     * @param profile profile
+     */
+    void put(String token, CommonProfile profile);
+
+    /**
+     * Drop all stored tokens (e.g. after removal of a key they could be verified with).
+     */
+    void invalidateAll();
+}
@@ -0,0 +1,94 @@
+package org.pac4j.lagom.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Bounded negative cache of JWT that recently failed verification, keyed by SHA-256 digest of token,
+ * so a client that retries the same bad token is rejected by {@link LagomJwtAuthenticator} without decrypting
+ * or verifying it again.</p>
+ * <p>Rejection is remembered for a short {@code ttl} and only for the keys it was made with: once keys are replaced
+ * (e.g. refreshed from {@code jwk-urls} after unknown {@code kid}) the token is verified again.</p>
+ * <p>Requires {@code com.github.ben-manes.caffeine:caffeine} in classpath.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class JwtRejectionCache {
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 10_000L;
+
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(30);
+
+    private final Cache<String, JwtKeyIndex> cache;
+
+    /**
+     * @param maximumSize maximum number of remembered tokens
+     * @param ttl time to remember rejected token
+     */
+    public JwtRejectionCache(long maximumSize, Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl.toNanos(), TimeUnit.NANOSECONDS)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Parse {@link JwtRejectionCache} from Lagom conf.
+     *
+     * @param conf Configuration of cache
+     * @return Cache of rejected tokens
+     */
+    public static JwtRejectionCache parse(Config conf) {
+        return new JwtRejectionCache(
+            conf.hasPath("maximum-size") ? conf.getLong("maximum-size") : DEFAULT_MAXIMUM_SIZE,
+            conf.hasPath("ttl") ? conf.getDuration("ttl") : DEFAULT_TTL
+        );
+    }
+
+    /**
+     * @param token JWT
+     * @param keys current keys of authenticator
+     * @return {@code true} if the token was rejected with the same keys
+     */
+    public boolean isRejected(String token, JwtKeyIndex keys) {
+        return cache.getIfPresent(JwtProfileCache.digest(token)) == keys;
+    }
+
+    /**
+     * Remember rejected token.
+     *
+     * @param token JWT
+     * @param keys keys the token was verified with
+     */
+    public void reject(String token, JwtKeyIndex keys) {
+        cache.put(JwtProfileCache.digest(token), keys);
+    }
+
+    /**
+     * Forget all rejected tokens.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return approximate number of remembered tokens
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * @return hit/miss/eviction counters of the cache
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
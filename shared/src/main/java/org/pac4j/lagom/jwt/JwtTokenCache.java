@@ -0,0 +1,214 @@
+package org.pac4j.lagom.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.nimbusds.jose.JOSEException;
+import com.typesafe.config.Config;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Cache of JWT minted for profiles (e.g. identity of the service itself) for outbound service calls.</p>
+ * <p>Each token is generated with {@code jti}, {@code iat} and {@code exp} claims ({@code exp} is {@code lifetime} after minting).
+ * A cached token is reused until {@code renew-before} its expiration, then the first call after that renews it in background
+ * (one renewal per profile at a time) and the current token is still returned until it expires.</p>
+ * <p>Tokens are cached by {@link CommonProfile#getTypedId()}: a token reflects the profile at the moment of minting,
+ * call {@link #invalidate(CommonProfile)} if roles or attributes of the profile are changed.</p>
+ * <p>Requires {@code com.github.ben-manes.caffeine:caffeine} in classpath.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class JwtTokenCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwtTokenCache.class);
+
+    private static final long DEFAULT_MAXIMUM_SIZE = 1_000L;
+
+    private static final Duration DEFAULT_LIFETIME = Duration.ofMinutes(10);
+
+    private static final Duration DEFAULT_RENEW_BEFORE = Duration.ofMinutes(1);
+
+    private final JwtMinter minter;
+
+    private final long lifetimeMillis;
+
+    private final long renewBeforeMillis;
+
+    private final Executor executor;
+
+    private final Cache<String, Token> cache;
+
+    /**
+     * Renewed tokens are minted in {@link ForkJoinPool#commonPool()}.
+     *
+     * @param generator generator of tokens (its {@code expirationTime} is ignored)
+     * @param lifetime time from minting to expiration of token
+     * @param renewBefore time before expiration of token when it is renewed
+     */
+    public JwtTokenCache(JwtGenerator<?> generator, Duration lifetime, Duration renewBefore) {
+        this(generator, lifetime, renewBefore, DEFAULT_MAXIMUM_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param generator generator of tokens (its {@code expirationTime} is ignored)
+     * @param lifetime time from minting to expiration of token
+     * @param renewBefore time before expiration of token when it is renewed
+     * @param maximumSize maximum number of cached tokens
+     * @param executor executor of renewal in background
+     */
+    public JwtTokenCache(JwtGenerator<?> generator, Duration lifetime, Duration renewBefore, long maximumSize, Executor executor) {
+        if (renewBefore.compareTo(lifetime) >= 0) {
+            throw new IllegalArgumentException("renew-before " + renewBefore + " must be less than lifetime " + lifetime);
+        }
+        this.minter = new JwtMinter(generator);
+        this.lifetimeMillis = lifetime.toMillis();
+        this.renewBeforeMillis = renewBefore.toMillis();
+        this.executor = executor;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(new TokenExpiry())
+            .build();
+    }
+
+    /**
+     * Parse {@link JwtTokenCache} from Lagom conf.
+     * Generator is parsed by {@link JwtGeneratorHelper} from the same conf.
+     *
+     * @param conf Configuration of cache and generator
+     * @return Cache of minted tokens
+     * @throws ParseException        a parse exception
+     * @throws JOSEException         a signing/encryption exception
+     */
+    public static JwtTokenCache parse(Config conf) throws ParseException, JOSEException {
+        return new JwtTokenCache(
+            JwtGeneratorHelper.parse(conf),
+            conf.hasPath("lifetime") ? conf.getDuration("lifetime") : DEFAULT_LIFETIME,
+            conf.hasPath("renew-before") ? conf.getDuration("renew-before") : DEFAULT_RENEW_BEFORE,
+            conf.hasPath("maximum-size") ? conf.getLong("maximum-size") : DEFAULT_MAXIMUM_SIZE,
+            ForkJoinPool.commonPool()
+        );
+    }
+
+    /**
+     * Get token of the profile: cached one if it is not expired or a minted one.
+     *
+     * @param profile profile
+     * @return JWT
+     */
+    public String getToken(CommonProfile profile) {
+        Token token = cache.get(profile.getTypedId(), key -> mint(profile));
+        if (token.renewAt <= System.currentTimeMillis() && token.renewing.compareAndSet(false, true)) {
+            renewInBackground(profile, token);
+        }
+        return token.value;
+    }
+
+    /**
+     * Mint new token of the profile, if cached token is the rejected one (e.g. service answered 401).
+     * Concurrent calls with the same rejected token mint only one new token.
+     *
+     * @param profile profile
+     * @param rejected rejected token
+     * @return JWT
+     */
+    public String renewToken(CommonProfile profile, String rejected) {
+        return cache.asMap().compute(profile.getTypedId(), (key, token) ->
+            token == null || token.isExpired() || token.value.equals(rejected) ? mint(profile) : token
+        ).value;
+    }
+
+    /**
+     * Drop cached token of the profile.
+     *
+     * @param profile profile
+     */
+    public void invalidate(CommonProfile profile) {
+        cache.invalidate(profile.getTypedId());
+    }
+
+    /**
+     * Drop all cached tokens.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * @return approximate number of cached tokens
+     */
+    public long estimatedSize() {
+        return cache.estimatedSize();
+    }
+
+    private void renewInBackground(CommonProfile profile, Token token) {
+        try {
+            executor.execute(() -> {
+                try {
+                    cache.asMap().replace(profile.getTypedId(), token, mint(profile));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Failed to renew token of {}, the current token is kept", profile.getTypedId(), e);
+                    token.renewing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            token.renewing.set(false);
+        }
+    }
+
+    private Token mint(CommonProfile profile) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + lifetimeMillis;
+        return new Token(minter.mint(profile, new Date(now), new Date(expiresAt)), expiresAt - renewBeforeMillis, expiresAt);
+    }
+
+    private static final class Token {
+
+        private final String value;
+
+        private final long renewAt;
+
+        private final long expiresAt;
+
+        private final AtomicBoolean renewing = new AtomicBoolean();
+
+        private Token(String value, long renewAt, long expiresAt) {
+            this.value = value;
+            this.renewAt = renewAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return expiresAt <= System.currentTimeMillis();
+        }
+    }
+
+    private static final class TokenExpiry implements Expiry<String, Token> {
+
+        @Override
+        public long expireAfterCreate(String key, Token value, long currentTime) {
+            return Math.max(0L, Duration.ofMillis(value.expiresAt - System.currentTimeMillis()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Token value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Token value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEEncrypter;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWEObject;
+import com.nimbusds.jose.Payload;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.SignedJWT;
+import org.pac4j.core.exception.TechnicalException;
+
+import java.text.ParseException;
+
+/**
+ * Encryption of JWT with {@code kid} in JWE header (same as {@code AbstractEncryptionConfiguration#encrypt} otherwise),
+ * so {@link LagomJwtAuthenticator} decrypts token by the key with the same {@code kid}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class KeyedEncryption {
+
+    static String encrypt(JWT jwt, JWEAlgorithm algorithm, EncryptionMethod method, String keyId, JWEEncrypter encrypter) {
+        try {
+            if (jwt instanceof SignedJWT) {
+                JWEObject jweObject = new JWEObject(
+                    new JWEHeader.Builder(algorithm, method).contentType("JWT").keyID(keyId).build(),
+                    new Payload((SignedJWT) jwt)
+                );
+                jweObject.encrypt(encrypter);
+                return jweObject.serialize();
+            }
+            EncryptedJWT encryptedJWT = new EncryptedJWT(
+                new JWEHeader.Builder(algorithm, method).keyID(keyId).build(),
+                jwt.getJWTClaimsSet()
+            );
+            encryptedJWT.encrypt(encrypter);
+            return encryptedJWT.serialize();
+        } catch (JOSEException | ParseException e) {
+            throw new TechnicalException(e);
+        }
+    }
+
+    private KeyedEncryption() {
+    }
+}
@@ -0,0 +1,408 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.EncryptionMethod;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEHeader;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.jwt.SignedJWT;
+import org.pac4j.core.context.HttpConstants;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.exception.CredentialsException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.config.encryption.EncryptionConfiguration;
+import org.pac4j.jwt.config.signature.SignatureConfiguration;
+import org.pac4j.jwt.credentials.authenticator.JwtAuthenticator;
+import org.pac4j.lagom.concurrent.SingleFlight;
+import org.pac4j.lagom.metrics.SecurityMetrics;
+import org.pac4j.lagom.metrics.SecurityMetrics.TokenRejection;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>{@link JwtAuthenticator} built by {@link JwtAuthenticatorHelper}.</p>
+ * <p>Malformed, oversized and expired tokens may be rejected before any key operation by {@link JwtPrevalidator},
+ * rejections are reported to {@link SecurityMetrics#tokenRejected(TokenRejection)}.</p>
+ * <p>Signed token is verified only by keys with the same {@code kid} (see {@link JwtKeyIndex}),
+ * all keys are tried only if token has no {@code kid} or no such key is known (full scan).
+ * Encrypted token is decrypted the same way by keys with {@code kid} of JWE header, and only by keys
+ * supporting its {@code alg} and {@code enc}.
+ * Verified tokens may be cached by {@link JwtProfileCache} and shared with other nodes of the cluster
+ * by {@link DistributedJwtProfileCache} (looked up after the local cache).
+ * Tokens denied by {@link RevocationList} are rejected, whether they are verified or found in a cache.
+ * Tokens that failed verification may be remembered by {@link JwtRejectionCache} and rejected again without verification
+ * until keys are replaced.
+ * Concurrent verifications of the same token (e.g. by parallel requests of a page) may be coalesced by {@link SingleFlight},
+ * so the token is verified once and the other requests get copies of its profile.</p>
+ * <p>Keys may be replaced at runtime by {@link #setKeys(JwtKeyIndex)} (see {@link JwksRefresher}),
+ * verification of token uses the keys read once at its start, so no lock is required.</p>
+ * <p>Each verified signature is reported to {@link SecurityMetrics#tokenVerified(String)} with ID of the key.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class LagomJwtAuthenticator extends JwtAuthenticator {
+
+    private volatile JwtKeyIndex keys;
+
+    private JwtProfileCache profileCache;
+
+    private JwtProfileStore sharedProfileStore;
+
+    private JwtRejectionCache rejectionCache;
+
+    private RevocationList revocationList;
+
+    private JwksRefresher jwksRefresher;
+
+    private JwtPrevalidator prevalidator;
+
+    private SingleFlight<String, CommonProfile> singleFlight;
+
+    private SecurityMetrics securityMetrics = SecurityMetrics.NOOP;
+
+    private final LongAdder indexedLookups = new LongAdder();
+
+    private final LongAdder fullScans = new LongAdder();
+
+    public LagomJwtAuthenticator(JwtKeyIndex keys) {
+        super(new ArrayList<>(keys.getSignatureConfigurations()), new ArrayList<>(keys.getEncryptionConfigurations()));
+        this.keys = keys;
+    }
+
+    @Override
+    public void validate(TokenCredentials credentials, WebContext context) {
+        prevalidate(credentials, context);
+        if (profileCache == null && sharedProfileStore == null) {
+            verifyCoalesced(credentials, context);
+            checkRevocation(credentials);
+            return;
+        }
+        String token = credentials.getToken();
+        CommonProfile cached = profileCache != null ? profileCache.get(token) : null;
+        if (cached == null && sharedProfileStore != null) {
+            cached = sharedProfileStore.get(token);
+            if (cached != null && profileCache != null) profileCache.put(token, cached);
+        }
+        if (cached != null) {
+            credentials.setUserProfile(cached);
+            checkRevocation(credentials);
+            return;
+        }
+        verifyCoalesced(credentials, context);
+        checkRevocation(credentials);
+        CommonProfile profile = credentials.getUserProfile();
+        if (profile != null) {
+            if (profileCache != null) profileCache.put(token, profile);
+            if (sharedProfileStore != null) sharedProfileStore.put(token, profile);
+        }
+    }
+
+    private void prevalidate(TokenCredentials credentials, WebContext context) {
+        if (prevalidator == null) return;
+        TokenRejection rejection = prevalidator.check(credentials.getToken());
+        if (rejection != null) {
+            securityMetrics.tokenRejected(rejection);
+            setAuthenticateHeader(context);
+            throw new CredentialsException("JWT is rejected before verification: " + rejection);
+        }
+    }
+
+    private void verifyCoalesced(TokenCredentials credentials, WebContext context) {
+        if (singleFlight == null) {
+            verifyOrReject(credentials, context);
+            return;
+        }
+        String token = credentials.getToken();
+        try {
+            credentials.setUserProfile(singleFlight.execute(token, () -> {
+                // Only the leader runs verification, with its own context
+                TokenCredentials verified = new TokenCredentials(token);
+                verifyOrReject(verified, context);
+                return verified.getUserProfile();
+            }));
+        } catch (CredentialsException e) {
+            setAuthenticateHeader(context);
+            throw e;
+        }
+    }
+
+    private void verifyOrReject(TokenCredentials credentials, WebContext context) {
+        if (rejectionCache == null) {
+            verify(credentials, context);
+            return;
+        }
+        String token = credentials.getToken();
+        JwtKeyIndex currentKeys = keys;
+        if (rejectionCache.isRejected(token, currentKeys)) {
+            setAuthenticateHeader(context);
+            throw new CredentialsException("JWT was rejected recently");
+        }
+        try {
+            verify(credentials, context);
+        } catch (CredentialsException e) {
+            rejectionCache.reject(token, currentKeys);
+            throw e;
+        }
+    }
+
+    private void checkRevocation(TokenCredentials credentials) {
+        if (revocationList == null) return;
+        CommonProfile profile = credentials.getUserProfile();
+        if (profile != null && revocationList.isRevoked(profile)) {
+            credentials.setUserProfile(null);
+            throw new CredentialsException("JWT is revoked");
+        }
+    }
+
+    /**
+     * Decrypt and verify token, then create profile (same rules as {@link JwtAuthenticator}).
+     *
+     * @param credentials Token credentials
+     * @param context Web context
+     */
+    protected void verify(TokenCredentials credentials, WebContext context) {
+        // Volatile read publishes configurations set by setKeys
+        JwtKeyIndex currentKeys = keys;
+        init();
+        String token = credentials.getToken();
+        setAuthenticateHeader(context);
+        try {
+            JWT jwt = JWTParser.parse(token);
+            if (jwt instanceof PlainJWT) {
+                if (!currentKeys.getSignatureConfigurations().isEmpty()) {
+                    throw new CredentialsException("A non-signed JWT cannot be accepted as signature configurations have been defined");
+                }
+            } else {
+                SignedJWT signedJWT = jwt instanceof SignedJWT ? (SignedJWT) jwt : null;
+                if (jwt instanceof EncryptedJWT) {
+                    EncryptedJWT encryptedJWT = (EncryptedJWT) jwt;
+                    decrypt(currentKeys, encryptedJWT, token);
+                    signedJWT = encryptedJWT.getPayload().toSignedJWT();
+                    if (signedJWT != null) jwt = signedJWT;
+                }
+                if (signedJWT != null) verifySignature(currentKeys, signedJWT, token);
+            }
+            createJwtProfile(credentials, jwt, context);
+        } catch (ParseException | JOSEException e) {
+            throw new CredentialsException("Cannot decrypt / verify JWT", e);
+        }
+    }
+
+    private void setAuthenticateHeader(WebContext context) {
+        if (context != null) {
+            context.setResponseHeader(HttpConstants.AUTHENTICATE_HEADER, "Bearer realm=\"" + getRealmName() + "\"");
+        }
+    }
+
+    private void decrypt(JwtKeyIndex currentKeys, EncryptedJWT encryptedJWT, String token) {
+        JWEHeader header = encryptedJWT.getHeader();
+        JWEAlgorithm algorithm = header.getAlgorithm();
+        EncryptionMethod method = header.getEncryptionMethod();
+        List<EncryptionConfiguration> candidates = header.getKeyID() == null ? null : currentKeys.getEncryptionConfigurations(header.getKeyID());
+        if (candidates == null || !supportsAny(candidates, algorithm, method)) {
+            candidates = currentKeys.getEncryptionConfigurations();
+        }
+        for (EncryptionConfiguration configuration : candidates) {
+            if (configuration.supports(algorithm, method)) {
+                try {
+                    configuration.decrypt(encryptedJWT);
+                    return;
+                } catch (JOSEException e) {
+                    logger.debug("Decryption fails with encryption configuration: {}, passing to the next one", configuration);
+                }
+            }
+        }
+        throw new CredentialsException("No encryption algorithm found for JWT: " + token);
+    }
+
+    private void verifySignature(JwtKeyIndex currentKeys, SignedJWT signedJWT, String token) throws JOSEException {
+        JWSHeader header = signedJWT.getHeader();
+        JWSAlgorithm algorithm = header.getAlgorithm();
+        List<SignatureConfiguration> candidates = currentKeys.getSignatureConfigurations(header.getKeyID());
+        if (candidates == null && header.getKeyID() != null && jwksRefresher != null) {
+            jwksRefresher.onUnknownKeyId(header.getKeyID());
+        }
+        boolean indexed = candidates != null && supportsAny(candidates, algorithm);
+        if (indexed) {
+            indexedLookups.increment();
+        } else {
+            fullScans.increment();
+            candidates = currentKeys.getSignatureConfigurations();
+        }
+        boolean found = false;
+        for (SignatureConfiguration configuration : candidates) {
+            if (configuration.supports(algorithm)) {
+                found = true;
+                if (configuration.verify(signedJWT)) {
+                    securityMetrics.tokenVerified(indexed ? header.getKeyID() : currentKeys.getSignatureKeyId(configuration));
+                    return;
+                }
+                logger.debug("Verification fails with signature configuration: {}, passing to the next one", configuration);
+            }
+        }
+        if (!found) throw new CredentialsException("No signature algorithm found for JWT: " + token);
+        throw new CredentialsException("JWT verification failed: " + token);
+    }
+
+    private static boolean supportsAny(List<SignatureConfiguration> configurations, JWSAlgorithm algorithm) {
+        for (SignatureConfiguration configuration : configurations) {
+            if (configuration.supports(algorithm)) return true;
+        }
+        return false;
+    }
+
+    private static boolean supportsAny(List<EncryptionConfiguration> configurations, JWEAlgorithm algorithm, EncryptionMethod method) {
+        for (EncryptionConfiguration configuration : configurations) {
+            if (configuration.supports(algorithm, method)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return keys of authenticator
+     */
+    public JwtKeyIndex getKeys() {
+        return keys;
+    }
+
+    /**
+     * Replace keys of authenticator. Tokens being verified at the moment use the previous keys.
+     * If a key is removed (e.g. compromised one), cached and shared verified tokens are dropped,
+     * as they may be signed by it.
+     *
+     * @param keys New keys
+     */
+    public void setKeys(JwtKeyIndex keys) {
+        JwtKeyIndex previous = this.keys;
+        setSignatureConfigurations(new ArrayList<>(keys.getSignatureConfigurations()));
+        setEncryptionConfigurations(new ArrayList<>(keys.getEncryptionConfigurations()));
+        this.keys = keys;
+        if (!keys.containsKeysOf(previous)) {
+            if (profileCache != null) profileCache.invalidateAll();
+            if (sharedProfileStore != null) sharedProfileStore.invalidateAll();
+        }
+    }
+
+    /**
+     * @return number of signed tokens verified only by keys with matching {@code kid}
+     */
+    public long getIndexedLookupCount() {
+        return indexedLookups.sum();
+    }
+
+    /**
+     * @return number of signed tokens verified by all keys (no {@code kid} or unknown {@code kid})
+     */
+    public long getFullScanCount() {
+        return fullScans.sum();
+    }
+
+    /**
+     * @return cache of verified tokens or {@code null} if it is disabled
+     */
+    public JwtProfileCache getProfileCache() {
+        return profileCache;
+    }
+
+    public void setProfileCache(JwtProfileCache profileCache) {
+        this.profileCache = profileCache;
+    }
+
+    /**
+     * @return store of verified tokens shared by nodes of the cluster or {@code null} if it is disabled
+     */
+    public JwtProfileStore getSharedProfileStore() {
+        return sharedProfileStore;
+    }
+
+    public void setSharedProfileStore(JwtProfileStore sharedProfileStore) {
+        this.sharedProfileStore = sharedProfileStore;
+    }
+
+    /**
+     * @return cache of recently rejected tokens or {@code null} if it is disabled
+     */
+    public JwtRejectionCache getRejectionCache() {
+        return rejectionCache;
+    }
+
+    public void setRejectionCache(JwtRejectionCache rejectionCache) {
+        this.rejectionCache = rejectionCache;
+    }
+
+    /**
+     * @return checks of token before decryption and verification or {@code null} if they are disabled
+     */
+    public JwtPrevalidator getPrevalidator() {
+        return prevalidator;
+    }
+
+    public void setPrevalidator(JwtPrevalidator prevalidator) {
+        this.prevalidator = prevalidator;
+    }
+
+    /**
+     * @return coalescing of concurrent verifications of the same token or {@code null} if it is disabled
+     */
+    public SingleFlight<String, CommonProfile> getSingleFlight() {
+        return singleFlight;
+    }
+
+    public void setSingleFlight(SingleFlight<String, CommonProfile> singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * @return denylist of revoked tokens or {@code null} if revocation is not checked
+     */
+    public RevocationList getRevocationList() {
+        return revocationList;
+    }
+
+    public void setRevocationList(RevocationList revocationList) {
+        this.revocationList = revocationList;
+    }
+
+    /**
+     * @return refresher of remote keys or {@code null} if there are no {@code jwk-urls}
+     */
+    public JwksRefresher getJwksRefresher() {
+        return jwksRefresher;
+    }
+
+    public void setJwksRefresher(JwksRefresher jwksRefresher) {
+        this.jwksRefresher = jwksRefresher;
+    }
+
+    /**
+     * Readiness of authenticator, e.g. for health check of the service.
+     *
+     * @return {@code true} if there are no {@code jwk-urls} or live keys of them have been loaded
+     * (not only keys of snapshot)
+     */
+    public boolean isReady() {
+        JwksRefresher refresher = jwksRefresher;
+        return refresher == null || refresher.isReady();
+    }
+
+    /**
+     * @return listener of verified tokens
+     */
+    public SecurityMetrics getSecurityMetrics() {
+        return securityMetrics;
+    }
+
+    public void setSecurityMetrics(SecurityMetrics securityMetrics) {
+        this.securityMetrics = securityMetrics == null ? SecurityMetrics.NOOP : securityMetrics;
+    }
+}
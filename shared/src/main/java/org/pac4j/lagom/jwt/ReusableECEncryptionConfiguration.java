@@ -0,0 +1,67 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JWEDecrypter;
+import com.nimbusds.jose.JWEEncrypter;
+import com.nimbusds.jwt.JWT;
+import org.pac4j.jwt.config.encryption.ECEncryptionConfiguration;
+
+import java.security.KeyPair;
+
+/**
+ * <p>{@link ECEncryptionConfiguration} that builds its (thread-safe) Nimbus encrypter and decrypter once,
+ * instead of for every token, and puts {@code kid} of the key into JWE header of encrypted tokens.</p>
+ * <p>Key, algorithm and method must not be changed after the first encryption or decryption.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class ReusableECEncryptionConfiguration extends ECEncryptionConfiguration {
+
+    private final String keyId;
+
+    private volatile JWEEncrypter encrypter;
+
+    private volatile JWEDecrypter decrypter;
+
+    /**
+     * @param keyPair key pair (public key encrypts, private key decrypts)
+     * @param keyId ID of the key for JWE header or {@code null}
+     */
+    public ReusableECEncryptionConfiguration(KeyPair keyPair, String keyId) {
+        super(keyPair);
+        this.keyId = keyId;
+    }
+
+    /**
+     * @return ID of the key for JWE header or {@code null}
+     */
+    public String getKeyId() {
+        return keyId;
+    }
+
+    @Override
+    public String encrypt(JWT jwt) {
+        init();
+        return KeyedEncryption.encrypt(jwt, getAlgorithm(), getMethod(), keyId, buildEncrypter());
+    }
+
+    @Override
+    protected JWEEncrypter buildEncrypter() {
+        JWEEncrypter current = encrypter;
+        if (current == null) {
+            current = super.buildEncrypter();
+            encrypter = current;
+        }
+        return current;
+    }
+
+    @Override
+    protected JWEDecrypter buildDecrypter() {
+        JWEDecrypter current = decrypter;
+        if (current == null) {
+            current = super.buildDecrypter();
+            decrypter = current;
+        }
+        return current;
+    }
+}
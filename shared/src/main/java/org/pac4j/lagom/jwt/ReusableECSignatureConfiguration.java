@@ -0,0 +1,75 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.impl.ECDSA;
+import com.nimbusds.jwt.SignedJWT;
+import org.pac4j.jwt.config.signature.ECSignatureConfiguration;
+
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.interfaces.ECPublicKey;
+
+/**
+ * <p>{@link ECSignatureConfiguration} that verifies signature by a JCA {@link Signature} initialized with the public key
+ * once per thread, instead of a new {@code ECDSAVerifier} and {@code Signature} for every token.
+ * Signature is checked the same way as by {@code ECDSAVerifier} (length, legal values, DER transcoding).</p>
+ * <p>Tokens with other algorithm than the one of the curve of the key or with critical header parameters
+ * are verified by {@link ECSignatureConfiguration} as is. Keys must not be changed after the first verification.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class ReusableECSignatureConfiguration extends ECSignatureConfiguration {
+
+    private volatile JWSAlgorithm curveAlgorithm;
+
+    private volatile ThreadLocal<Signature> verifiers;
+
+    public ReusableECSignatureConfiguration(KeyPair keyPair) {
+        super(keyPair);
+    }
+
+    @Override
+    protected void internalInit() {
+        super.internalInit();
+        ECPublicKey publicKey = getPublicKey();
+        if (publicKey == null) return;
+        try {
+            curveAlgorithm = ECDSA.resolveAlgorithm(publicKey);
+        } catch (JOSEException e) {
+            return;
+        }
+        JWSAlgorithm algorithm = curveAlgorithm;
+        verifiers = ThreadLocal.withInitial(() -> {
+            try {
+                Signature verifier = ECDSA.getSignerAndVerifier(algorithm, null);
+                verifier.initVerify(publicKey);
+                return verifier;
+            } catch (JOSEException | InvalidKeyException e) {
+                throw new IllegalStateException("Cannot initialize verifier of " + algorithm, e);
+            }
+        });
+    }
+
+    @Override
+    public boolean verify(SignedJWT jwt) throws JOSEException {
+        init();
+        JWSHeader header = jwt.getHeader();
+        if (verifiers == null || !curveAlgorithm.equals(header.getAlgorithm()) || header.getCriticalParams() != null) {
+            return super.verify(jwt);
+        }
+        byte[] signature = jwt.getSignature().decode();
+        byte[] der;
+        try {
+            if (signature.length != ECDSA.getSignatureByteArrayLength(curveAlgorithm)) return false;
+            ECDSA.ensureLegalSignature(signature, curveAlgorithm);
+            der = ECDSA.transcodeSignatureToDER(signature);
+        } catch (JOSEException e) {
+            return false;
+        }
+        return SignatureVerifiers.verify(verifiers, jwt.getSigningInput(), der);
+    }
+}
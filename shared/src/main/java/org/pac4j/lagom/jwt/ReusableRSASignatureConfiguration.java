@@ -0,0 +1,56 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.impl.RSASSA;
+import com.nimbusds.jwt.SignedJWT;
+import org.pac4j.jwt.config.signature.RSASignatureConfiguration;
+
+import java.security.InvalidKeyException;
+import java.security.KeyPair;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+
+/**
+ * <p>{@link RSASignatureConfiguration} that verifies signature by a JCA {@link Signature} initialized with the public key
+ * once per thread, instead of a new {@code RSASSAVerifier} and {@code Signature} for every token.</p>
+ * <p>Tokens with other algorithm than {@link #getAlgorithm()} or with critical header parameters
+ * are verified by {@link RSASignatureConfiguration} as is. Keys must not be changed after the first verification.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class ReusableRSASignatureConfiguration extends RSASignatureConfiguration {
+
+    private volatile ThreadLocal<Signature> verifiers;
+
+    public ReusableRSASignatureConfiguration(KeyPair keyPair) {
+        super(keyPair);
+    }
+
+    @Override
+    protected void internalInit() {
+        super.internalInit();
+        RSAPublicKey publicKey = getPublicKey();
+        if (publicKey == null) return;
+        verifiers = ThreadLocal.withInitial(() -> {
+            try {
+                Signature verifier = RSASSA.getSignerAndVerifier(getAlgorithm(), null);
+                verifier.initVerify(publicKey);
+                return verifier;
+            } catch (JOSEException | InvalidKeyException e) {
+                throw new IllegalStateException("Cannot initialize verifier of " + getAlgorithm(), e);
+            }
+        });
+    }
+
+    @Override
+    public boolean verify(SignedJWT jwt) throws JOSEException {
+        init();
+        JWSHeader header = jwt.getHeader();
+        if (verifiers == null || !getAlgorithm().equals(header.getAlgorithm()) || header.getCriticalParams() != null) {
+            return super.verify(jwt);
+        }
+        return SignatureVerifiers.verify(verifiers, jwt.getSigningInput(), jwt.getSignature().decode());
+    }
+}
@@ -0,0 +1,64 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.SignedJWT;
+import org.pac4j.jwt.config.signature.SecretSignatureConfiguration;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * <p>{@link SecretSignatureConfiguration} that verifies HMAC by a {@link Mac} initialized once per thread,
+ * instead of a new {@code MACVerifier} and {@code Mac.getInstance} lookup for every token.</p>
+ * <p>Tokens with other algorithm than {@link #getAlgorithm()}, with critical header parameters
+ * or a too short secret are verified by {@link SecretSignatureConfiguration} as is.
+ * Secret must not be changed after the first verification.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public class ReusableSecretSignatureConfiguration extends SecretSignatureConfiguration {
+
+    private volatile ThreadLocal<Mac> macs;
+
+    public ReusableSecretSignatureConfiguration(byte[] secret) {
+        super(secret);
+    }
+
+    @Override
+    protected void internalInit() {
+        super.internalInit();
+        try {
+            if (getSecretBytes().length * 8 < MACSigner.getMinRequiredSecretLength(getAlgorithm())) return;
+        } catch (JOSEException e) {
+            return;
+        }
+        String name = "HmacSHA" + getAlgorithm().getName().substring(2);
+        SecretKeySpec key = new SecretKeySpec(getSecretBytes(), name);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(name);
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialize " + name, e);
+            }
+        });
+    }
+
+    @Override
+    public boolean verify(SignedJWT jwt) throws JOSEException {
+        init();
+        JWSHeader header = jwt.getHeader();
+        if (macs == null || !getAlgorithm().equals(header.getAlgorithm()) || header.getCriticalParams() != null) {
+            return super.verify(jwt);
+        }
+        // doFinal resets Mac for the next token of the thread
+        byte[] expected = macs.get().doFinal(jwt.getSigningInput());
+        return MessageDigest.isEqual(expected, jwt.getSignature().decode());
+    }
+}
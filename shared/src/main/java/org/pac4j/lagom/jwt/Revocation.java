@@ -0,0 +1,113 @@
+package org.pac4j.lagom.jwt;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Objects;
+
+/**
+ * <p>Revocation of JWT published to a message broker topic and applied to {@link RevocationList}.</p>
+ * <p>Either a single token is revoked by its {@code jti}, or all tokens of a subject ({@code sub})
+ * issued at or before {@code revokedAt}. Revocation is kept until {@code expiresAt},
+ * that is {@code exp} of the revoked token (for a subject, the latest {@code exp} of its tokens).</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class Revocation {
+
+    /**
+     * What is revoked.
+     */
+    public enum Type {
+        /**
+         * Single token by {@code jti}.
+         */
+        TOKEN_ID,
+        /**
+         * All tokens of subject issued at or before {@code revokedAt}.
+         */
+        SUBJECT
+    }
+
+    private final Type type;
+
+    private final String value;
+
+    private final long revokedAt;
+
+    private final long expiresAt;
+
+    /**
+     * @param type what is revoked
+     * @param value {@code jti} or {@code sub}
+     * @param revokedAt time of revocation (milliseconds since epoch)
+     * @param expiresAt time when the revocation may be forgotten (milliseconds since epoch)
+     */
+    @JsonCreator
+    public Revocation(@JsonProperty("type") Type type,
+                      @JsonProperty("value") String value,
+                      @JsonProperty("revokedAt") long revokedAt,
+                      @JsonProperty("expiresAt") long expiresAt) {
+        this.type = Objects.requireNonNull(type, "type");
+        this.value = Objects.requireNonNull(value, "value");
+        this.revokedAt = revokedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Revoke single token.
+     *
+     * @param jti ID of token
+     * @param expiresAt {@code exp} of token (milliseconds since epoch)
+     * @return revocation
+     */
+    public static Revocation ofTokenId(String jti, long expiresAt) {
+        return new Revocation(Type.TOKEN_ID, jti, System.currentTimeMillis(), expiresAt);
+    }
+
+    /**
+     * Revoke all tokens of subject issued until now.
+     *
+     * @param subject subject of tokens
+     * @param expiresAt latest {@code exp} of tokens of subject (milliseconds since epoch)
+     * @return revocation
+     */
+    public static Revocation ofSubject(String subject, long expiresAt) {
+        return new Revocation(Type.SUBJECT, subject, System.currentTimeMillis(), expiresAt);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getRevokedAt() {
+        return revokedAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Revocation)) return false;
+        Revocation that = (Revocation) o;
+        return revokedAt == that.revokedAt && expiresAt == that.expiresAt && type == that.type && value.equals(that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, value, revokedAt, expiresAt);
+    }
+
+    @Override
+    public String toString() {
+        return "Revocation(" + type + ", " + value + ", revokedAt=" + revokedAt + ", expiresAt=" + expiresAt + ")";
+    }
+}
@@ -0,0 +1,224 @@
+package org.pac4j.lagom.jwt;
+
+import org.pac4j.core.profile.CommonProfile;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * <p>In-memory denylist of revoked JWT, checked by {@link LagomJwtAuthenticator} for every token
+ * (including tokens served from {@link JwtProfileCache}).</p>
+ * <p>Revoked {@code jti} and {@code sub} are kept as 64-bit hashes in sorted primitive arrays
+ * (16 bytes per token, 24 bytes per subject) behind a Bloom filter (16 bits per entry, 4 probes),
+ * so most lookups are answered by the filter and the rest by a binary search, without locks or allocations.
+ * Updates (see {@link #revoke(Revocation)}) replace the arrays by copy-on-write,
+ * revocations are expected to be much rarer than lookups.</p>
+ * <p>Entry is dropped at {@code expiresAt} of its revocation, expired entries are removed on updates
+ * and by {@link #prune()}. Hash collision (about {@code n / 2^64} per lookup) revokes a valid token.</p>
+ * <p>Revocations usually come from a message broker topic, see
+ * {@link org.pac4j.lagom.javadsl.broker.RevocationSubscriber} and
+ * {@link org.pac4j.lagom.scaladsl.broker.RevocationSubscriber}.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class RevocationList {
+
+    private static final String TOKEN_ID = "jti";
+
+    private static final String ISSUED_AT = "iat";
+
+    private volatile Entries tokenIds = Entries.EMPTY;
+
+    private volatile Entries subjects = Entries.EMPTY;
+
+    /**
+     * Apply revocation. Revocation that is already expired is ignored, repeated revocation is idempotent.
+     *
+     * @param revocation revocation
+     */
+    public synchronized void revoke(Revocation revocation) {
+        long now = System.currentTimeMillis();
+        if (revocation.getExpiresAt() <= now) return;
+        long hash = hash(revocation.getValue());
+        if (revocation.getType() == Revocation.Type.TOKEN_ID) {
+            tokenIds = tokenIds.with(hash, revocation.getExpiresAt(), Long.MAX_VALUE, now);
+        } else {
+            subjects = subjects.with(hash, revocation.getExpiresAt(), revocation.getRevokedAt(), now);
+        }
+    }
+
+    /**
+     * @param profile profile created from JWT
+     * @return {@code true} if the token of the profile is revoked
+     */
+    public boolean isRevoked(CommonProfile profile) {
+        Object jti = profile.getAttribute(TOKEN_ID);
+        Object iat = profile.getAttribute(ISSUED_AT);
+        return isRevoked(jti instanceof String ? (String) jti : null, profile.getId(), iat instanceof Date ? (Date) iat : null);
+    }
+
+    /**
+     * @param jti ID of token or {@code null}
+     * @param subject subject of token or {@code null}
+     * @param issuedAt {@code iat} of token or {@code null} (token of revoked subject without {@code iat} is revoked)
+     * @return {@code true} if the token is revoked
+     */
+    public boolean isRevoked(String jti, String subject, Date issuedAt) {
+        Entries currentTokenIds = tokenIds;
+        Entries currentSubjects = subjects;
+        if (currentTokenIds.size() == 0 && currentSubjects.size() == 0) return false;
+        long now = System.currentTimeMillis();
+        if (jti != null && currentTokenIds.revokedAt(hash(jti), now) != Long.MIN_VALUE) return true;
+        if (subject == null) return false;
+        long revokedAt = currentSubjects.revokedAt(hash(subject), now);
+        return revokedAt != Long.MIN_VALUE && (issuedAt == null || issuedAt.getTime() <= revokedAt);
+    }
+
+    /**
+     * Remove expired entries.
+     */
+    public synchronized void prune() {
+        long now = System.currentTimeMillis();
+        tokenIds = tokenIds.pruned(now);
+        subjects = subjects.pruned(now);
+    }
+
+    /**
+     * @return number of revoked tokens and subjects (including expired ones not removed yet)
+     */
+    public int size() {
+        return tokenIds.size() + subjects.size();
+    }
+
+    /**
+     * FNV-1a of UTF-16 code units, finalized by MurmurHash3 {@code fmix64}.
+     */
+    static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Immutable sorted arrays of entries with Bloom filter over them.
+     * {@code revokedAt} is {@code null} for token IDs (any token with the ID is revoked).
+     */
+    private static final class Entries {
+
+        private static final Entries EMPTY = new Entries(new long[0], new long[0], null);
+
+        private static final int BITS_PER_ENTRY = 16;
+
+        private static final int PROBES = 4;
+
+        private final long[] hashes;
+
+        private final long[] expiresAt;
+
+        private final long[] revokedAt;
+
+        private final long[] bloom;
+
+        private final int bloomMask;
+
+        private Entries(long[] hashes, long[] expiresAt, long[] revokedAt) {
+            this.hashes = hashes;
+            this.expiresAt = expiresAt;
+            this.revokedAt = revokedAt;
+            int bits = Math.max(Long.SIZE, Integer.highestOneBit(Math.max(1, hashes.length * BITS_PER_ENTRY - 1)) << 1);
+            this.bloom = new long[bits / Long.SIZE];
+            this.bloomMask = bits - 1;
+            for (long hash : hashes) {
+                long probe = hash;
+                long step = Long.rotateLeft(hash, 32) | 1L;
+                for (int i = 0; i < PROBES; i++, probe += step) {
+                    int bit = (int) probe & bloomMask;
+                    bloom[bit >>> 6] |= 1L << bit;
+                }
+            }
+        }
+
+        private int size() {
+            return hashes.length;
+        }
+
+        /**
+         * @return time of revocation or {@link Long#MIN_VALUE} if the hash is not revoked
+         */
+        private long revokedAt(long hash, long now) {
+            if (hashes.length == 0 || !mightContain(hash)) return Long.MIN_VALUE;
+            int index = Arrays.binarySearch(hashes, hash);
+            if (index < 0 || expiresAt[index] <= now) return Long.MIN_VALUE;
+            return revokedAt == null ? Long.MAX_VALUE : revokedAt[index];
+        }
+
+        private boolean mightContain(long hash) {
+            long probe = hash;
+            long step = Long.rotateLeft(hash, 32) | 1L;
+            for (int i = 0; i < PROBES; i++, probe += step) {
+                int bit = (int) probe & bloomMask;
+                if ((bloom[bit >>> 6] & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        private Entries with(long hash, long expires, long revoked, long now) {
+            Entries current = pruned(now);
+            boolean tokenIds = revoked == Long.MAX_VALUE;
+            int index = Arrays.binarySearch(current.hashes, hash);
+            if (index >= 0) {
+                long[] newExpiresAt = current.expiresAt.clone();
+                newExpiresAt[index] = Math.max(newExpiresAt[index], expires);
+                long[] newRevokedAt = null;
+                if (!tokenIds) {
+                    newRevokedAt = current.revokedAt.clone();
+                    newRevokedAt[index] = Math.max(newRevokedAt[index], revoked);
+                }
+                return new Entries(current.hashes, newExpiresAt, newRevokedAt);
+            }
+            int insertion = -index - 1;
+            return new Entries(
+                inserted(current.hashes, insertion, hash),
+                inserted(current.expiresAt, insertion, expires),
+                tokenIds ? null : inserted(current.revokedAt == null ? new long[0] : current.revokedAt, insertion, revoked)
+            );
+        }
+
+        private Entries pruned(long now) {
+            int alive = 0;
+            for (long expires : expiresAt) {
+                if (expires > now) alive++;
+            }
+            if (alive == hashes.length) return this;
+            if (alive == 0) return EMPTY;
+            long[] newHashes = new long[alive];
+            long[] newExpiresAt = new long[alive];
+            long[] newRevokedAt = revokedAt == null ? null : new long[alive];
+            for (int i = 0, j = 0; i < hashes.length; i++) {
+                if (expiresAt[i] <= now) continue;
+                newHashes[j] = hashes[i];
+                newExpiresAt[j] = expiresAt[i];
+                if (newRevokedAt != null) newRevokedAt[j] = revokedAt[i];
+                j++;
+            }
+            return new Entries(newHashes, newExpiresAt, newRevokedAt);
+        }
+
+        private static long[] inserted(long[] array, int index, long value) {
+            long[] result = new long[array.length + 1];
+            System.arraycopy(array, 0, result, 0, index);
+            result[index] = value;
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.pac4j.lagom.jwt;
+
+import java.security.Signature;
+import java.security.SignatureException;
+
+/**
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class SignatureVerifiers {
+
+    /**
+     * Verify signature by the verifier of the thread. {@link Signature#verify(byte[])} resets the verifier
+     * for the next token, a verifier that failed is dropped as its state is unknown.
+     */
+    static boolean verify(ThreadLocal<Signature> verifiers, byte[] signingInput, byte[] signature) {
+        try {
+            Signature verifier = verifiers.get();
+            verifier.update(signingInput);
+            return verifier.verify(signature);
+        } catch (SignatureException e) {
+            verifiers.remove();
+            return false;
+        }
+    }
+
+    private SignatureVerifiers() {
+    }
+}
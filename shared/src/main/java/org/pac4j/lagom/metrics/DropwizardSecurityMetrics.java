@@ -0,0 +1,93 @@
+package org.pac4j.lagom.metrics;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import com.codahale.metrics.Timer;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link SecurityMetrics} recorded into Dropwizard {@link MetricRegistry}.</p>
+ * <p>Metrics are named {@code <prefix>.client.<client>.credentials}, {@code <prefix>.client.<client>.profile} (timers),
+ * {@code <prefix>.client.<client>.<outcome>} (meters), {@code <prefix>.authorizer.<authorizer>} (timers)
+ * {@code <prefix>.jwt.key.<kid>} and {@code <prefix>.jwt.rejected.<reason>} (meters). Metrics are resolved in the registry once and then taken from local cache.</p>
+ * <p>Timers use lock-free {@link SlidingTimeWindowArrayReservoir} (one minute window), instead of the default
+ * exponentially decaying reservoir that takes a lock on update.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class DropwizardSecurityMetrics implements SecurityMetrics {
+
+    /**
+     * Default prefix of metric names.
+     */
+    public static final String DEFAULT_PREFIX = "pac4j.lagom";
+
+    private final MetricRegistry registry;
+
+    private final String prefix;
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    private final Map<String, Meter> meters = new ConcurrentHashMap<>();
+
+    public DropwizardSecurityMetrics(MetricRegistry registry) {
+        this(registry, DEFAULT_PREFIX);
+    }
+
+    /**
+     * @param registry Registry of metrics
+     * @param prefix Prefix of metric names
+     */
+    public DropwizardSecurityMetrics(MetricRegistry registry, String prefix) {
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void credentialsExtracted(String clientName, long nanos) {
+        timer(MetricRegistry.name(prefix, "client", clientName, "credentials")).update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void profileResolved(String clientName, long nanos) {
+        timer(MetricRegistry.name(prefix, "client", clientName, "profile")).update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void authorizationChecked(String authorizerName, long nanos) {
+        timer(MetricRegistry.name(prefix, "authorizer", authorizerName)).update(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void outcome(String clientName, Outcome outcome) {
+        meter(MetricRegistry.name(prefix, "client", clientName, outcome.name().toLowerCase(Locale.ROOT))).mark();
+    }
+
+    @Override
+    public void tokenVerified(String keyId) {
+        meter(MetricRegistry.name(prefix, "jwt", "key", String.valueOf(keyId))).mark();
+    }
+
+    @Override
+    public void tokenRejected(TokenRejection reason) {
+        meter(MetricRegistry.name(prefix, "jwt", "rejected", reason.name().toLowerCase(Locale.ROOT))).mark();
+    }
+
+    private Timer timer(String name) {
+        Timer timer = timers.get(name);
+        return timer != null ? timer : timers.computeIfAbsent(name, key -> registry.timer(key, () ->
+            new Timer(new SlidingTimeWindowArrayReservoir(1, TimeUnit.MINUTES))
+        ));
+    }
+
+    private Meter meter(String name) {
+        Meter meter = meters.get(name);
+        return meter != null ? meter : meters.computeIfAbsent(name, registry::meter);
+    }
+}
@@ -0,0 +1,142 @@
+package org.pac4j.lagom.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>{@link SecurityMetrics} recorded into HdrHistogram {@link Recorder}s (wait-free for writers).</p>
+ * <p>Histograms of durations are in nanoseconds and are read by interval:
+ * each {@code get...Latency} call returns values recorded since the previous call.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class HdrHistogramSecurityMetrics implements SecurityMetrics {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, Recorder> credentials = new ConcurrentHashMap<>();
+
+    private final Map<String, Recorder> profiles = new ConcurrentHashMap<>();
+
+    private final Map<String, Recorder> authorizations = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder[]> outcomes = new ConcurrentHashMap<>();
+
+    private final Map<String, LongAdder> verifications = new ConcurrentHashMap<>();
+
+    private final LongAdder[] rejections = newCounters(TokenRejection.values().length);
+
+    @Override
+    public void credentialsExtracted(String clientName, long nanos) {
+        record(credentials, clientName, nanos);
+    }
+
+    @Override
+    public void profileResolved(String clientName, long nanos) {
+        record(profiles, clientName, nanos);
+    }
+
+    @Override
+    public void authorizationChecked(String authorizerName, long nanos) {
+        record(authorizations, authorizerName, nanos);
+    }
+
+    @Override
+    public void outcome(String clientName, Outcome outcome) {
+        LongAdder[] counters = outcomes.get(String.valueOf(clientName));
+        if (counters == null) counters = outcomes.computeIfAbsent(String.valueOf(clientName), key -> newCounters(Outcome.values().length));
+        counters[outcome.ordinal()].increment();
+    }
+
+    @Override
+    public void tokenVerified(String keyId) {
+        count(verifications, String.valueOf(keyId));
+    }
+
+    @Override
+    public void tokenRejected(TokenRejection reason) {
+        rejections[reason.ordinal()].increment();
+    }
+
+    /**
+     * @param clientName Name of client
+     * @return Durations of {@code getCredentials} since previous call
+     */
+    public Histogram getCredentialsLatency(String clientName) {
+        return interval(credentials, clientName);
+    }
+
+    /**
+     * @param clientName Name of client
+     * @return Durations of {@code getUserProfile} since previous call
+     */
+    public Histogram getProfileLatency(String clientName) {
+        return interval(profiles, clientName);
+    }
+
+    /**
+     * @param authorizerName Name of authorizer
+     * @return Durations of {@code isAuthorized} since previous call
+     */
+    public Histogram getAuthorizationLatency(String authorizerName) {
+        return interval(authorizations, authorizerName);
+    }
+
+    /**
+     * @param clientName Name of client
+     * @param outcome Result of check
+     * @return Number of checks with the result
+     */
+    public long getOutcomeCount(String clientName, Outcome outcome) {
+        LongAdder[] counters = outcomes.get(String.valueOf(clientName));
+        return counters == null ? 0 : counters[outcome.ordinal()].sum();
+    }
+
+    /**
+     * @param keyId ID of key
+     * @return Number of tokens verified by the key
+     */
+    public long getVerificationCount(String keyId) {
+        LongAdder counter = verifications.get(String.valueOf(keyId));
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @param reason Reason of rejection
+     * @return Number of tokens rejected before verification for the reason
+     */
+    public long getRejectionCount(TokenRejection reason) {
+        return rejections[reason.ordinal()].sum();
+    }
+
+    private static void record(Map<String, Recorder> recorders, String name, long nanos) {
+        // get before computeIfAbsent: the latter locks the bin even if the key is present
+        Recorder recorder = recorders.get(String.valueOf(name));
+        if (recorder == null) recorder = recorders.computeIfAbsent(String.valueOf(name), key -> new Recorder(SIGNIFICANT_DIGITS));
+        recorder.recordValue(Math.max(0, nanos));
+    }
+
+    private static void count(Map<String, LongAdder> counters, String name) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) counter = counters.computeIfAbsent(name, key -> new LongAdder());
+        counter.increment();
+    }
+
+    private static LongAdder[] newCounters(int size) {
+        LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    private static Histogram interval(Map<String, Recorder> recorders, String name) {
+        Recorder recorder = recorders.get(String.valueOf(name));
+        return recorder == null ? new Histogram(SIGNIFICANT_DIGITS) : recorder.getIntervalHistogram();
+    }
+}
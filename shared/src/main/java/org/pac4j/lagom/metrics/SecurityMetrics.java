@@ -0,0 +1,124 @@
+package org.pac4j.lagom.metrics;
+
+import org.pac4j.core.authorization.authorizer.Authorizer;
+
+/**
+ * <p>Listener of security metrics of {@code SecuredService} and {@code LagomJwtAuthenticator}.</p>
+ * <p>Methods are called on the thread handling the request, so implementation must not block.
+ * All methods do nothing by default.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public interface SecurityMetrics {
+
+    /**
+     * Metrics that are not recorded.
+     */
+    SecurityMetrics NOOP = new SecurityMetrics() {
+    };
+
+    /**
+     * Result of security check of request.
+     */
+    enum Outcome {
+        /** Profile is authenticated by client. */
+        AUTHENTICATED,
+        /** Request has no valid credentials, anonymous profile is used. */
+        ANONYMOUS,
+        /** Profile is authorized. */
+        AUTHORIZED,
+        /** Anonymous profile is not authorized (401). */
+        UNAUTHORIZED,
+        /** Authenticated profile is not authorized (403). */
+        FORBIDDEN,
+        /** Check is rejected because bulkhead of client is full (503). */
+        REJECTED,
+        /** Credentials are refused before verification by rate limiter of failed authentications (429). */
+        THROTTLED
+    }
+
+    /**
+     * Reason of rejection of JWT before decryption and verification of signature.
+     */
+    enum TokenRejection {
+        /** Token is longer than allowed. */
+        OVERSIZED,
+        /** Token is not in compact serialization or its header or claims are not JSON. */
+        MALFORMED,
+        /** {@code alg} or {@code enc} of token is not allowed. */
+        ALGORITHM,
+        /** Token is expired ({@code exp}). */
+        EXPIRED,
+        /** Token is not valid yet ({@code nbf}). */
+        NOT_YET_VALID,
+        /** Issuer of token ({@code iss}) is not allowed. */
+        ISSUER,
+        /** Audience of token ({@code aud}) is not allowed. */
+        AUDIENCE
+    }
+
+    /**
+     * Credentials are extracted from request by client.
+     *
+     * @param clientName Name of client
+     * @param nanos Duration of {@code getCredentials} in nanoseconds
+     */
+    default void credentialsExtracted(String clientName, long nanos) {
+    }
+
+    /**
+     * Credentials are validated and profile is created by client.
+     *
+     * @param clientName Name of client
+     * @param nanos Duration of {@code getUserProfile} in nanoseconds
+     */
+    default void profileResolved(String clientName, long nanos) {
+    }
+
+    /**
+     * Authorizations of profile are checked.
+     *
+     * @param authorizerName Name of authorizer (simple name of its class)
+     * @param nanos Duration of {@code isAuthorized} in nanoseconds
+     */
+    default void authorizationChecked(String authorizerName, long nanos) {
+    }
+
+    /**
+     * Request is checked.
+     *
+     * @param clientName Name of client
+     * @param outcome Result of check
+     */
+    default void outcome(String clientName, Outcome outcome) {
+    }
+
+    /**
+     * Signature of JWT is verified.
+     *
+     * @param keyId ID of key that verified the token or {@code null} if key is not registered in the key index
+     */
+    default void tokenVerified(String keyId) {
+    }
+
+    /**
+     * JWT is rejected before decryption and verification of signature.
+     *
+     * @param reason Reason of rejection
+     */
+    default void tokenRejected(TokenRejection reason) {
+    }
+
+    /**
+     * Name of authorizer in metrics.
+     *
+     * @param authorizer Authorizer
+     * @return Simple name of class of authorizer
+     */
+    static String authorizerName(Authorizer<?> authorizer) {
+        if (authorizer == null) return "null";
+        String name = authorizer.getClass().getSimpleName();
+        return name.isEmpty() ? authorizer.getClass().getName() : name;
+    }
+}
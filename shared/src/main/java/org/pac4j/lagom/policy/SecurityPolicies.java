@@ -0,0 +1,145 @@
+package org.pac4j.lagom.policy;
+
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigUtil;
+import com.typesafe.config.ConfigValueType;
+import org.pac4j.core.authorization.authorizer.AndAuthorizer;
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.exception.TechnicalException;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.client.ClientChain;
+import org.pac4j.lagom.concurrent.SecurityExecutor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Immutable table of {@link SecurityPolicy} by name of service call, compiled once at startup
+ * from Lagom conf (e.g. {@code pac4j.lagom.policies}):</p>
+ * <pre>
+ * pac4j.lagom.policies {
+ *   "HelloService.hello" { clients = "jwt,cookie", authorizer = "admin" }
+ *   "HelloService.ping" { clients = "jwt" }
+ * }
+ * </pre>
+ * <p>{@code clients} are comma-separated names of clients (default security clients of pac4j configuration if absent),
+ * {@code authorizer} are comma-separated names of authorizers, registered in pac4j configuration, all of them must
+ * authorize the profile (service call is only authenticated if absent).
+ * Unknown names of clients and authorizers fail the compilation, not the request.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class SecurityPolicies {
+
+    /**
+     * Table without policies.
+     */
+    public static final SecurityPolicies EMPTY = new SecurityPolicies(Collections.emptyMap());
+
+    private static final String SEPARATOR = ",";
+
+    private final Map<String, SecurityPolicy> policies;
+
+    private SecurityPolicies(Map<String, SecurityPolicy> policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * Compile policies from Lagom conf.
+     *
+     * @param conf Configuration of policies, keyed by name of service call
+     * @param securityConfig Configuration of pac4j with clients and authorizers
+     * @return Table of policies
+     * @throws TechnicalException if policy is malformed or client or authorizer is not found
+     */
+    public static SecurityPolicies compile(Config conf, org.pac4j.core.config.Config securityConfig) {
+        Map<String, SecurityPolicy> policies = new HashMap<>();
+        for (String name : conf.root().keySet()) {
+            if (conf.root().get(name).valueType() != ConfigValueType.OBJECT) {
+                throw new TechnicalException("Security policy " + name + " must be an object");
+            }
+            policies.put(name, compile(name, conf.getConfig(ConfigUtil.quoteString(name)), securityConfig));
+        }
+        return new SecurityPolicies(Collections.unmodifiableMap(policies));
+    }
+
+    private static SecurityPolicy compile(String name, Config policy, org.pac4j.core.config.Config securityConfig) {
+        String clientNames = policy.hasPath("clients")
+            ? policy.getString("clients")
+            : securityConfig.getClients().getDefaultSecurityClients();
+        ClientChain clients;
+        try {
+            clients = ClientChain.resolve(securityConfig.getClients(), clientNames);
+        } catch (RuntimeException ex) {
+            throw new TechnicalException("Security policy " + name + ": " + ex.getMessage(), ex);
+        }
+        if (clients.getClients().isEmpty()) {
+            throw new TechnicalException("Security policy " + name + " has no clients");
+        }
+        String authorizerName = policy.hasPath("authorizer") ? policy.getString("authorizer") : null;
+        return new SecurityPolicy(name, clients, authorizerName, authorizer(name, authorizerName, securityConfig));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Authorizer<CommonProfile> authorizer(String name, String authorizerNames, org.pac4j.core.config.Config securityConfig) {
+        if (authorizerNames == null) return null;
+        List<Authorizer<CommonProfile>> authorizers = new ArrayList<>();
+        for (String authorizerName : authorizerNames.split(SEPARATOR)) {
+            if (authorizerName.trim().isEmpty()) continue;
+            Authorizer<CommonProfile> authorizer = securityConfig.getAuthorizers().get(authorizerName.trim());
+            if (authorizer == null) {
+                throw new TechnicalException("Security policy " + name + ": no authorizer found for name: " + authorizerName.trim());
+            }
+            authorizers.add(authorizer);
+        }
+        if (authorizers.isEmpty()) throw new TechnicalException("Security policy " + name + " has no authorizers");
+        return authorizers.size() == 1 ? authorizers.get(0) : new AndAuthorizer<>(authorizers);
+    }
+
+    /**
+     * Table with chains of clients in parallel mode (see {@link ClientChain#inParallel(SecurityExecutor)}).
+     *
+     * @param executor Executor of checks
+     * @return Table of policies in parallel mode
+     */
+    public SecurityPolicies inParallel(SecurityExecutor executor) {
+        Map<String, SecurityPolicy> parallel = new HashMap<>();
+        for (SecurityPolicy policy : policies.values()) {
+            parallel.put(policy.getName(), new SecurityPolicy(policy.getName(), policy.getClients().inParallel(executor),
+                policy.getAuthorizerName(), policy.getAuthorizer()));
+        }
+        return new SecurityPolicies(Collections.unmodifiableMap(parallel));
+    }
+
+    /**
+     * Find policy of service call.
+     *
+     * @param name Name of service call
+     * @return Policy
+     * @throws TechnicalException if policy is not found
+     */
+    public SecurityPolicy get(String name) {
+        SecurityPolicy policy = policies.get(name);
+        if (policy == null) throw new TechnicalException("No security policy found for name: " + name);
+        return policy;
+    }
+
+    /**
+     * @param name Name of service call
+     * @return {@code true} if policy of service call is defined
+     */
+    public boolean contains(String name) {
+        return policies.containsKey(name);
+    }
+
+    /**
+     * @return policies by name of service call
+     */
+    public Map<String, SecurityPolicy> getPolicies() {
+        return policies;
+    }
+}
@@ -0,0 +1,76 @@
+package org.pac4j.lagom.policy;
+
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.client.ClientChain;
+
+/**
+ * Security policy of service call: pre-resolved chain of authentication clients and optional authorizer,
+ * compiled by {@link SecurityPolicies}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class SecurityPolicy {
+
+    private final String name;
+
+    private final ClientChain clients;
+
+    private final String authorizerName;
+
+    private final Authorizer<CommonProfile> authorizer;
+
+    /**
+     * @param name Name of service call
+     * @param clients Chain of authentication clients
+     * @param authorizerName Comma-separated names of authorizers or {@code null}
+     * @param authorizer Authorizer or {@code null} if service call is only authenticated
+     */
+    public SecurityPolicy(String name, ClientChain clients, String authorizerName, Authorizer<CommonProfile> authorizer) {
+        this.name = name;
+        this.clients = clients;
+        this.authorizerName = authorizerName;
+        this.authorizer = authorizer;
+    }
+
+    /**
+     * @return name of service call
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return chain of authentication clients
+     */
+    public ClientChain getClients() {
+        return clients;
+    }
+
+    /**
+     * @return comma-separated names of authorizers or {@code null}
+     */
+    public String getAuthorizerName() {
+        return authorizerName;
+    }
+
+    /**
+     * @return authorizer or {@code null} if service call is only authenticated
+     */
+    public Authorizer<CommonProfile> getAuthorizer() {
+        return authorizer;
+    }
+
+    /**
+     * @return {@code true} if profile must be authorized
+     */
+    public boolean requiresAuthorization() {
+        return authorizer != null;
+    }
+
+    @Override
+    public String toString() {
+        return "SecurityPolicy{name=" + name + ", clients=" + clients.getName() + ", authorizer=" + authorizerName + "}";
+    }
+}
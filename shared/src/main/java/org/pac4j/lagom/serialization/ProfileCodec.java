@@ -0,0 +1,444 @@
+package org.pac4j.lagom.serialization;
+
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.Gender;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>Compact binary encoding of {@link CommonProfile} (and its subclasses) for cluster messages and persisted events.</p>
+ * <p>Layout: version byte, class of profile, id, client name, linked id, remembered flag, roles, permissions,
+ * attributes and authentication attributes. Integers are varints, strings are UTF-8.</p>
+ * <p>Strings are interned: a string is written once per message, repeats are references to it.
+ * The table of references is pre-filled with well-known class and attribute names (JWT claims, attributes of
+ * {@code CommonProfileDefinition}), so they are never written inline. The table is append-only: new names may be added
+ * only at its end together with a new version.</p>
+ * <p>Attribute values are limited to types with compact encoding (strings, booleans, numbers, dates, URIs, locales,
+ * enums of pac4j, lists and maps of them): Java serialization is never used. Class of profile is loaded without
+ * initialization and instantiated only if it is a concrete subclass of {@link CommonProfile}, so bytes of cluster
+ * messages and persisted events can not instantiate arbitrary classes.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class ProfileCodec {
+
+    /**
+     * Version of the layout written by this codec. Older versions are still read.
+     */
+    public static final byte VERSION = 1;
+
+    private static final List<String> WELL_KNOWN = Collections.unmodifiableList(Arrays.asList(
+        // version 1
+        "org.pac4j.core.profile.CommonProfile",
+        "org.pac4j.jwt.profile.JwtProfile",
+        "org.pac4j.core.profile.AnonymousProfile",
+        "org.pac4j.http.profile.IpProfile",
+        "sub", "iss", "aud", "exp", "iat", "nbf", "jti",
+        "email", "first_name", "family_name", "display_name", "username",
+        "gender", "locale", "picture_url", "profile_url", "location"
+    ));
+
+    private static final Map<String, Integer> WELL_KNOWN_INDEX = index(WELL_KNOWN);
+
+    @SuppressWarnings("rawtypes")
+    private static final Map<String, Class<? extends Enum>> ENUMS = Collections.singletonMap(Gender.class.getName(), Gender.class);
+
+    private static final ConcurrentMap<String, Constructor<? extends CommonProfile>> PROFILES = new ConcurrentHashMap<>();
+
+    private static final int NAME_NULL = 0;
+
+    private static final int NAME_INLINE = 1;
+
+    private static final int NAME_REFERENCE = 2;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte TRUE = 2;
+    private static final byte FALSE = 3;
+    private static final byte INT = 4;
+    private static final byte LONG = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte DATE = 7;
+    private static final byte LIST = 8;
+    private static final byte MAP = 9;
+    private static final byte URI_VALUE = 10;
+    private static final byte LOCALE = 11;
+    private static final byte ENUM = 12;
+    // 13 is reserved: Java serialization, neither written nor read
+
+    private ProfileCodec() {
+    }
+
+    /**
+     * Encode the profile.
+     *
+     * @param profile profile
+     * @return bytes
+     * @throws IllegalArgumentException if value of an attribute has no compact encoding
+     */
+    public static byte[] encode(CommonProfile profile) {
+        Writer writer = new Writer();
+        writer.writeByte(VERSION);
+        writer.writeName(profile.getClass().getName());
+        writer.writeName(profile.getId());
+        writer.writeName(profile.getClientName());
+        writer.writeName(profile.getLinkedId());
+        writer.writeByte(profile.isRemembered() ? TRUE : FALSE);
+        writer.writeNames(profile.getRoles());
+        writer.writeNames(profile.getPermissions());
+        writer.writeAttributes(profile.getAttributes());
+        writer.writeAttributes(profile.getAuthenticationAttributes());
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decode the profile.
+     *
+     * @param bytes bytes written by {@link #encode(CommonProfile)}
+     * @return profile
+     * @throws IllegalArgumentException if bytes are written by an unknown version or are corrupted
+     */
+    public static CommonProfile decode(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        byte version = reader.readByte();
+        if (version < 1 || version > VERSION) {
+            throw new IllegalArgumentException("Unsupported version " + version + " of serialized profile");
+        }
+        try {
+            CommonProfile profile = newProfile(reader.readName());
+            String id = reader.readName();
+            profile.setClientName(reader.readName());
+            profile.setLinkedId(reader.readName());
+            profile.setRemembered(reader.readByte() == TRUE);
+            Set<String> roles = reader.readNames();
+            Set<String> permissions = reader.readNames();
+            Map<String, Object> attributes = reader.readAttributes();
+            profile.build(id, attributes, reader.readAttributes());
+            profile.addRoles(roles);
+            profile.addPermissions(permissions);
+            return profile;
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Corrupted serialized profile", e);
+        }
+    }
+
+    private static CommonProfile newProfile(String className) {
+        if (className == null) throw new IllegalArgumentException("No class of serialized profile");
+        // only constructors of profile classes are cached, so unknown names do not grow the cache
+        Constructor<? extends CommonProfile> constructor = PROFILES.get(className);
+        if (constructor == null) {
+            constructor = profileConstructor(className);
+            PROFILES.putIfAbsent(className, constructor);
+        }
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Can't instantiate " + className + " of serialized profile", e);
+        }
+    }
+
+    private static Constructor<? extends CommonProfile> profileConstructor(String className) {
+        Class<?> type;
+        try {
+            type = Class.forName(className, false, ProfileCodec.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new IllegalArgumentException("Unknown class " + className + " of serialized profile", e);
+        }
+        if (!CommonProfile.class.isAssignableFrom(type) || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException("Class " + className + " of serialized profile is not a profile");
+        }
+        try {
+            return type.asSubclass(CommonProfile.class).getConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Class " + className + " of serialized profile has no public default constructor", e);
+        }
+    }
+
+    private static Map<String, Integer> index(List<String> names) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            index.put(names.get(i), i);
+        }
+        return index;
+    }
+
+    private static final class Writer {
+
+        private byte[] buffer = new byte[256];
+
+        private int position;
+
+        private Map<String, Integer> names;
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        private void writeVarint(int value) {
+            ensure(5);
+            int rest = value;
+            while ((rest & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((rest & 0x7F) | 0x80);
+                rest >>>= 7;
+            }
+            buffer[position++] = (byte) rest;
+        }
+
+        private void writeVarlong(long value) {
+            ensure(10);
+            long rest = (value << 1) ^ (value >> 63);
+            while ((rest & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((rest & 0x7F) | 0x80);
+                rest >>>= 7;
+            }
+            buffer[position++] = (byte) rest;
+        }
+
+        private void writeName(String name) {
+            if (name == null) {
+                writeVarint(NAME_NULL);
+                return;
+            }
+            Integer reference = WELL_KNOWN_INDEX.get(name);
+            if (reference == null && names != null) reference = names.get(name);
+            if (reference != null) {
+                writeVarint(NAME_REFERENCE + reference);
+                return;
+            }
+            if (names == null) names = new HashMap<>();
+            names.put(name, WELL_KNOWN.size() + names.size());
+            writeVarint(NAME_INLINE);
+            writeBytes(name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void writeNames(Collection<String> values) {
+            writeVarint(values.size());
+            for (String value : values) {
+                writeName(value);
+            }
+        }
+
+        private void writeAttributes(Map<String, Object> attributes) {
+            writeVarint(attributes.size());
+            for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+                writeName(attribute.getKey());
+                writeValue(attribute.getValue());
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void writeValue(Object value) {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeName((String) value);
+            } else if (value instanceof Boolean) {
+                writeByte((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Integer) {
+                writeByte(INT);
+                writeVarlong((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVarlong((Long) value);
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                // low bits of mantissa of round numbers are zeroes, reversed they make a short varint
+                writeVarlong(Long.reverse(Double.doubleToRawLongBits((Double) value)));
+            } else if (value.getClass() == Date.class) {
+                writeByte(DATE);
+                writeVarlong(((Date) value).getTime());
+            } else if (value instanceof List) {
+                writeByte(LIST);
+                List<Object> list = (List<Object>) value;
+                writeVarint(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map && stringKeys((Map<?, ?>) value)) {
+                writeByte(MAP);
+                writeAttributes((Map<String, Object>) value);
+            } else if (value instanceof URI) {
+                writeByte(URI_VALUE);
+                writeName(value.toString());
+            } else if (value instanceof Locale) {
+                writeByte(LOCALE);
+                writeName(((Locale) value).toLanguageTag());
+            } else if (value instanceof Enum && ENUMS.containsKey(((Enum<?>) value).getDeclaringClass().getName())) {
+                writeByte(ENUM);
+                writeName(((Enum<?>) value).getDeclaringClass().getName());
+                writeName(((Enum<?>) value).name());
+            } else {
+                throw new IllegalArgumentException("Attribute value of " + value.getClass() + " can not be serialized");
+            }
+        }
+
+        private static boolean stringKeys(Map<?, ?> map) {
+            for (Object key : map.keySet()) {
+                if (!(key instanceof String)) return false;
+            }
+            return true;
+        }
+
+        private void ensure(int length) {
+            if (position + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] buffer;
+
+        private int position;
+
+        private List<String> names;
+
+        private Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        private byte readByte() {
+            if (position >= buffer.length) throw new IndexOutOfBoundsException("End of serialized profile");
+            return buffer[position++];
+        }
+
+        private byte[] readBytes() {
+            int length = readVarint();
+            if (length < 0 || position + length > buffer.length) throw new IndexOutOfBoundsException("End of serialized profile");
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IllegalArgumentException("Malformed varint in serialized profile");
+        }
+
+        private long readVarlong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return (value >>> 1) ^ -(value & 1);
+            }
+            throw new IllegalArgumentException("Malformed varint in serialized profile");
+        }
+
+        private String readName() {
+            int code = readVarint();
+            if (code == NAME_NULL) return null;
+            if (code == NAME_INLINE) {
+                String name = new String(readBytes(), StandardCharsets.UTF_8);
+                if (names == null) names = new ArrayList<>();
+                names.add(name);
+                return name;
+            }
+            int reference = code - NAME_REFERENCE;
+            if (reference < WELL_KNOWN.size()) return WELL_KNOWN.get(reference);
+            if (names == null) throw new IndexOutOfBoundsException("Unknown reference " + reference);
+            return names.get(reference - WELL_KNOWN.size());
+        }
+
+        private Set<String> readNames() {
+            int size = readVarint();
+            Set<String> values = new LinkedHashSet<>();
+            for (int i = 0; i < size; i++) {
+                values.add(readName());
+            }
+            return values;
+        }
+
+        private Map<String, Object> readAttributes() {
+            int size = readVarint();
+            Map<String, Object> attributes = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                String name = readName();
+                attributes.put(name, readValue());
+            }
+            return attributes;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Object readValue() {
+            byte tag = readByte();
+            switch (tag) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readName();
+                case TRUE:
+                    return Boolean.TRUE;
+                case FALSE:
+                    return Boolean.FALSE;
+                case INT:
+                    return (int) readVarlong();
+                case LONG:
+                    return readVarlong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(Long.reverse(readVarlong()));
+                case DATE:
+                    return new Date(readVarlong());
+                case LIST:
+                    int size = readVarint();
+                    List<Object> list = new ArrayList<>();
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                case MAP:
+                    return readAttributes();
+                case URI_VALUE:
+                    return URI.create(readName());
+                case LOCALE:
+                    return Locale.forLanguageTag(readName());
+                case ENUM:
+                    String className = readName();
+                    Class<? extends Enum> type = ENUMS.get(className);
+                    if (type == null) throw new IllegalArgumentException("Unknown enum " + className + " in serialized profile");
+                    return Enum.valueOf(type, readName());
+                default:
+                    throw new IllegalArgumentException("Unknown tag " + tag + " of attribute value in serialized profile");
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.pac4j.lagom.serialization;
+
+import akka.serialization.SerializerWithStringManifest;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.io.NotSerializableException;
+
+/**
+ * <p>Akka serializer of {@link CommonProfile} in cluster messages and persisted events, encoded by {@link ProfileCodec}.</p>
+ * <p>It is bound to {@link CommonProfile} (and so to all its subclasses) in {@code reference.conf} of lagom-pac4j,
+ * both for javadsl and scaladsl services.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class ProfileSerializer extends SerializerWithStringManifest {
+
+    /**
+     * Identifier of the serializer ({@code "p4j"} in ASCII).
+     */
+    public static final int IDENTIFIER = 0x70346A;
+
+    private static final String MANIFEST = "P";
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        return MANIFEST;
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        if (o instanceof CommonProfile) return ProfileCodec.encode((CommonProfile) o);
+        throw new IllegalArgumentException("Can't serialize object of " + o.getClass() + " in " + getClass().getName());
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        if (!MANIFEST.equals(manifest)) {
+            throw new NotSerializableException("Unknown manifest " + manifest + " in " + getClass().getName());
+        }
+        try {
+            return ProfileCodec.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            NotSerializableException exception = new NotSerializableException(e.getMessage());
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+}
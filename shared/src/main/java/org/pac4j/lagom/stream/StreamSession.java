@@ -0,0 +1,180 @@
+package org.pac4j.lagom.stream;
+
+import akka.NotUsed;
+import akka.stream.Attributes;
+import akka.stream.FlowShape;
+import akka.stream.Graph;
+import akka.stream.Inlet;
+import akka.stream.Outlet;
+import akka.stream.stage.AbstractInHandler;
+import akka.stream.stage.AbstractOutHandler;
+import akka.stream.stage.GraphStage;
+import akka.stream.stage.GraphStageLogic;
+import akka.stream.stage.TimerGraphStageLogic;
+import org.pac4j.core.profile.AnonymousProfile;
+import org.pac4j.core.profile.CommonProfile;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>Authentication of a streamed (e.g. WebSocket) service call, done once when the stream is opened.</p>
+ * <p>Streams passed through {@link #expiry()} are failed when the profile expires ({@code exp} of JWT).
+ * Expiry is checked by a timer, set to the expiration time, not on every message.</p>
+ * <p>Long-lived stream may get a fresh token in-band (e.g. in a message sent by the client) and pass it to
+ * {@link #refresh(String)}: the token is authenticated by the clients of the call and, if it belongs to the same user
+ * and is still authorized by the authorizer of the call, replaces the profile and prolongs the stream.
+ * Timer fired at the old expiration time is just rescheduled.</p>
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+public final class StreamSession {
+
+    private static final String EXPIRATION_TIME = "exp";
+
+    private static final String TIMER = "expiry";
+
+    private final Function<String, CommonProfile> tokenAuthenticator;
+
+    private final Predicate<CommonProfile> authorization;
+
+    private final Supplier<? extends RuntimeException> expired;
+
+    private volatile CommonProfile profile;
+
+    private volatile long expiresAt;
+
+    /**
+     * @param profile profile authenticated when the stream is opened
+     * @param tokenAuthenticator authenticator of refreshed tokens (returns {@code null} for invalid token)
+     * @param authorization check of refreshed profile by the authorizer (and cache) of the call,
+     *                      always {@code true} for authentication only
+     * @param expired factory of failure of expired stream (e.g. {@code Unauthorized} of the DSL)
+     */
+    public StreamSession(CommonProfile profile, Function<String, CommonProfile> tokenAuthenticator,
+                         Predicate<CommonProfile> authorization, Supplier<? extends RuntimeException> expired) {
+        this.profile = profile;
+        this.expiresAt = expiresAt(profile);
+        this.tokenAuthenticator = tokenAuthenticator;
+        this.authorization = authorization;
+        this.expired = expired;
+    }
+
+    /**
+     * @return current profile (authenticated or anonymous)
+     */
+    public CommonProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @return expiration time of the profile (milliseconds since epoch), {@link Long#MAX_VALUE} if it never expires
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Replace the profile by one authenticated from a fresh token.
+     * Token is accepted only if it belongs to the same (not anonymous) user, does not expire earlier
+     * and the refreshed profile is authorized.
+     *
+     * @param token fresh token
+     * @return {@code true} if the token is accepted
+     */
+    public synchronized boolean refresh(String token) {
+        CommonProfile current = profile;
+        if (current == null || current instanceof AnonymousProfile) return false;
+        CommonProfile refreshed = tokenAuthenticator.apply(token);
+        if (refreshed == null || !Objects.equals(refreshed.getId(), current.getId())) return false;
+        long refreshedExpiresAt = expiresAt(refreshed);
+        if (refreshedExpiresAt < expiresAt) return false;
+        if (!authorization.test(refreshed)) return false;
+        profile = refreshed;
+        expiresAt = refreshedExpiresAt;
+        return true;
+    }
+
+    /**
+     * Stage that passes elements as is and fails the stream when the profile expires.
+     * Each stream of the call (request and response) should be passed through own stage.
+     *
+     * @param <T> type of elements
+     * @return flow stage
+     */
+    public <T> Graph<FlowShape<T, T>, NotUsed> expiry() {
+        return new ExpiryStage<>(this);
+    }
+
+    private static long expiresAt(CommonProfile profile) {
+        Object exp = profile == null ? null : profile.getAttribute(EXPIRATION_TIME);
+        return exp instanceof Date ? ((Date) exp).getTime() : Long.MAX_VALUE;
+    }
+
+    private static final class ExpiryStage<T> extends GraphStage<FlowShape<T, T>> {
+
+        private final StreamSession session;
+
+        private final Inlet<T> in = Inlet.create("StreamSession.expiry.in");
+
+        private final Outlet<T> out = Outlet.create("StreamSession.expiry.out");
+
+        private final FlowShape<T, T> shape = FlowShape.of(in, out);
+
+        private ExpiryStage(StreamSession session) {
+            this.session = session;
+        }
+
+        @Override
+        public FlowShape<T, T> shape() {
+            return shape;
+        }
+
+        @Override
+        public GraphStageLogic createLogic(Attributes inheritedAttributes) {
+            return new TimerGraphStageLogic(shape) {
+                {
+                    setHandler(in, new AbstractInHandler() {
+                        @Override
+                        public void onPush() {
+                            push(out, grab(in));
+                        }
+                    });
+                    setHandler(out, new AbstractOutHandler() {
+                        @Override
+                        public void onPull() {
+                            pull(in);
+                        }
+                    });
+                }
+
+                @Override
+                public void preStart() {
+                    scheduleExpiry();
+                }
+
+                @Override
+                public void onTimer(Object timerKey) {
+                    scheduleExpiry();
+                }
+
+                private void scheduleExpiry() {
+                    long expiresAt = session.getExpiresAt();
+                    if (expiresAt == Long.MAX_VALUE) return;
+                    long remaining = expiresAt - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        failStage(session.expired.get());
+                    } else {
+                        scheduleOnce(TIMER, FiniteDuration.create(remaining, TimeUnit.MILLISECONDS));
+                    }
+                }
+            };
+        }
+    }
+}
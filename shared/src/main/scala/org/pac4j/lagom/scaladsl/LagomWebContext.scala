@@ -7,34 +7,58 @@ import com.lightbend.lagom.scaladsl.api.transport.RequestHeader
 import org.pac4j.core.context.session.SessionStore
 import org.pac4j.core.context.{Cookie, WebContext}
 import org.pac4j.core.exception.TechnicalException
+import org.pac4j.lagom.context.QueryString
 import play.api.http.HeaderNames.COOKIE
 import play.core.cookie.encoding.ServerCookieDecoder
 
 import scala.collection.JavaConverters._
+import scala.collection.mutable
 
 /**
   * <p>Implementation web context of PAC4J for Lagom framework.</p>
   * <p>Context is immutable and the [[SessionStore]] is not supported.</p>
+  * <p>Headers, cookies and query parameters are looked up lazily and memoized, so one context should be created per request
+  * and shared by authentication and authorization. Context is not thread-safe.</p>
   *
   * @author Vladimir Kornyshev
   * @since 1.0.0
   */
 class LagomWebContext(requestHeader: RequestHeader) extends WebContext {
 
+  private val headers = mutable.HashMap.empty[String, Option[String]]
+
+  private lazy val cookies: util.List[Cookie] = header(COOKIE) match {
+    case Some(value) => util.Collections.unmodifiableList(
+      ServerCookieDecoder.STRICT.decode(value).asScala.toList.map(cookie => new Cookie(cookie.name(), cookie.value())).asJava
+    )
+    case None => emptyList()
+  }
+
+  private lazy val parameters: util.Map[String, Array[String]] = QueryString.parse(requestHeader.uri.getRawQuery)
+
   override def getSessionStore: SessionStore[_ <: WebContext] = throw new TechnicalException("Operation not supported")
 
-  override def getRequestParameter(s: String): String = throw new TechnicalException("Operation not supported")
+  /**
+    * Parameter of query string (e.g. token of WebSocket client, that can't set headers).
+    *
+    * @param name Name of parameter
+    * @return First value of parameter or `null` if request has no such parameter
+    */
+  override def getRequestParameter(name: String): String = Option(parameters.get(name)).map(_.head).orNull
 
-  override def getRequestParameters: util.Map[String, Array[String]] = throw new TechnicalException("Operation not supported")
+  override def getRequestParameters: util.Map[String, Array[String]] = parameters
 
   override def getRequestAttribute(s: String): AnyRef = throw new TechnicalException("Operation not supported")
 
   override def setRequestAttribute(s: String, o: Any): Unit = throw new TechnicalException("Operation not supported")
 
-  override def getRequestHeader(name: String): String = requestHeader.getHeader(name) match {
-    case Some(value) => value
-    case None => throw new TechnicalException(s"Header $name not found")
-  }
+  /**
+    * Header of request.
+    *
+    * @param name Name of header
+    * @return Value of header or `null` if request has no such header (as expected by extractors of pac4j)
+    */
+  override def getRequestHeader(name: String): String = header(name).orNull
 
   override def getRequestMethod: String = requestHeader.method.name
 
@@ -58,15 +82,13 @@ class LagomWebContext(requestHeader: RequestHeader) extends WebContext {
 
   override def getFullRequestURL: String = throw new TechnicalException("Operation not supported")
 
-  override def getRequestCookies: util.Collection[Cookie] = requestHeader.getHeader(COOKIE) match {
-    case Some(cookies) => (
-      for (cookie <- ServerCookieDecoder.STRICT.decode(cookies).asScala) yield new Cookie(cookie.name(), cookie.value())
-    ).asJava
-    case None => emptyList()
-  }
+  override def getRequestCookies: util.Collection[Cookie] = cookies
 
   override def addResponseCookie(cookie: Cookie): Unit = throw new TechnicalException("Operation not supported")
 
   override def getPath: String = requestHeader.uri.getPath
 
+  private def header(name: String): Option[String] =
+    headers.getOrElseUpdate(name, requestHeader.getHeader(name))
+
 }
@@ -1,15 +1,28 @@
 package org.pac4j.lagom.scaladsl
 
 import java.util.Collections.singletonList
+import java.util.concurrent.RejectedExecutionException
+import java.util.function.{BiConsumer, Predicate, Supplier}
 
-import com.lightbend.lagom.scaladsl.api.transport.Forbidden
+import akka.stream.scaladsl.Source
+import com.lightbend.lagom.scaladsl.api.transport.{ExceptionMessage, Forbidden, RequestHeader, TransportErrorCode, TransportException}
 import com.lightbend.lagom.scaladsl.server.ServerServiceCall
 import org.pac4j.core.authorization.authorizer.Authorizer
-import org.pac4j.core.client.Client
 import org.pac4j.core.config.Config
-import org.pac4j.core.credentials.Credentials
+import org.pac4j.core.context.WebContext
 import org.pac4j.core.profile.{AnonymousProfile, CommonProfile}
-import org.pac4j.lagom.scaladsl.transport.Unauthorized
+import org.pac4j.lagom.authorization.AuthorizationCache
+import org.pac4j.lagom.client.ClientChain
+import org.pac4j.lagom.concurrent.AuthenticationRateLimiter.Attempt
+import org.pac4j.lagom.concurrent.{AuthenticationRateLimiter, SecurityExecutor}
+import org.pac4j.lagom.metrics.SecurityMetrics
+import org.pac4j.lagom.metrics.SecurityMetrics.Outcome
+import org.pac4j.lagom.policy.{SecurityPolicies, SecurityPolicy}
+import org.pac4j.lagom.scaladsl.transport.{TooManyRequests, Unauthorized}
+import org.pac4j.lagom.stream.StreamSession
+
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.Try
 
 /**
   * <p>
@@ -31,6 +44,64 @@ trait SecuredService {
     */
   def securityConfig: Config
 
+  /**
+    * Get executor for asynchronous authentication and authorization of this service.
+    * The shared executor with default settings is used unless overridden, e.g. by executor created once
+    * from configuration (`SecurityExecutor.parse(config.getConfig("pac4j.lagom.security-executor"))`).
+    *
+    * @return executor of credential checks
+    */
+  def securityExecutor: SecurityExecutor = SecurityExecutor.defaultExecutor()
+
+  /**
+    * Get listener of security metrics of this service.
+    *
+    * @return security metrics
+    */
+  def securityMetrics: SecurityMetrics = SecurityMetrics.NOOP
+
+  /**
+    * Get cache of authorization decisions of this service.
+    *
+    * @return cache of decisions, decisions are not cached by default
+    */
+  def authorizationCache: Option[AuthorizationCache] = None
+
+  /**
+    * Get limiter of failed authentications of this service, checked before credentials are verified.
+    * Requests refused by the limiter are answered with [[TooManyRequests]].
+    *
+    * @return limiter, failed authentications are not limited by default
+    */
+  def authenticationRateLimiter: Option[AuthenticationRateLimiter] = None
+
+  /**
+    * Get table of security policies of this service calls, compiled once at startup
+    * (e.g. `SecurityPolicies.compile(conf.getConfig("pac4j.lagom.policies"), securityConfig)`).
+    * Chains of clients are run in parallel if the table is compiled so ([[SecurityPolicies#inParallel]]).
+    *
+    * @return table of policies, empty by default
+    */
+  def securityPolicies: SecurityPolicies = SecurityPolicies.EMPTY
+
+  /**
+    * Find security policy of service call in [[securityPolicies]].
+    *
+    * @param callName Name of service call
+    * @return Policy with resolved clients and authorizer
+    * @throws org.pac4j.core.exception.TechnicalException if policy is not found
+    */
+  def policy(callName: String): SecurityPolicy = securityPolicies.get(callName)
+
+  /**
+    * Whether clients of a chain (comma-separated names, e.g. "jwt,cookie") that find credentials
+    * in the request are run in parallel on [[securityExecutor]], the first authenticated profile wins.
+    * By default clients are run one by one in order of names.
+    *
+    * @return true to run clients in parallel
+    */
+  def parallelClients: Boolean = false
+
   /**
     * Service call composition for authentication.
     *
@@ -46,7 +117,7 @@ trait SecuredService {
   /**
     * Service call composition for authentication.
     *
-    * @param clientName Name of authentication client
+    * @param clientName Name of authentication client or comma-separated names of clients
     * @param serviceCall Service call
     * @tparam Request Type of request
     * @tparam Response Type of response
@@ -54,22 +125,7 @@ trait SecuredService {
     */
   def authenticate[Request, Response](
         clientName: String, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
-    ServerServiceCall.compose { requestHeader =>
-      val profile = try {
-        val clients = securityConfig.getClients
-        val defaultClient = clients.findClient(clientName).asInstanceOf[Client[Credentials, CommonProfile]]
-        val context = new LagomWebContext(requestHeader)
-        val credentials = defaultClient.getCredentials(context)
-        defaultClient.getUserProfile(credentials, context)
-      } catch {
-        case ex: Exception =>
-          // We can throw only TransportException.
-          // Otherwise exception will be sent to the client with stack trace.
-          new AnonymousProfile
-      }
-
-      serviceCall.apply(Option(profile).getOrElse(new AnonymousProfile))
-    }
+    composeAuthentication(clientChain(clientName), serviceCall)
 
   /**
     * Service call composition for authorization.
@@ -87,7 +143,7 @@ trait SecuredService {
   /**
     * Service call composition for authorization.
     *
-    * @param clientName Name of authentication client
+    * @param clientName Name of authentication client or comma-separated names of clients
     * @param authorizer Authorizer (may be composite)
     * @param serviceCall Service call
     * @tparam Request Type of request
@@ -96,19 +152,7 @@ trait SecuredService {
     */
   def authorize[Request, Response](
         clientName: String, authorizer: Authorizer[CommonProfile], serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
-    authenticate(clientName, (profile: CommonProfile) => ServerServiceCall.compose { requestHeader =>
-      val authorized = try {
-        authorizer != null && authorizer.isAuthorized(new LagomWebContext(requestHeader), singletonList(profile))
-      } catch {
-        case ex: Exception =>
-          // We can throw only TransportException.
-          // Otherwise exception will be sent to the client with stack trace.
-          false
-      }
-      if (profile == null || profile.isInstanceOf[AnonymousProfile]) throw Unauthorized("Unauthorized")
-      if (!authorized) throw Forbidden("Authorization failed")
-      serviceCall.apply(profile)
-    })
+    composeAuthorization(clientChain(clientName), authorizer, serviceCall)
 
   /**
     * Service call composition for authorization.
@@ -126,7 +170,7 @@ trait SecuredService {
   /**
     * Service call composition for authorization.
     *
-    * @param clientName     Name of authentication client
+    * @param clientName     Name of authentication client or comma-separated names of clients
     * @param authorizerName Name of authorizer, registered in security config
     * @param serviceCall    Service call
     * @tparam Request Type of request
@@ -136,4 +180,387 @@ trait SecuredService {
   def authorize[Request, Response](
         clientName: String, authorizerName: String, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
     authorize(clientName, securityConfig.getAuthorizers.get(authorizerName).asInstanceOf[Authorizer[CommonProfile]], serviceCall)
+
+  /**
+    * Service call composition for authentication and authorization by policy of service call.
+    *
+    * @param callName Name of service call in [[securityPolicies]]
+    * @param serviceCall Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with security logic of the policy
+    */
+  def secure[Request, Response](
+        callName: String, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    secure(policy(callName), serviceCall)
+
+  /**
+    * Service call composition for authentication and authorization by policy.
+    * Profile is authorized only if the policy has authorizer.
+    *
+    * @param policy Security policy
+    * @param serviceCall Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with security logic of the policy
+    */
+  def secure[Request, Response](
+        policy: SecurityPolicy, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    if (policy.requiresAuthorization) composeAuthorization(policy.getClients, policy.getAuthorizer, serviceCall)
+    else composeAuthentication(policy.getClients, serviceCall)
+
+  /**
+    * Service call composition for authentication of streamed (e.g. WebSocket) service call.
+    * Request is authenticated once, when the stream is opened. WebSocket clients can't set headers,
+    * so token may be passed in query string (e.g. for `ParameterClient`).
+    * Request and response streams are failed with [[Unauthorized]] when the profile expires,
+    * fresh token may be passed in-band to [[StreamSession#refresh]].
+    *
+    * @param serviceCall Service call
+    * @tparam Request Type of request (e.g. `Source[In, NotUsed]`)
+    * @tparam Response Type of response (e.g. `Source[Out, NotUsed]`)
+    * @return Service call with authentication logic
+    */
+  def authenticateStream[Request, Response](
+        serviceCall: StreamSession => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    authenticateStream(securityConfig.getClients.getDefaultSecurityClients, serviceCall)
+
+  /**
+    * Service call composition for authentication of streamed (e.g. WebSocket) service call.
+    * Request is authenticated once, when the stream is opened. WebSocket clients can't set headers,
+    * so token may be passed in query string (e.g. for `ParameterClient`).
+    * Request and response streams are failed with [[Unauthorized]] when the profile expires,
+    * fresh token may be passed in-band to [[StreamSession#refresh]].
+    *
+    * @param clientName Name of authentication client or comma-separated names of clients
+    * @param serviceCall Service call
+    * @tparam Request Type of request (e.g. `Source[In, NotUsed]`)
+    * @tparam Response Type of response (e.g. `Source[Out, NotUsed]`)
+    * @return Service call with authentication logic
+    */
+  def authenticateStream[Request, Response](
+        clientName: String, serviceCall: StreamSession => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    secureStream(clientChain(clientName), None, serviceCall)
+
+  /**
+    * Service call composition for authorization of streamed (e.g. WebSocket) service call.
+    * Authorizations are checked once, when the stream is opened (see [[authenticateStream]]).
+    *
+    * @param authorizer Authorizer (may be composite)
+    * @param serviceCall Service call
+    * @tparam Request Type of request (e.g. `Source[In, NotUsed]`)
+    * @tparam Response Type of response (e.g. `Source[Out, NotUsed]`)
+    * @return Service call with authorization logic
+    */
+  def authorizeStream[Request, Response](
+        authorizer: Authorizer[CommonProfile], serviceCall: StreamSession => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    authorizeStream(securityConfig.getClients.getDefaultSecurityClients, authorizer, serviceCall)
+
+  /**
+    * Service call composition for authorization of streamed (e.g. WebSocket) service call.
+    * Authorizations are checked once, when the stream is opened (see [[authenticateStream]]).
+    *
+    * @param clientName Name of authentication client or comma-separated names of clients
+    * @param authorizer Authorizer (may be composite)
+    * @param serviceCall Service call
+    * @tparam Request Type of request (e.g. `Source[In, NotUsed]`)
+    * @tparam Response Type of response (e.g. `Source[Out, NotUsed]`)
+    * @return Service call with authorization logic
+    */
+  def authorizeStream[Request, Response](
+        clientName: String, authorizer: Authorizer[CommonProfile], serviceCall: StreamSession => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    secureStream(clientChain(clientName), Some(authorizer), serviceCall)
+
+  /**
+    * Service call composition for authentication.
+    * Credentials are checked on [[securityExecutor]], not on the thread handling the request.
+    *
+    * @param serviceCall Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with authentication logic
+    */
+  def authenticateAsync[Request, Response](
+        serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    authenticateAsync(securityConfig.getClients.getDefaultSecurityClients, serviceCall)
+
+  /**
+    * Service call composition for authentication.
+    * Credentials are checked on [[securityExecutor]], not on the thread handling the request.
+    *
+    * @param clientName Name of authentication client or comma-separated names of clients
+    * @param serviceCall Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with authentication logic
+    */
+  def authenticateAsync[Request, Response](
+        clientName: String, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] = {
+    val clients = clientChain(clientName)
+    if (clients.isParallel) authenticateInParallel(clients, serviceCall)
+    else ServerServiceCall.composeAsync { requestHeader =>
+      userProfileOnExecutor(clients, requestHeader) { (profile, _) =>
+        serviceCall.apply(profile)
+      }
+    }
+  }
+
+  /**
+    * Service call composition for authorization.
+    * Credentials and authorizations are checked on [[securityExecutor]], not on the thread handling the request.
+    *
+    * @param authorizer Authorizer (may be composite)
+    * @param serviceCall Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with authorization logic
+    */
+  def authorizeAsync[Request, Response](
+        authorizer: Authorizer[CommonProfile], serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    authorizeAsync(securityConfig.getClients.getDefaultSecurityClients, authorizer, serviceCall)
+
+  /**
+    * Service call composition for authorization.
+    * Credentials and authorizations are checked on [[securityExecutor]], not on the thread handling the request.
+    *
+    * @param clientName Name of authentication client or comma-separated names of clients
+    * @param authorizer Authorizer (may be composite)
+    * @param serviceCall Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with authorization logic
+    */
+  def authorizeAsync[Request, Response](
+        clientName: String, authorizer: Authorizer[CommonProfile], serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] = {
+    val clients = clientChain(clientName)
+    if (clients.isParallel) authorizeInParallel(clients, authorizer, serviceCall)
+    else ServerServiceCall.composeAsync { requestHeader =>
+      userProfileOnExecutor(clients, requestHeader) { (profile, context) =>
+        checkAuthorization(clients.getName, authorizer, profile, context)
+        serviceCall.apply(profile)
+      }
+    }
+  }
+
+  /**
+    * Service call composition for authorization.
+    * Credentials and authorizations are checked on [[securityExecutor]], not on the thread handling the request.
+    *
+    * @param authorizerName Name of authorizer, registered in security config
+    * @param serviceCall    Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with authorization logic
+    */
+  def authorizeAsync[Request, Response](
+        authorizerName: String, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    authorizeAsync(securityConfig.getAuthorizers.get(authorizerName).asInstanceOf[Authorizer[CommonProfile]], serviceCall)
+
+  /**
+    * Service call composition for authorization.
+    * Credentials and authorizations are checked on [[securityExecutor]], not on the thread handling the request.
+    *
+    * @param clientName     Name of authentication client or comma-separated names of clients
+    * @param authorizerName Name of authorizer, registered in security config
+    * @param serviceCall    Service call
+    * @tparam Request Type of request
+    * @tparam Response Type of response
+    * @return Service call with authorization logic
+    */
+  def authorizeAsync[Request, Response](
+        clientName: String, authorizerName: String, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    authorizeAsync(clientName, securityConfig.getAuthorizers.get(authorizerName).asInstanceOf[Authorizer[CommonProfile]], serviceCall)
+
+  private def clientChain(clientNames: String): ClientChain = {
+    val clients = ClientChain.resolve(securityConfig.getClients, clientNames)
+    if (parallelClients) clients.inParallel(securityExecutor) else clients
+  }
+
+  private def composeAuthentication[Request, Response](
+        clients: ClientChain, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    if (clients.isParallel) authenticateInParallel(clients, serviceCall)
+    else ServerServiceCall.compose { requestHeader =>
+      serviceCall.apply(userProfile(clients, new LagomWebContext(requestHeader)))
+    }
+
+  private def composeAuthorization[Request, Response](
+        clients: ClientChain, authorizer: Authorizer[CommonProfile],
+        serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    if (clients.isParallel) authorizeInParallel(clients, authorizer, serviceCall)
+    else ServerServiceCall.compose { requestHeader =>
+      val context = new LagomWebContext(requestHeader)
+      val profile = userProfile(clients, context)
+      checkAuthorization(clients.getName, authorizer, profile, context)
+      serviceCall.apply(profile)
+    }
+
+  private def userProfile(clients: ClientChain, context: LagomWebContext): CommonProfile = {
+    val attempt = authenticationAttempt(clients, context)
+    completed(clients, attempt, clients.getUserProfile(context, securityMetrics))
+  }
+
+  private def authenticationAttempt(clients: ClientChain, context: LagomWebContext): Option[Attempt] = {
+    val attempt = authenticationRateLimiter.flatMap(limiter => Option(limiter.attempt(context)))
+    if (attempt.exists(_.isLimited)) {
+      securityMetrics.outcome(clients.getName, Outcome.THROTTLED)
+      throw TooManyRequests("Too many failed authentications")
+    }
+    attempt
+  }
+
+  private def completed(clients: ClientChain, attempt: Option[Attempt], profile: CommonProfile): CommonProfile = {
+    if (profile == null) attempt.foreach(_.failed())
+    anonymousIfNull(clients, profile)
+  }
+
+  private def anonymousIfNull(clients: ClientChain, profile: CommonProfile): CommonProfile =
+    if (profile == null) {
+      securityMetrics.outcome(clients.getName, Outcome.ANONYMOUS)
+      new AnonymousProfile
+    } else {
+      securityMetrics.outcome(clients.getName, Outcome.AUTHENTICATED)
+      profile
+    }
+
+  private def authenticateInParallel[Request, Response](
+        clients: ClientChain, serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    ServerServiceCall.composeAsync { requestHeader =>
+      userProfileAsync(clients, requestHeader) { (profile, _) =>
+        serviceCall.apply(profile)
+      }
+    }
+
+  private def authorizeInParallel[Request, Response](
+        clients: ClientChain, authorizer: Authorizer[CommonProfile], serviceCall: CommonProfile => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    ServerServiceCall.composeAsync { requestHeader =>
+      userProfileAsync(clients, requestHeader) { (profile, context) =>
+        checkAuthorization(clients.getName, authorizer, profile, context)
+        serviceCall.apply(profile)
+      }
+    }
+
+  private def userProfileAsync[T](clients: ClientChain, requestHeader: RequestHeader)(block: (CommonProfile, LagomWebContext) => T): Future[T] = {
+    val context = new LagomWebContext(requestHeader)
+    val attempt = authenticationAttempt(clients, context)
+    val promise = Promise[T]()
+    clients.getUserProfileAsync(context, new Supplier[WebContext] {
+      // Web context is not thread-safe, each parallel check gets own one
+      override def get(): WebContext = new LagomWebContext(requestHeader)
+    }, securityMetrics).whenComplete(new BiConsumer[CommonProfile, Throwable] {
+      override def accept(profile: CommonProfile, error: Throwable): Unit =
+        if (error != null) promise.failure(error)
+        else promise.complete(Try(block(completed(clients, attempt, profile), context)))
+    })
+    promise.future
+  }
+
+  private def secureStream[Request, Response](
+        clients: ClientChain, authorizer: Option[Authorizer[CommonProfile]],
+        serviceCall: StreamSession => ServerServiceCall[Request, Response]): ServerServiceCall[Request, Response] =
+    if (clients.isParallel) ServerServiceCall.composeAsync { requestHeader =>
+      userProfileAsync(clients, requestHeader) { (profile, context) =>
+        streamCall(clients, authorizer, serviceCall, requestHeader, profile, context)
+      }
+    }
+    else ServerServiceCall.compose { requestHeader =>
+      val context = new LagomWebContext(requestHeader)
+      streamCall(clients, authorizer, serviceCall, requestHeader, userProfile(clients, context), context)
+    }
+
+  private def streamCall[Request, Response](
+        clients: ClientChain, authorizer: Option[Authorizer[CommonProfile]],
+        serviceCall: StreamSession => ServerServiceCall[Request, Response],
+        requestHeader: RequestHeader, profile: CommonProfile, context: LagomWebContext): ServerServiceCall[Request, Response] = {
+    authorizer.foreach(checkAuthorization(clients.getName, _, profile, context))
+    val session = new StreamSession(
+      profile,
+      new java.util.function.Function[String, CommonProfile] {
+        override def apply(token: String): CommonProfile =
+          clients.getUserProfile(token, new LagomWebContext(requestHeader), securityMetrics)
+      },
+      new Predicate[CommonProfile] {
+        override def test(refreshed: CommonProfile): Boolean = authorizer.forall { authorizer =>
+          try {
+            checkAuthorization(clients.getName, authorizer, refreshed, new LagomWebContext(requestHeader))
+            true
+          } catch {
+            case _: TransportException => false
+          }
+        }
+      },
+      new Supplier[RuntimeException] {
+        override def get(): RuntimeException = Unauthorized("Token expired")
+      }
+    )
+    val call = serviceCall.apply(session)
+    ServerServiceCall { (header: RequestHeader, request: Request) =>
+      call.invokeWithHeaders(header, expiring(session, request)).map {
+        case (responseHeader, response) => (responseHeader, expiring(session, response))
+      }(SecuredService.sameThread)
+    }
+  }
+
+  private def expiring[T](session: StreamSession, message: T): T = message match {
+    case source: Source[_, _] => source.asInstanceOf[Source[Any, Any]].via(session.expiry[Any]()).asInstanceOf[T]
+    case _ => message
+  }
+
+  private def checkAuthorization(clientName: String, authorizer: Authorizer[CommonProfile], profile: CommonProfile, context: LagomWebContext): Unit = {
+    val metrics = securityMetrics
+    val start = System.nanoTime()
+    val authorized = try {
+      authorizer != null && (authorizationCache match {
+        case Some(cache) => cache.isAuthorized(context, profile, authorizer)
+        case None => authorizer.isAuthorized(context, singletonList(profile))
+      })
+    } catch {
+      case ex: Exception =>
+        // We can throw only TransportException.
+        // Otherwise exception will be sent to the client with stack trace.
+        false
+    }
+    metrics.authorizationChecked(SecurityMetrics.authorizerName(authorizer), System.nanoTime() - start)
+    if (profile == null || profile.isInstanceOf[AnonymousProfile]) {
+      metrics.outcome(clientName, Outcome.UNAUTHORIZED)
+      throw Unauthorized("Unauthorized")
+    }
+    if (!authorized) {
+      metrics.outcome(clientName, Outcome.FORBIDDEN)
+      throw Forbidden("Authorization failed")
+    }
+    metrics.outcome(clientName, Outcome.AUTHORIZED)
+  }
+
+  private def userProfileOnExecutor[T](clients: ClientChain, requestHeader: RequestHeader)(block: (CommonProfile, LagomWebContext) => T): Future[T] = {
+    val context = new LagomWebContext(requestHeader)
+    val attempt = authenticationAttempt(clients, context)
+    val promise = Promise[T]()
+    // Clients are checked one by one, each under own bulkhead of the executor
+    clients.getUserProfileAsync(context, securityExecutor, securityMetrics).whenComplete(new BiConsumer[CommonProfile, Throwable] {
+      override def accept(profile: CommonProfile, error: Throwable): Unit = error match {
+        case null => promise.complete(Try(block(completed(clients, attempt, profile), context)))
+        case rejected: RejectedExecutionException =>
+          // Rejection by bulkhead is reported to the client as 503 Service Unavailable.
+          securityMetrics.outcome(clients.getName, Outcome.REJECTED)
+          promise.failure(new TransportException(
+            TransportErrorCode.ServiceUnavailable,
+            new ExceptionMessage("ServiceUnavailable", rejected.getMessage)
+          ))
+        case _ => promise.failure(error)
+      }
+    })
+    promise.future
+  }
+}
+
+private object SecuredService {
+
+  /**
+    * Execution context for cheap callbacks, that don't block.
+    */
+  val sameThread: ExecutionContext = new ExecutionContext {
+    override def execute(runnable: Runnable): Unit = runnable.run()
+
+    override def reportFailure(cause: Throwable): Unit = throw cause
+  }
 }
@@ -0,0 +1,61 @@
+package org.pac4j.lagom.scaladsl.broker
+
+import akka.Done
+import akka.stream.scaladsl.Flow
+import com.lightbend.lagom.scaladsl.api.broker.Topic
+import org.pac4j.lagom.jwt.{Revocation, RevocationList}
+import play.api.libs.json._
+
+import scala.concurrent.Future
+
+/**
+  * Feeds [[RevocationList]] from a message broker topic of [[Revocation]].
+  *
+  * @author Sergey Morgunov
+  * @since 2.2.2
+  */
+object RevocationSubscriber {
+
+  /**
+    * JSON format of [[Revocation]] for declaration of the topic.
+    */
+  implicit val revocationFormat: Format[Revocation] = Format(
+    Reads { json =>
+      for {
+        revocationType <- (json \ "type").validate[String].flatMap { name =>
+          Revocation.Type.values.find(_.name == name).fold[JsResult[Revocation.Type]](JsError(s"Unknown type $name"))(JsSuccess(_))
+        }
+        value <- (json \ "value").validate[String]
+        revokedAt <- (json \ "revokedAt").validate[Long]
+        expiresAt <- (json \ "expiresAt").validate[Long]
+      } yield new Revocation(revocationType, value, revokedAt, expiresAt)
+    },
+    Writes { revocation =>
+      Json.obj(
+        "type" -> revocation.getType.name,
+        "value" -> revocation.getValue,
+        "revokedAt" -> revocation.getRevokedAt,
+        "expiresAt" -> revocation.getExpiresAt
+      )
+    }
+  )
+
+  /**
+    * Subscribe the denylist to the topic.
+    * Every node must receive all revocations, so `groupId` must be unique for the node
+    * (e.g. service name with address of the node). Revocations already expired on arrival are skipped,
+    * so a new consumer group may safely read the topic from the beginning.
+    *
+    * @param topic       topic of revocations
+    * @param groupId     consumer group of the node
+    * @param revocations denylist
+    * @return completion of the subscription
+    */
+  def subscribe(topic: Topic[Revocation], groupId: String, revocations: RevocationList): Future[Done] =
+    topic.subscribe
+      .withGroupId(groupId)
+      .atLeastOnce(Flow[Revocation].map { revocation =>
+        revocations.revoke(revocation)
+        Done
+      })
+}
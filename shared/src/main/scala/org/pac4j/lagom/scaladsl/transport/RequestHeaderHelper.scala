@@ -1,8 +1,13 @@
 package org.pac4j.lagom.scaladsl.transport
 
+import com.lightbend.lagom.scaladsl.api.ServiceCall
 import com.lightbend.lagom.scaladsl.api.transport.RequestHeader
 import com.nimbusds.jwt.JWT
 import org.pac4j.core.context.HttpConstants.{AUTHORIZATION_HEADER, BEARER_HEADER_PREFIX}
+import org.pac4j.core.profile.CommonProfile
+import org.pac4j.lagom.jwt.{InternalPrincipal, JwtTokenCache}
+
+import scala.concurrent.{ExecutionContext, Future}
 
 /**
   * Helper functions for [[RequestHeader]].
@@ -26,6 +31,38 @@ object RequestHeaderHelper {
     */
   def authorizationBearer(jwt: JWT): RequestHeader => RequestHeader = header => header.authorizationBearer(jwt)
 
+  /**
+    * Puts `Authorization` header with token of the profile (e.g. identity of the service) to [[RequestHeader]].
+    * The token is taken from the cache and minted only if it is absent or expired.
+    *
+    * @param tokens  cache of tokens
+    * @param profile profile
+    */
+  def authorizationBearer(tokens: JwtTokenCache, profile: CommonProfile): RequestHeader => RequestHeader =
+    header => header.authorizationBearer(tokens.getToken(profile))
+
+  /**
+    * Invokes service call with `Authorization` header with token of the profile (e.g. identity of the service).
+    * If the call is failed with [[Unauthorized]] (deserialized by `Pac4jExceptionSerializer`),
+    * it is retried once with a renewed token.
+    * Other request header handlers must be applied to the service call before this one.
+    *
+    * @param tokens      cache of tokens
+    * @param profile     profile
+    * @param serviceCall service call
+    */
+  def authorizedBy[Request, Response](tokens: JwtTokenCache, profile: CommonProfile, serviceCall: ServiceCall[Request, Response])
+                                     (implicit ec: ExecutionContext): ServiceCall[Request, Response] =
+    new ServiceCall[Request, Response] {
+      override def invoke(request: Request): Future[Response] = {
+        val token = tokens.getToken(profile)
+        serviceCall.handleRequestHeader(authorizationBearer(token)).invoke(request).recoverWith {
+          case _: Unauthorized =>
+            serviceCall.handleRequestHeader(authorizationBearer(tokens.renewToken(profile, token))).invoke(request)
+        }
+      }
+    }
+
   /**
     * Copies specified header from sourced [[RequestHeader]] to target.
     *
@@ -41,6 +78,24 @@ object RequestHeaderHelper {
     */
   def forwardAuthorization(source: RequestHeader): RequestHeader => RequestHeader = header => header.forwardAuthorization(source)
 
+  /**
+    * Puts [[InternalPrincipal]] header with the verified profile to [[RequestHeader]].
+    *
+    * @param principal internal principal
+    * @param profile   verified profile
+    */
+  def internalPrincipal(principal: InternalPrincipal, profile: CommonProfile): RequestHeader => RequestHeader =
+    header => header.internalPrincipal(principal, profile)
+
+  /**
+    * Copies [[InternalPrincipal]] header from sourced [[RequestHeader]] to target.
+    *
+    * @param source    sourced [[RequestHeader]]
+    * @param principal internal principal
+    */
+  def forwardPrincipal(source: RequestHeader, principal: InternalPrincipal): RequestHeader => RequestHeader =
+    header => header.forwardHeader(source, principal.getHeaderName)
+
   implicit class Pac4jRequestHeader(header: RequestHeader) {
 
     /**
@@ -74,5 +129,15 @@ object RequestHeaderHelper {
       * @param source sourced [[RequestHeader]]
       */
     def forwardAuthorization(source: RequestHeader): RequestHeader = header.forwardHeader(source, AUTHORIZATION_HEADER)
+
+    /**
+      * Puts [[InternalPrincipal]] header with the verified profile to [[RequestHeader]].
+      *
+      * @param principal internal principal
+      * @param profile   verified profile
+      * @return [[RequestHeader]] with the principal header
+      */
+    def internalPrincipal(principal: InternalPrincipal, profile: CommonProfile): RequestHeader =
+      header.withHeader(principal.getHeaderName, principal.sign(profile))
   }
 }
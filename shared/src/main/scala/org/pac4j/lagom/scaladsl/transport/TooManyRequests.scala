@@ -0,0 +1,27 @@
+package org.pac4j.lagom.scaladsl.transport
+
+import com.lightbend.lagom.scaladsl.api.transport.{ExceptionMessage, TransportErrorCode, TransportException}
+
+/**
+  * <p>Exception thrown when credentials of a service call are refused by rate limiter of failed authentications.</p>
+  * <p>Exception has no stack trace: it is an expected answer to a client that fails authentication in a loop.</p>
+  *
+  * @author Sergey Morgunov
+  * @since 2.2.2
+  */
+final class TooManyRequests(errorCode: TransportErrorCode, exceptionMessage: ExceptionMessage, cause: Throwable)
+    extends TransportException(errorCode, exceptionMessage, cause) {
+  def this(errorCode: TransportErrorCode, exceptionMessage: ExceptionMessage) = this(errorCode, exceptionMessage, null)
+
+  override def fillInStackTrace(): Throwable = this
+}
+
+object TooManyRequests {
+  val ErrorCode: TransportErrorCode = TransportErrorCode(429, 4429, "Too Many Requests")
+
+  def apply(message: String) = new TooManyRequests(
+    ErrorCode,
+    new ExceptionMessage(classOf[TooManyRequests].getSimpleName, message),
+    null
+  )
+}
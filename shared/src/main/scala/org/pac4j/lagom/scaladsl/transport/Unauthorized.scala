@@ -3,7 +3,8 @@ package org.pac4j.lagom.scaladsl.transport
 import com.lightbend.lagom.scaladsl.api.transport.{ExceptionMessage, TransportErrorCode, TransportException}
 
 /**
-  * Exception thrown when a service call is unauthorized.
+  * <p>Exception thrown when a service call is unauthorized.</p>
+  * <p>Exception has no stack trace: it is an expected answer to anonymous requests, not a failure of the service.</p>
   *
   * @author Sergey Morgunov
   * @since 2.2.0
@@ -11,6 +12,8 @@ import com.lightbend.lagom.scaladsl.api.transport.{ExceptionMessage, TransportEr
 final class Unauthorized(errorCode: TransportErrorCode, exceptionMessage: ExceptionMessage, cause: Throwable)
     extends TransportException(errorCode, exceptionMessage, cause) {
   def this(errorCode: TransportErrorCode, exceptionMessage: ExceptionMessage) = this(errorCode, exceptionMessage, null)
+
+  override def fillInStackTrace(): Throwable = this
 }
 
 object Unauthorized {
@@ -0,0 +1,136 @@
+package org.pac4j.lagom.authorization;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.authorization.authorizer.Authorizer;
+import org.pac4j.core.authorization.authorizer.RequireAnyRoleAuthorizer;
+import org.pac4j.core.context.WebContext;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pac4j.core.authorization.authorizer.IsAuthenticatedAuthorizer.isAuthenticated;
+import static org.pac4j.core.authorization.authorizer.RequireAnyRoleAuthorizer.requireAnyRole;
+
+/**
+ * Test of {@link AuthorizationCache}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class AuthorizationCacheTest {
+
+    private AuthorizationCache cache;
+
+    private AtomicInteger calls;
+
+    private Authorizer<CommonProfile> roleAuthorizer;
+
+    @BeforeEach
+    void beforeEach() {
+        cache = new AuthorizationCache(100, Duration.ofMinutes(1));
+        calls = new AtomicInteger();
+        roleAuthorizer = new RequireAnyRoleAuthorizer<CommonProfile>("admin") {
+            @Override
+            protected boolean check(WebContext context, CommonProfile profile, String element) {
+                calls.incrementAndGet();
+                return super.check(context, profile, element);
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("decision of profile authorizer is cached")
+    void testHit() {
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), roleAuthorizer)).isTrue();
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), roleAuthorizer)).isTrue();
+        assertThat(cache.isAuthorized(null, profile("Bob", "user"), roleAuthorizer)).isFalse();
+        assertThat(cache.isAuthorized(null, profile("Bob", "user"), roleAuthorizer)).isFalse();
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("change of roles and explicit invalidation drop decision")
+    void testInvalidation() {
+        cache.isAuthorized(null, profile("Alice", "user"), roleAuthorizer);
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), roleAuthorizer)).isTrue();
+        cache.invalidateProfile("Alice");
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), roleAuthorizer)).isTrue();
+        cache.invalidateAuthorizer(roleAuthorizer);
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), roleAuthorizer)).isTrue();
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("decision is shared by instances of built-in authorizer with the same elements")
+    void testSeparateInstances() {
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), requireAnyRole("admin"))).isTrue();
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), requireAnyRole("admin"))).isTrue();
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), requireAnyRole("user"))).isFalse();
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), isAuthenticated())).isTrue();
+        assertThat(cache.isAuthorized(null, profile("Alice", "admin"), isAuthenticated())).isTrue();
+        assertThat(cache.stats().hitCount()).isEqualTo(2);
+
+        cache.invalidateAuthorizer(requireAnyRole("admin"));
+        assertThat(cache.estimatedSize()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("decision is shared by instances of cacheable authorizer with the same name")
+    void testNamedAuthorizer() {
+        cache.isAuthorized(null, profile("Alice", "admin"), CacheableAuthorizer.of("admin", requireAnyRole("admin"), context -> ""));
+        cache.isAuthorized(null, profile("Alice", "admin"), CacheableAuthorizer.of("admin", requireAnyRole("admin"), context -> ""));
+        cache.isAuthorized(null, profile("Alice", "admin"), CacheableAuthorizer.of(requireAnyRole("admin")));
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+        assertThat(cache.estimatedSize()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("roles with the same hash code do not share decision")
+    void testHashCollision() {
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+        RequireAnyRoleAuthorizer<CommonProfile> authorizer = new RequireAnyRoleAuthorizer<>("Aa");
+
+        assertThat(cache.isAuthorized(null, profile("Alice", "Aa"), authorizer)).isTrue();
+        assertThat(cache.isAuthorized(null, profile("Alice", "BB"), authorizer)).isFalse();
+    }
+
+    @Test
+    @DisplayName("context key of cacheable authorizer is part of the key, null key skips the cache")
+    void testContextKey() {
+        AtomicReference<String> method = new AtomicReference<>("GET");
+        CacheableAuthorizer<CommonProfile> authorizer = CacheableAuthorizer.of(roleAuthorizer, context -> method.get());
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        method.set("POST");
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        method.set(null);
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("decision of unknown authorizer is not cached")
+    void testNotCacheable() {
+        Authorizer<CommonProfile> authorizer = (context, profiles) -> calls.incrementAndGet() > 0;
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        cache.isAuthorized(null, profile("Alice", "admin"), authorizer);
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(cache.estimatedSize()).isZero();
+    }
+
+    private static CommonProfile profile(String id, String role) {
+        CommonProfile profile = new CommonProfile();
+        profile.setId(id);
+        profile.addRole(role);
+        return profile;
+    }
+}
@@ -0,0 +1,111 @@
+package org.pac4j.lagom.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.client.Clients;
+import org.pac4j.core.client.DirectClient;
+import org.pac4j.core.credentials.TokenCredentials;
+import org.pac4j.core.credentials.authenticator.Authenticator;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.lagom.concurrent.SecurityExecutor;
+import org.pac4j.lagom.metrics.SecurityMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of {@link ClientChain}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class ClientChainTest {
+
+    private ExecutorService pool;
+
+    private SecurityExecutor executor;
+
+    private CountDownLatch started;
+
+    private CountDownLatch release;
+
+    private Clients clients;
+
+    @BeforeEach
+    void beforeEach() {
+        pool = Executors.newFixedThreadPool(4);
+        executor = new SecurityExecutor(pool, 1);
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        clients = new Clients(
+            new TestClient("slow", (credentials, context) -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }),
+            new TestClient("fast", (credentials, context) -> {
+                CommonProfile profile = new CommonProfile();
+                profile.setId("Alice");
+                credentials.setUserProfile(profile);
+            })
+        );
+    }
+
+    @AfterEach
+    void afterEach() {
+        release.countDown();
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("clients are checked one by one on executor")
+    void testOneByOne() throws Exception {
+        release.countDown();
+        CommonProfile profile = ClientChain.resolve(clients, "slow,fast")
+            .getUserProfileAsync(null, executor, SecurityMetrics.NOOP)
+            .get(5, TimeUnit.SECONDS);
+        assertThat(profile.getId()).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("client has the same bulkhead in any chain")
+    void testBulkheadOfClient() throws Exception {
+        CompletableFuture<CommonProfile> slow = ClientChain.resolve(clients, "slow").getUserProfileAsync(null, executor, SecurityMetrics.NOOP);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> ClientChain.resolve(clients, "slow,fast").getUserProfileAsync(null, executor, SecurityMetrics.NOOP).get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(RejectedExecutionException.class);
+        assertThat(ClientChain.resolve(clients, "fast").getUserProfileAsync(null, executor, SecurityMetrics.NOOP).get(5, TimeUnit.SECONDS).getId())
+            .isEqualTo("Alice");
+
+        release.countDown();
+        assertThat(slow.get(5, TimeUnit.SECONDS)).isNull();
+    }
+
+    private static final class TestClient extends DirectClient<TokenCredentials, CommonProfile> {
+
+        TestClient(String name, Authenticator<TokenCredentials> authenticator) {
+            setName(name);
+            defaultCredentialsExtractor(context -> new TokenCredentials("token"));
+            defaultAuthenticator(authenticator);
+        }
+
+        @Override
+        protected void clientInit() {
+        }
+    }
+}
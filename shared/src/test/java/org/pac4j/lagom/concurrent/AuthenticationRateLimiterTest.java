@@ -0,0 +1,100 @@
+package org.pac4j.lagom.concurrent;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.lagom.concurrent.AuthenticationRateLimiter.Attempt;
+import org.pac4j.lagom.concurrent.AuthenticationRateLimiter.Limit;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link AuthenticationRateLimiter}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class AuthenticationRateLimiterTest {
+
+    @Test
+    @DisplayName("client address is refused after a burst of failures")
+    void testBurstOfFailures() {
+        AuthenticationRateLimiter limiter = limiter(new Limit(3, 0.1), new Limit(0, 0));
+
+        for (int i = 0; i < 3; i++) {
+            Attempt attempt = limiter.attempt("Bearer invalid-" + i, "10.0.0.1");
+            assertThat(attempt.isLimited()).isFalse();
+            attempt.failed();
+        }
+
+        assertThat(limiter.attempt("Bearer invalid-3", "10.0.0.1").isLimited()).isTrue();
+        assertThat(limiter.attempt("Bearer invalid-3", "10.0.0.2").isLimited()).isFalse();
+        assertThat(limiter.attempt(null, "10.0.0.1")).isNull();
+    }
+
+    @Test
+    @DisplayName("successful authentications are not counted")
+    void testSuccessNotCounted() {
+        AuthenticationRateLimiter limiter = limiter(new Limit(2, 0.1), new Limit(2, 0.1));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.attempt("Bearer valid", "10.0.0.1").isLimited()).isFalse();
+        }
+        assertThat(limiter.estimatedSize()).isZero();
+    }
+
+    @Test
+    @DisplayName("identity is refused from any address by unverified subject of JWT")
+    void testIdentity() {
+        AuthenticationRateLimiter limiter = limiter(new Limit(0, 0), new Limit(2, 0.1));
+
+        limiter.attempt(jwt("Alice", "a"), "10.0.0.1").failed();
+        limiter.attempt(jwt("Alice", "b"), "10.0.0.2").failed();
+
+        assertThat(limiter.attempt(jwt("Alice", "c"), "10.0.0.3").isLimited()).isTrue();
+        assertThat(limiter.attempt(jwt("Bob", "c"), "10.0.0.3").isLimited()).isFalse();
+    }
+
+    @Test
+    @DisplayName("client address is taken at trusted hops from the right, forged addresses are ignored")
+    void testForwardedFor() {
+        AuthenticationRateLimiter limiter = limiter(new Limit(1, 0.1), new Limit(0, 0));
+
+        limiter.attempt("Bearer invalid", "198.51.100.1, 10.0.0.1").failed();
+        assertThat(limiter.attempt("Bearer invalid", "198.51.100.2, 10.0.0.1").isLimited()).isTrue();
+        assertThat(limiter.attempt("Bearer invalid", "10.0.0.1, 10.0.0.2").isLimited()).isFalse();
+
+        AuthenticationRateLimiter behindTwoProxies = new AuthenticationRateLimiter(
+            new Limit(1, 0.1), new Limit(0, 0), 1_000L, "X-Forwarded-For", 2, null
+        );
+        behindTwoProxies.attempt("Bearer invalid", "198.51.100.1, 10.0.0.1, 172.16.0.1").failed();
+        assertThat(behindTwoProxies.attempt("Bearer invalid", "10.0.0.1, 172.16.0.2").isLimited()).isTrue();
+        assertThat(behindTwoProxies.attempt("Bearer invalid", "10.0.0.1").isLimited()).isTrue();
+        assertThat(behindTwoProxies.attempt("Bearer invalid", "10.0.0.1, 10.0.0.2, 172.16.0.1").isLimited()).isFalse();
+    }
+
+    @Test
+    @DisplayName("bucket is refilled over time")
+    void testRefill() throws InterruptedException {
+        AuthenticationRateLimiter limiter = limiter(new Limit(1, 20.0), new Limit(0, 0));
+
+        limiter.attempt("Bearer invalid", "10.0.0.1").failed();
+        assertThat(limiter.attempt("Bearer invalid", "10.0.0.1").isLimited()).isTrue();
+
+        Thread.sleep(100L);
+        assertThat(limiter.attempt("Bearer invalid", "10.0.0.1").isLimited()).isFalse();
+    }
+
+    private static AuthenticationRateLimiter limiter(Limit perAddress, Limit perIdentity) {
+        return new AuthenticationRateLimiter(perAddress, perIdentity, 1_000L, "X-Forwarded-For", 1, null);
+    }
+
+    private static String jwt(String subject, String signature) {
+        String payload = "{\"iss\":\"https://pac4j.org\", \"sub\": \"" + subject + "\"}";
+        return "Bearer eyJhbGciOiJSUzI1NiJ9."
+            + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+            + "." + signature;
+    }
+}
@@ -0,0 +1,165 @@
+package org.pac4j.lagom.concurrent;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of {@link SingleFlight}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class SingleFlightTest {
+
+    private ExecutorService executor;
+
+    private AtomicInteger calls;
+
+    private CountDownLatch release;
+
+    @BeforeEach
+    void beforeEach() {
+        executor = Executors.newFixedThreadPool(8);
+        calls = new AtomicInteger();
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("concurrent calls with the same key are run once")
+    void testCoalescing() throws Exception {
+        SingleFlight<String, StringBuilder> singleFlight = new SingleFlight<>(Duration.ofSeconds(5), StringBuilder::new);
+        List<Future<StringBuilder>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("token", blocked(() -> new StringBuilder("Alice")))));
+        }
+        awaitWaiting(singleFlight, 7);
+        release.countDown();
+
+        List<StringBuilder> profiles = new ArrayList<>();
+        for (Future<StringBuilder> result : results) {
+            profiles.add(result.get(5, TimeUnit.SECONDS));
+        }
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(profiles).extracting(StringBuilder::toString).containsOnly("Alice");
+        assertThat(profiles).doesNotHaveDuplicates();
+        assertThat(singleFlight.inFlight()).isZero();
+
+        assertThat(singleFlight.execute("token", () -> new StringBuilder("Bob")).toString()).isEqualTo("Bob");
+    }
+
+    @Test
+    @DisplayName("exception of the leader is rethrown to waiting callers")
+    void testLeaderFailure() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5), profile -> profile);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("token", blocked(() -> {
+            throw new IllegalArgumentException("Invalid token");
+        })));
+        Future<String> follower = executor.submit(() -> singleFlight.execute("token", () -> "Alice"));
+        awaitWaiting(singleFlight, 1);
+        release.countDown();
+
+        for (Future<String> result : Arrays.asList(leader, follower)) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+        assertThat(singleFlight.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("null result of the leader is handed to waiting callers without sharing")
+    void testNullResult() throws Exception {
+        SingleFlight<String, StringBuilder> singleFlight = new SingleFlight<>(Duration.ofSeconds(5), StringBuilder::new);
+        Future<StringBuilder> leader = executor.submit(() -> singleFlight.execute("token", blocked(() -> null)));
+        Future<StringBuilder> follower = executor.submit(() -> singleFlight.execute("token", () -> new StringBuilder("Alice")));
+        awaitWaiting(singleFlight, 1);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isNull();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("waiting caller runs the call itself after timeout")
+    void testTimeout() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(Duration.ofMillis(50), profile -> profile);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("token", blocked(() -> "Alice")));
+        awaitInFlight(singleFlight);
+
+        assertThat(singleFlight.execute("token", () -> "Bob")).isEqualTo("Bob");
+        assertThat(singleFlight.getTimedOutCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("interrupted caller does not cancel the call of the leader")
+    void testInterruptedCaller() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>(Duration.ofSeconds(5), profile -> profile);
+        Future<String> leader = executor.submit(() -> singleFlight.execute("token", blocked(() -> "Alice")));
+        awaitInFlight(singleFlight);
+        Future<String> follower = executor.submit(() -> singleFlight.execute("token", () -> "Bob"));
+        awaitWaiting(singleFlight, 1);
+
+        follower.cancel(true);
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).isInstanceOf(CancellationException.class);
+        Future<String> other = executor.submit(() -> singleFlight.execute("token", () -> "Bob"));
+        awaitWaiting(singleFlight, 2);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("Alice");
+        assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("Alice");
+    }
+
+    private <T> Supplier<T> blocked(Supplier<T> call) {
+        return () -> {
+            calls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return call.get();
+        };
+    }
+
+    private static void awaitInFlight(SingleFlight<?, ?> singleFlight) throws InterruptedException {
+        while (singleFlight.inFlight() == 0) {
+            Thread.sleep(1L);
+        }
+    }
+
+    private static void awaitWaiting(SingleFlight<?, ?> singleFlight, long count) throws InterruptedException {
+        while (singleFlight.getCoalescedCount() < count) {
+            Thread.sleep(1L);
+        }
+        // Waiting caller is counted just before it blocks on the future
+        Thread.sleep(20L);
+    }
+}
@@ -0,0 +1,45 @@
+package org.pac4j.lagom.context;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link QueryString}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class QueryStringTest {
+
+    @Test
+    @DisplayName("parameters are decoded, repeated parameter keeps all values")
+    void testParse() {
+        Map<String, String[]> parameters = QueryString.parse("token=a%2Bb%3D&flag&&scope=read&scope=write+all");
+
+        assertThat(parameters).containsOnlyKeys("token", "flag", "scope");
+        assertThat(parameters.get("token")).containsExactly("a+b=");
+        assertThat(parameters.get("flag")).containsExactly("");
+        assertThat(parameters.get("scope")).containsExactly("read", "write all");
+    }
+
+    @Test
+    @DisplayName("name or value with malformed escape is kept as is")
+    void testMalformed() {
+        Map<String, String[]> parameters = QueryString.parse("token=%zz&%=1&next=%E2%82%AC");
+
+        assertThat(parameters.get("token")).containsExactly("%zz");
+        assertThat(parameters.get("%")).containsExactly("1");
+        assertThat(parameters.get("next")).containsExactly("\u20AC");
+    }
+
+    @Test
+    @DisplayName("request without query has no parameters")
+    void testEmpty() {
+        assertThat(QueryString.parse(null)).isEmpty();
+        assertThat(QueryString.parse("")).isEmpty();
+    }
+}
@@ -0,0 +1,60 @@
+package org.pac4j.lagom.javadsl;
+
+import com.lightbend.lagom.javadsl.api.transport.RequestHeader;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.context.Cookie;
+
+import java.net.URI;
+import java.util.Collection;
+
+import static com.google.common.net.HttpHeaders.COOKIE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link LagomWebContext}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class LagomWebContextTest {
+
+    private static final RequestHeader REQUEST_HEADER = RequestHeader.DEFAULT
+        .withUri(URI.create("/test?token=abc&scope=read&scope=write"))
+        .withHeader(COOKIE, "auth=Alice; aaa=bbb")
+        .withHeader("X-Test", "test");
+
+    @Test
+    @DisplayName("missing header is null")
+    void testMissingHeader() {
+        LagomWebContext context = new LagomWebContext(REQUEST_HEADER);
+
+        assertThat(context.getRequestHeader("X-Test")).isEqualTo("test");
+        assertThat(context.getRequestHeader("X-Missing")).isNull();
+        assertThat(context.getRequestHeader("X-Missing")).isNull();
+    }
+
+    @Test
+    @DisplayName("cookies and parameters are parsed once")
+    void testMemoized() {
+        LagomWebContext context = new LagomWebContext(REQUEST_HEADER);
+
+        Collection<Cookie> cookies = context.getRequestCookies();
+        assertThat(cookies).extracting(Cookie::getName).containsExactly("auth", "aaa");
+        assertThat(context.getRequestCookies()).isSameAs(cookies);
+
+        assertThat(context.getRequestParameter("token")).isEqualTo("abc");
+        assertThat(context.getRequestParameters().get("scope")).containsExactly("read", "write");
+        assertThat(context.getRequestParameters()).isSameAs(context.getRequestParameters());
+    }
+
+    @Test
+    @DisplayName("request without cookies and query")
+    void testEmpty() {
+        LagomWebContext context = new LagomWebContext(RequestHeader.DEFAULT);
+
+        assertThat(context.getRequestCookies()).isEmpty();
+        assertThat(context.getRequestParameters()).isEmpty();
+        assertThat(context.getRequestParameter("token")).isNull();
+    }
+}
@@ -36,8 +36,16 @@ public interface TestService extends Service {
 
     ServiceCall<NotUsed, String> headerAuthorizeConfig();
 
+    ServiceCall<NotUsed, String> headerAuthenticateAsync();
+
+    ServiceCall<NotUsed, String> headerAuthorizeAsync();
+
     ServiceCall<NotUsed, String> headerJwtAuthenticate();
 
+    ServiceCall<NotUsed, String> chainAuthenticate();
+
+    ServiceCall<NotUsed, String> chainAuthorize();
+
     @Override
     default Descriptor descriptor() {
         return named("default").withCalls(
@@ -51,7 +59,11 @@ public interface TestService extends Service {
             pathCall("/header/authenticate", this::headerAuthenticate),
             pathCall("/header/authorize", this::headerAuthorize),
             pathCall("/header/authorize/config", this::headerAuthorizeConfig),
-            pathCall("/header/jwt/authenticate", this::headerJwtAuthenticate)
+            pathCall("/header/authenticate/async", this::headerAuthenticateAsync),
+            pathCall("/header/authorize/async", this::headerAuthorizeAsync),
+            pathCall("/header/jwt/authenticate", this::headerJwtAuthenticate),
+            pathCall("/chain/authenticate", this::chainAuthenticate),
+            pathCall("/chain/authorize", this::chainAuthorize)
         )
             .withExceptionSerializer(new Pac4jExceptionSerializer())
             .withAutoAcl(true);
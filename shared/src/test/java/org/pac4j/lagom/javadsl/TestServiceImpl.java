@@ -102,6 +102,20 @@ public class TestServiceImpl implements TestService, SecuredService {
         );
     }
 
+    @Override
+    public ServiceCall<NotUsed, String> headerAuthenticateAsync() {
+        return authenticateAsync(HEADER_CLIENT, profile ->
+                request -> completedFuture(profile.getId())
+        );
+    }
+
+    @Override
+    public ServiceCall<NotUsed, String> headerAuthorizeAsync() {
+        return authorizeAsync(HEADER_CLIENT, isAuthenticated(), profile ->
+                request -> completedFuture(profile.getId())
+        );
+    }
+
     @Override
     public ServiceCall<NotUsed, String> headerJwtAuthenticate() {
         return authenticate(HEADER_JWT_CLIENT, profile ->
@@ -109,6 +123,20 @@ public class TestServiceImpl implements TestService, SecuredService {
         );
     }
 
+    @Override
+    public ServiceCall<NotUsed, String> chainAuthenticate() {
+        return authenticate(HEADER_JWT_CLIENT + "," + COOKIE_CLIENT, profile ->
+                request -> completedFuture(profile.getId())
+        );
+    }
+
+    @Override
+    public ServiceCall<NotUsed, String> chainAuthorize() {
+        return authorize(HEADER_JWT_CLIENT + "," + COOKIE_CLIENT, isAuthenticated(), profile ->
+                request -> completedFuture(profile.getId())
+        );
+    }
+
     @Override
     public Config getSecurityConfig() {
         return securityConfig;
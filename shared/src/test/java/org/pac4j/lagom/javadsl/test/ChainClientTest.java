@@ -0,0 +1,106 @@
+package org.pac4j.lagom.javadsl.test;
+
+import com.lightbend.lagom.javadsl.testkit.ServiceTest;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+import org.pac4j.lagom.javadsl.TestService;
+import org.pac4j.lagom.javadsl.transport.Unauthorized;
+import org.pac4j.lagom.jwt.JwtGeneratorHelper;
+
+import java.text.ParseException;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.net.HttpHeaders.COOKIE;
+import static com.lightbend.lagom.javadsl.testkit.ServiceTest.defaultSetup;
+import static com.lightbend.lagom.javadsl.testkit.ServiceTest.startServer;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.pac4j.lagom.javadsl.transport.RequestHeaderHelper.authorizationBearer;
+
+/**
+ * Test of security logic for chain of clients
+ * ({@link org.pac4j.http.client.direct.HeaderClient} with JWT, then {@link org.pac4j.http.client.direct.CookieClient}).
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class ChainClientTest {
+
+    private static ServiceTest.TestServer server;
+
+    private static TestService service;
+
+    private static JwtGenerator<CommonProfile> jwtGenerator;
+
+    @BeforeAll
+    static void beforeAll() throws ParseException, JOSEException {
+        server = startServer(defaultSetup().withCluster(false));
+        service = server.client(TestService.class);
+        jwtGenerator = JwtGeneratorHelper.parse(ConfigFactory.load().getConfig("pac4j.lagom.jwt.generator.sign.rsa"));
+    }
+
+    @AfterAll
+    static void afterAll() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    @DisplayName("authenticate by anonymous")
+    void testAuthenticateAnonymous() throws ExecutionException, InterruptedException {
+        String result = service.chainAuthenticate().invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("anonymous");
+    }
+
+    @Test
+    @DisplayName("authenticate by first client (JWT)")
+    void testAuthenticateFirstClient() throws ExecutionException, InterruptedException {
+        String result = service.chainAuthenticate()
+            .handleRequestHeader(authorizationBearer(jwtGenerator.generate(new JWTClaimsSet.Builder().subject("Alice").build().getClaims()))
+                .andThen(header -> header.withHeader(COOKIE, "auth=Bob")))
+            .invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("authenticate by second client (cookie)")
+    void testAuthenticateSecondClient() throws ExecutionException, InterruptedException {
+        String result = service.chainAuthenticate()
+            .handleRequestHeader(header -> header.withHeader(COOKIE, "auth=Bob"))
+            .invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("Bob");
+    }
+
+    @Test
+    @DisplayName("authenticate by second client if credentials of first one are invalid")
+    void testAuthenticateInvalidFirstClient() throws ExecutionException, InterruptedException {
+        String result = service.chainAuthenticate()
+            .handleRequestHeader(authorizationBearer("invalid").andThen(header -> header.withHeader(COOKIE, "auth=Bob")))
+            .invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("Bob");
+    }
+
+    @Test
+    @DisplayName("authorize by anonymous")
+    void testAuthorizeAnonymous() {
+        Throwable thrown = catchThrowable(() -> service.chainAuthorize().invoke().toCompletableFuture().get());
+        assertThat(thrown).hasCauseExactlyInstanceOf(Unauthorized.class);
+        assertThat(thrown.getCause()).hasMessage("Unauthorized");
+    }
+
+    @Test
+    @DisplayName("authorize by second client (cookie)")
+    void testAuthorizeSecondClient() throws ExecutionException, InterruptedException {
+        String result = service.chainAuthorize()
+            .handleRequestHeader(header -> header.withHeader(COOKIE, "auth=Bob"))
+            .invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("Bob");
+    }
+
+}
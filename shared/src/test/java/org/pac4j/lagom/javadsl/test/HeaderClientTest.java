@@ -89,4 +89,37 @@ class HeaderClientTest {
         assertThat(result).isEqualTo("Alice");
     }
 
+    @Test
+    @DisplayName("authenticate asynchronously by anonymous")
+    void testAuthenticateAsyncAnonymous() throws ExecutionException, InterruptedException {
+        String result = service.headerAuthenticateAsync().invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("anonymous");
+    }
+
+    @Test
+    @DisplayName("authenticate asynchronously by Alice")
+    void testAuthenticateAsyncProfile() throws ExecutionException, InterruptedException {
+        String result = service.headerAuthenticateAsync()
+                .handleRequestHeader(header -> header.withHeader(AUTHORIZATION_HEADER, "Alice"))
+                .invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("authorize asynchronously by anonymous")
+    void testAuthorizeAsyncAnonymous() {
+        Throwable thrown = catchThrowable(() -> service.headerAuthorizeAsync().invoke().toCompletableFuture().get());
+        assertThat(thrown).hasCauseExactlyInstanceOf(Unauthorized.class);
+        assertThat(thrown.getCause()).hasMessage("Unauthorized");
+    }
+
+    @Test
+    @DisplayName("authorize asynchronously by Alice")
+    void testAuthorizeAsyncProfile() throws ExecutionException, InterruptedException {
+        String result = service.headerAuthorizeAsync()
+                .handleRequestHeader(header -> header.withHeader(AUTHORIZATION_HEADER, "Alice"))
+                .invoke().toCompletableFuture().get();
+        assertThat(result).isEqualTo("Alice");
+    }
+
 }
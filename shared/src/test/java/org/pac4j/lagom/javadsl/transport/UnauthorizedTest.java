@@ -0,0 +1,25 @@
+package org.pac4j.lagom.javadsl.transport;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link Unauthorized}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class UnauthorizedTest {
+
+    @Test
+    @DisplayName("exception has no stack trace")
+    void testNoStackTrace() {
+        Unauthorized exception = new Unauthorized("Unauthorized");
+
+        assertThat(exception.getStackTrace()).isEmpty();
+        assertThat(exception.errorCode()).isEqualTo(Unauthorized.ERROR_CODE);
+        assertThat(new Unauthorized(new IllegalStateException("test")).getStackTrace()).isEmpty();
+    }
+}
@@ -0,0 +1,180 @@
+package org.pac4j.lagom.jwt;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.cluster.Cluster;
+import akka.cluster.MemberStatus;
+import akka.cluster.ddata.DistributedData;
+import akka.cluster.ddata.Key;
+import akka.cluster.ddata.LWWMap;
+import akka.cluster.ddata.LWWMapKey;
+import akka.cluster.ddata.Replicator;
+import com.nimbusds.jose.JOSEException;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+import org.pac4j.lagom.serialization.ProfileCodec;
+
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pac4j.lagom.jwt.JwtTestFixture.authenticator;
+import static org.pac4j.lagom.jwt.JwtTestFixture.claims;
+import static org.pac4j.lagom.jwt.JwtTestFixture.generator;
+
+/**
+ * Test of {@link DistributedJwtProfileCache} in a cluster of three nodes in one JVM.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class DistributedJwtProfileCacheTest {
+
+    private static final int NODES = 3;
+
+    private final List<ActorSystem> systems = new ArrayList<>();
+
+    private final List<LagomJwtAuthenticator> authenticators = new ArrayList<>();
+
+    private JwtGenerator<CommonProfile> generator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        Config config = ConfigFactory.parseString(
+            "akka.actor.provider = cluster\n"
+                + "akka.remote.artery { enabled = on, transport = tcp }\n"
+                + "akka.remote.artery.canonical { hostname = \"127.0.0.1\", port = 0 }\n"
+                + "akka.cluster.jmx.enabled = off\n"
+                + "akka.cluster.distributed-data { gossip-interval = 100ms, notify-subscribers-interval = 100ms }\n"
+                + "akka.loglevel = WARNING"
+        ).withFallback(ConfigFactory.load());
+        for (int i = 0; i < NODES; i++) {
+            ActorSystem system = ActorSystem.create("DistributedJwtProfileCacheTest", config);
+            Cluster.get(system).join(Cluster.get(systems.isEmpty() ? system : systems.get(0)).selfAddress());
+            systems.add(system);
+            LagomJwtAuthenticator authenticator = authenticator(config, system,
+                "shared-cache { buckets = 4, maximum-size = 100, ttl = 1m, prune-interval = 1s }"
+            );
+            authenticators.add(authenticator);
+        }
+        await(() -> systems.stream().allMatch(system -> upMembers(system) == NODES));
+        generator = generator(config);
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        for (ActorSystem system : systems) {
+            system.terminate();
+        }
+        for (ActorSystem system : systems) {
+            system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    @DisplayName("token verified on one node is not verified on the others")
+    void testReplication() {
+        String token = generator.generate(claims("Alice", new Date(System.currentTimeMillis() + 60_000L)));
+
+        assertThat(authenticators.get(0).validateToken(token).getId()).isEqualTo("Alice");
+        await(() -> authenticators.stream().allMatch(authenticator -> sharedCache(authenticator).estimatedSize() == 1));
+
+        for (LagomJwtAuthenticator authenticator : authenticators.subList(1, NODES)) {
+            CommonProfile profile = authenticator.validateToken(token);
+            assertThat(profile.getId()).isEqualTo("Alice");
+            assertThat(authenticator.getIndexedLookupCount() + authenticator.getFullScanCount()).isZero();
+        }
+        LagomJwtAuthenticator verifier = authenticators.get(0);
+        assertThat(verifier.getIndexedLookupCount() + verifier.getFullScanCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("expired token is pruned on all nodes")
+    void testPruning() {
+        String token = generator.generate(claims("Bob", new Date(System.currentTimeMillis() + 2_000L)));
+
+        assertThat(authenticators.get(1).validateToken(token).getId()).isEqualTo("Bob");
+        await(() -> authenticators.stream().allMatch(authenticator -> sharedCache(authenticator).estimatedSize() == 1));
+        await(() -> authenticators.stream().allMatch(authenticator -> sharedCache(authenticator).estimatedSize() == 0));
+
+        assertThat(sharedCache(authenticators.get(2)).get(token)).isNull();
+    }
+
+    @Test
+    @DisplayName("invalidated node ignores entries written before invalidation")
+    void testInvalidation() {
+        Date expirationTime = new Date(System.currentTimeMillis() + 60_000L);
+        String before = generator.generate(claims("Alice", expirationTime));
+        assertThat(authenticators.get(0).validateToken(before).getId()).isEqualTo("Alice");
+        await(() -> sharedCache(authenticators.get(2)).estimatedSize() == 1);
+
+        sharedCache(authenticators.get(2)).invalidateAll();
+        String after = generator.generate(claims("Bob", expirationTime));
+        assertThat(authenticators.get(0).validateToken(after).getId()).isEqualTo("Bob");
+        await(() -> sharedCache(authenticators.get(2)).estimatedSize() == 1);
+
+        assertThat(sharedCache(authenticators.get(2)).get(before)).isNull();
+        assertThat(sharedCache(authenticators.get(2)).get(after).getId()).isEqualTo("Bob");
+    }
+
+    @Test
+    @DisplayName("replicated entry that is not a profile is dropped")
+    void testForeignEntry() {
+        String token = generator.generate(claims("Carol", new Date(System.currentTimeMillis() + 60_000L)));
+        String digest = JwtProfileCache.digest(token);
+        byte[] name = Object.class.getName().getBytes(StandardCharsets.UTF_8);
+        long now = System.currentTimeMillis();
+        byte[] value = ByteBuffer.allocate(2 * Long.BYTES + 3 + name.length)
+            .putLong(now + 60_000L).putLong(now).put(ProfileCodec.VERSION).put((byte) 1).put((byte) name.length).put(name)
+            .array();
+        ActorSystem system = systems.get(0);
+        DistributedData distributedData = DistributedData.get(system);
+        Key<LWWMap<String, byte[]>> key = LWWMapKey.create("pac4j-jwt-profiles-" + Math.floorMod(digest.hashCode(), 4));
+        distributedData.replicator().tell(new Replicator.Update<>(key, LWWMap.create(), Replicator.writeLocal(),
+            map -> map.put(distributedData.selfUniqueAddress(), digest, value)
+        ), ActorRef.noSender());
+        await(() -> sharedCache(authenticators.get(2)).estimatedSize() == 1);
+
+        LagomJwtAuthenticator authenticator = authenticators.get(2);
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Carol");
+        assertThat(authenticator.getIndexedLookupCount() + authenticator.getFullScanCount()).isEqualTo(1);
+    }
+
+    private static DistributedJwtProfileCache sharedCache(LagomJwtAuthenticator authenticator) {
+        return (DistributedJwtProfileCache) authenticator.getSharedProfileStore();
+    }
+
+    private static long upMembers(ActorSystem system) {
+        return StreamSupport.stream(Cluster.get(system).state().getMembers().spliterator(), false)
+            .filter(member -> member.status() == MemberStatus.up())
+            .count();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition is met in 20 seconds").isLessThan(deadline);
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jwt.JWTParser;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link InternalPrincipal}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class InternalPrincipalTest {
+
+    private static final String SECRET = "LL_OG8c6mHncV6e0sdTyDa58NrmBBmCmkHILqZgkpwo";
+
+    private InternalPrincipal principal;
+
+    private CommonProfile profile;
+
+    @BeforeEach
+    void beforeEach() {
+        principal = InternalPrincipal.parse(ConfigFactory.parseString("secret = \"" + SECRET + "\", ttl = 30s"));
+        profile = new CommonProfile();
+        profile.setId("Alice");
+        profile.addRole("manager");
+        profile.addAttribute("email", "alice@example.org");
+    }
+
+    @Test
+    @DisplayName("signed profile is verified")
+    void testVerify() {
+        CommonProfile verified = principal.verify(principal.sign(profile));
+
+        assertThat(principal.getHeaderName()).isEqualTo(InternalPrincipal.DEFAULT_HEADER_NAME);
+        assertThat(verified.getId()).isEqualTo("Alice");
+        assertThat(verified.getRoles()).containsExactly("manager");
+        assertThat(verified.getAttribute("email")).isEqualTo("alice@example.org");
+    }
+
+    @Test
+    @DisplayName("tampered principal is rejected")
+    void testTampered() {
+        String[] parts = principal.sign(profile).split("\\.");
+        String tampered = parts[0] + "." + parts[1] + "." + new StringBuilder(parts[2]).reverse();
+
+        assertThat(principal.verify(tampered)).isNull();
+    }
+
+    @Test
+    @DisplayName("principal signed by other key is rejected")
+    void testOtherKey() {
+        InternalPrincipal other = new InternalPrincipal(new StringBuilder(SECRET).reverse().toString(), Duration.ofSeconds(30));
+
+        assertThat(principal.verify(other.sign(profile))).isNull();
+    }
+
+    @Test
+    @DisplayName("expired principal is rejected")
+    void testExpired() {
+        InternalPrincipal expired = new InternalPrincipal(SECRET, Duration.ofSeconds(-1));
+
+        assertThat(principal.verify(expired.sign(profile))).isNull();
+    }
+
+    @Test
+    @DisplayName("principal expires not later than the profile")
+    void testProfileExpiration() throws Exception {
+        Date exp = new Date(System.currentTimeMillis() + 1_000L);
+        profile.addAttribute("exp", exp);
+
+        String signed = principal.sign(profile);
+        CommonProfile verified = principal.verify(signed);
+
+        assertThat(verified.getId()).isEqualTo("Alice");
+        assertThat(JWTParser.parse(signed).getJWTClaimsSet().getExpirationTime()).isBeforeOrEqualsTo(exp);
+        Thread.sleep(2_000L);
+        assertThat(principal.verify(principal.sign(verified))).isNull();
+    }
+}
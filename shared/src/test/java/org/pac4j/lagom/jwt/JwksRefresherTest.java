@@ -0,0 +1,292 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.ECKey;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigRenderOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static com.nimbusds.jose.JWSAlgorithm.ES256;
+import static com.nimbusds.jose.JWSAlgorithm.RS256;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of {@link JwksRefresher}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+@SuppressWarnings("PMD.TooManyStaticImports")
+class JwksRefresherTest {
+
+    private RSAKey rsaKey;
+
+    private ECKey ecKey;
+
+    private LagomJwtAuthenticator authenticator;
+
+    private static final String JWKS_URL = "http://localhost/jwks";
+
+    private static final String OTHER_JWKS_URL = "http://localhost/other/jwks";
+
+    private final AtomicReference<String> jwks = new AtomicReference<>();
+
+    private final AtomicReference<String> other = new AtomicReference<>();
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private JwksRefresher refresher;
+
+    @BeforeEach
+    void beforeEach() throws ParseException {
+        Config config = ConfigFactory.load().getConfig("pac4j.lagom.jwt.generator.sign");
+        rsaKey = RSAKey.parse(config.getConfig("rsa.signature.jwk").root().render(ConfigRenderOptions.concise()));
+        ecKey = ECKey.parse(config.getConfig("ec.signature.jwk").root().render(ConfigRenderOptions.concise()));
+        authenticator = new LagomJwtAuthenticator(JwtKeyIndex.empty());
+        jwks.set(new JWKSet(new RSAKey.Builder(rsaKey.toPublicJWK()).keyUse(KeyUse.SIGNATURE).build()).toString());
+    }
+
+    @AfterEach
+    void afterEach() {
+        if (refresher != null) refresher.close();
+    }
+
+    @Test
+    @DisplayName("keys are loaded into authenticator")
+    void testLoad() throws JOSEException, MalformedURLException {
+        refresher = refresher(Duration.ZERO);
+        refresher.load();
+        assertThat(authenticator.getKeys().getSignatureConfigurations("rsa-kid")).hasSize(1);
+        assertThat(authenticator.validateToken(sign(rsaKey)).getId()).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("last known keys are kept if loading fails")
+    void testFailure() throws JOSEException, MalformedURLException, KeySourceException {
+        refresher = refresher(Duration.ZERO);
+        refresher.load();
+        JwtKeyIndex keys = authenticator.getKeys();
+        jwks.set(null);
+        refresher.load();
+        assertThat(fetches.get()).isEqualTo(2);
+        assertThat(authenticator.getKeys()).isSameAs(keys);
+        assertThat(authenticator.validateToken(sign(rsaKey)).getId()).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("keys of other JWK sets are updated if one of them fails")
+    void testPartialFailure() throws JOSEException, MalformedURLException, KeySourceException {
+        refresher = refresher(Duration.ZERO, null, OTHER_JWKS_URL);
+        other.set(new JWKSet().toString());
+        refresher.load();
+        assertThat(refresher.isReady()).isTrue();
+
+        jwks.set(null);
+        other.set(new JWKSet(new ECKey.Builder(ecKey.toPublicJWK()).keyUse(KeyUse.SIGNATURE).build()).toString());
+        refresher.load();
+        assertThat(authenticator.validateToken(sign(rsaKey)).getId()).isEqualTo("Alice");
+        assertThat(authenticator.validateToken(sign(ecKey)).getId()).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("start needs live or snapshot keys of every JWK set")
+    void testPartialStart() throws IOException, JOSEException {
+        Path snapshot = Files.createTempDirectory("jwks").resolve("jwks.json");
+        refresher = refresher(Duration.ZERO, snapshot);
+        refresher.load();
+        refresher.close();
+
+        jwks.set(null);
+        other.set(new JWKSet(new ECKey.Builder(ecKey.toPublicJWK()).keyUse(KeyUse.SIGNATURE).build()).toString());
+        authenticator = new LagomJwtAuthenticator(JwtKeyIndex.empty());
+        refresher = refresher(Duration.ZERO, snapshot, OTHER_JWKS_URL);
+        assertThat(refresher.loadSnapshot()).isFalse();
+        refresher.load(Duration.ofSeconds(5));
+        assertThat(refresher.isReady()).isFalse();
+        assertThat(authenticator.validateToken(sign(rsaKey)).getId()).isEqualTo("Alice");
+        assertThat(authenticator.validateToken(sign(ecKey)).getId()).isEqualTo("Alice");
+        refresher.close();
+
+        authenticator = new LagomJwtAuthenticator(JwtKeyIndex.empty());
+        refresher = refresher(Duration.ZERO, null, OTHER_JWKS_URL);
+        assertThatThrownBy(() -> refresher.load(Duration.ofSeconds(5))).isInstanceOf(KeySourceException.class);
+        assertThat(authenticator.validateToken(sign(ecKey)).getId()).isEqualTo("Alice");
+        Files.delete(snapshot);
+        Files.delete(snapshot.getParent());
+    }
+
+    @Test
+    @DisplayName("keys are refetched on unknown kid")
+    void testRotation() throws JOSEException, MalformedURLException {
+        refresher = refresher(Duration.ZERO);
+        refresher.load();
+        authenticator.setJwksRefresher(refresher);
+        jwks.set(new JWKSet(new ECKey.Builder(ecKey.toPublicJWK()).keyUse(KeyUse.SIGNATURE).build()).toString());
+        String token = sign(ecKey);
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(fetches.get()).isEqualTo(2);
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Alice");
+        assertThat(authenticator.getKeys().getSignatureConfigurations("rsa-kid")).isNull();
+    }
+
+    @Test
+    @DisplayName("refetch on unknown kid is rate-limited")
+    void testRateLimit() throws JOSEException, MalformedURLException {
+        refresher = refresher(Duration.ofHours(1));
+        refresher.load();
+        authenticator.setJwksRefresher(refresher);
+        String token = sign(ecKey);
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(fetches.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("keys of snapshot are used until live keys are loaded")
+    void testSnapshot() throws IOException, JOSEException {
+        Path snapshot = Files.createTempDirectory("jwks").resolve("jwks.json");
+        refresher = refresher(Duration.ZERO, snapshot);
+        assertThat(refresher.loadSnapshot()).isFalse();
+        refresher.load();
+        refresher.close();
+        assertThat(snapshot).exists();
+
+        jwks.set(null);
+        authenticator = new LagomJwtAuthenticator(JwtKeyIndex.empty());
+        refresher = refresher(Duration.ZERO, snapshot);
+        authenticator.setJwksRefresher(refresher);
+        assertThat(refresher.loadSnapshot()).isTrue();
+        assertThat(authenticator.validateToken(sign(rsaKey)).getId()).isEqualTo("Alice");
+        assertThat(authenticator.isReady()).isFalse();
+
+        jwks.set(new JWKSet(new ECKey.Builder(ecKey.toPublicJWK()).keyUse(KeyUse.SIGNATURE).build()).toString());
+        refresher.load();
+        assertThat(authenticator.isReady()).isTrue();
+        assertThat(authenticator.validateToken(sign(ecKey)).getId()).isEqualTo("Alice");
+        Files.delete(snapshot);
+        Files.delete(snapshot.getParent());
+    }
+
+    @Test
+    @DisplayName("failed update of keys does not block the next refresh")
+    void testUpdateFailure() throws MalformedURLException, ExecutionException, InterruptedException, TimeoutException {
+        AtomicInteger updates = new AtomicInteger();
+        authenticator = new LagomJwtAuthenticator(JwtKeyIndex.empty()) {
+            @Override
+            public void setKeys(JwtKeyIndex keys) {
+                if (updates.incrementAndGet() == 1) throw new IllegalStateException("Keys are rejected");
+                super.setKeys(keys);
+            }
+        };
+        refresher = refresher(Duration.ZERO);
+        assertThatThrownBy(() -> refresher.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS))
+            .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(refresher.refresh().toCompletableFuture().get(5, TimeUnit.SECONDS).getSignatureConfigurations("rsa-kid")).hasSize(1);
+        assertThat(fetches.get()).isEqualTo(2);
+        assertThat(refresher.isReady()).isTrue();
+    }
+
+    @Test
+    @DisplayName("temporary file is removed if snapshot is not saved")
+    void testSnapshotFailure() throws IOException, JOSEException {
+        Path directory = Files.createTempDirectory("jwks");
+        // Snapshot can not replace a non-empty directory
+        Path snapshot = Files.createDirectory(directory.resolve("jwks.json"));
+        Path content = Files.createFile(snapshot.resolve("content"));
+        refresher = refresher(Duration.ZERO, snapshot);
+        refresher.load();
+        assertThat(authenticator.validateToken(sign(rsaKey)).getId()).isEqualTo("Alice");
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).containsExactly(snapshot);
+        }
+        Files.delete(content);
+        Files.delete(snapshot);
+        Files.delete(directory);
+    }
+
+    @Test
+    @DisplayName("load is failed at deadline if JWK set does not respond")
+    void testDeadline() throws MalformedURLException {
+        refresher = new JwksRefresher(
+            authenticator, singletonList(new URL(JWKS_URL)), JwtKeyIndex.empty(), url -> new CompletableFuture<>(),
+            Executors.newSingleThreadScheduledExecutor(), Duration.ZERO
+        );
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> refresher.load(Duration.ofMillis(200))).isInstanceOf(KeySourceException.class);
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        assertThat(refresher.isReady()).isFalse();
+    }
+
+    private JwksRefresher refresher(Duration minRefetchInterval) throws MalformedURLException {
+        return refresher(minRefetchInterval, null);
+    }
+
+    private JwksRefresher refresher(Duration minRefetchInterval, Path snapshot, String... otherUrls) throws MalformedURLException {
+        JwksFetcher fetcher = url -> {
+            fetches.incrementAndGet();
+            CompletableFuture<String> result = new CompletableFuture<>();
+            String json = (url.toString().equals(JWKS_URL) ? jwks : other).get();
+            if (json != null) result.complete(json);
+            else result.completeExceptionally(new IllegalStateException("JWKS is unavailable"));
+            return result;
+        };
+        List<URL> urls = new ArrayList<>();
+        urls.add(new URL(JWKS_URL));
+        for (String otherUrl : otherUrls) {
+            urls.add(new URL(otherUrl));
+        }
+        return new JwksRefresher(
+            authenticator, urls, JwtKeyIndex.empty(), fetcher,
+            Executors.newSingleThreadScheduledExecutor(), minRefetchInterval, snapshot
+        );
+    }
+
+    private String sign(RSAKey key) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(RS256).keyID(key.getKeyID()).build(), claims());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private String sign(ECKey key) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(ES256).keyID(key.getKeyID()).build(), claims());
+        jwt.sign(new ECDSASigner(key));
+        return jwt.serialize();
+    }
+
+    private static JWTClaimsSet claims() {
+        return new JWTClaimsSet.Builder().issuer("https://pac4j.org").subject("Alice").build();
+    }
+}
@@ -0,0 +1,113 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigRenderOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.lagom.metrics.HdrHistogramSecurityMetrics;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+
+import static com.nimbusds.jose.JWSAlgorithm.RS256;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of key selection by {@link JwtKeyIndex} in {@link LagomJwtAuthenticator}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class JwtKeyIndexTest {
+
+    private LagomJwtAuthenticator authenticator;
+
+    private RSAKey rsaKey;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        Config config = ConfigFactory.load();
+        authenticator = JwtAuthenticatorHelper.parseLagom(config.getConfig("pac4j.lagom.jwt.authenticator"));
+        rsaKey = RSAKey.parse(config.getConfig("pac4j.lagom.jwt.generator.sign.rsa.signature.jwk").root().render(ConfigRenderOptions.concise()));
+    }
+
+    @Test
+    @DisplayName("keys are indexed by kid")
+    void testIndex() {
+        assertThat(authenticator.getKeys().getSignatureConfigurations()).hasSize(3);
+        assertThat(authenticator.getKeys().getSignatureConfigurations("rsa-kid")).hasSize(1);
+        assertThat(authenticator.getKeys().getSignatureConfigurations("unknown-kid")).isNull();
+        assertThat(authenticator.getKeys().getEncryptionConfigurations("ec-kid")).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("removed key is detected by kid")
+    void testContainsKeysOf() {
+        JwtKeyIndex keys = authenticator.getKeys();
+        JwtKeyIndex.Builder withoutRsa = JwtKeyIndex.builder();
+        for (int i = 0; i < keys.getSignatureConfigurations().size(); i++) {
+            String keyId = keys.getSignatureKeyId(keys.getSignatureConfigurations().get(i));
+            if (!"rsa-kid".equals(keyId)) withoutRsa.signature(keyId, keys.getSignatureConfigurations().get(i));
+        }
+        keys.getEncryptionConfigurations().forEach(encryption -> withoutRsa.encryption(null, encryption));
+
+        assertThat(JwtKeyIndex.builder().addAll(keys).build().containsKeysOf(keys)).isTrue();
+        assertThat(keys.containsKeysOf(JwtKeyIndex.empty())).isTrue();
+        assertThat(withoutRsa.build().containsKeysOf(keys)).isFalse();
+        assertThat(JwtKeyIndex.empty().containsKeysOf(keys)).isFalse();
+    }
+
+    @Test
+    @DisplayName("token with known kid is verified without full scan")
+    void testIndexedLookup() throws JOSEException {
+        assertThat(authenticator.validateToken(sign("rsa-kid")).getId()).isEqualTo("Alice");
+        assertThat(authenticator.getIndexedLookupCount()).isEqualTo(1);
+        assertThat(authenticator.getFullScanCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("token without kid or with unknown kid is verified by full scan")
+    void testFullScan() throws JOSEException {
+        assertThat(authenticator.validateToken(sign(null)).getId()).isEqualTo("Alice");
+        assertThat(authenticator.validateToken(sign("unknown-kid")).getId()).isEqualTo("Alice");
+        assertThat(authenticator.getIndexedLookupCount()).isZero();
+        assertThat(authenticator.getFullScanCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("token with kid of key not supporting alg is verified by full scan")
+    void testUnsupportedAlgorithm() throws JOSEException {
+        assertThat(authenticator.validateToken(sign("ec-kid")).getId()).isEqualTo("Alice");
+        assertThat(authenticator.getIndexedLookupCount()).isZero();
+        assertThat(authenticator.getFullScanCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("verified tokens are reported to metrics by key ID")
+    void testMetrics() throws JOSEException {
+        HdrHistogramSecurityMetrics metrics = new HdrHistogramSecurityMetrics();
+        authenticator.setSecurityMetrics(metrics);
+
+        authenticator.validateToken(sign("rsa-kid"));
+        authenticator.validateToken(sign(null));
+
+        assertThat(metrics.getVerificationCount("rsa-kid")).isEqualTo(2);
+    }
+
+    private String sign(String keyId) throws JOSEException {
+        SignedJWT jwt = new SignedJWT(
+            new JWSHeader.Builder(RS256).keyID(keyId).build(),
+            new JWTClaimsSet.Builder().issuer("https://pac4j.org").subject("Alice").build()
+        );
+        jwt.sign(new RSASSASigner(rsaKey));
+        return jwt.serialize();
+    }
+}
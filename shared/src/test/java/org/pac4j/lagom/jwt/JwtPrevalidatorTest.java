@@ -0,0 +1,137 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.lagom.metrics.HdrHistogramSecurityMetrics;
+import org.pac4j.lagom.metrics.SecurityMetrics.TokenRejection;
+
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link JwtPrevalidator} in {@link LagomJwtAuthenticator}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class JwtPrevalidatorTest {
+
+    private Config config;
+
+    private LagomJwtAuthenticator authenticator;
+
+    private JwtPrevalidator prevalidator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        config = ConfigFactory.load().getConfig("pac4j.lagom.jwt");
+        authenticator = JwtAuthenticatorHelper.parseLagom(
+            ConfigFactory.parseString("prevalidation {\n"
+                + "  max-length = 2048, clock-skew = 30s, algorithms = [RS256, ES256]\n"
+                + "  encryption-algorithms = [dir, RSA-OAEP-256], encryption-methods = [A256GCM, A128GCM]\n"
+                + "  issuers = [\"https://pac4j.org\"], audiences = [lagom]\n"
+                + "}").withFallback(config.getConfig("authenticator"))
+        );
+        prevalidator = authenticator.getPrevalidator();
+    }
+
+    @Test
+    @DisplayName("valid signed and encrypted tokens pass checks")
+    void testValidTokens() throws ParseException, JOSEException {
+        String signed = token(config.getConfig("generator.sign.rsa"), claims().build());
+        String encrypted = token(config.getConfig("generator.encrypt.rsa").withFallback(config.getConfig("generator.sign.ec")), claims().build());
+
+        assertThat(prevalidator.check(signed)).isNull();
+        assertThat(prevalidator.check(encrypted)).isNull();
+        assertThat(authenticator.validateToken(signed).getId()).isEqualTo("Alice");
+        assertThat(authenticator.validateToken(encrypted).getId()).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("malformed and oversized tokens are rejected")
+    void testStructure() {
+        String header = encode("{\"alg\":\"RS256\"}");
+        String payload = encode("{\"sub\":\"Alice\"}");
+
+        assertThat(prevalidator.check(header + "." + payload + "." + repeat('A', 2048))).isEqualTo(TokenRejection.OVERSIZED);
+        assertThat(prevalidator.check("not a token")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(header + "." + payload)).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(header + "." + payload + ".c2ln.c2ln.c2ln")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(header + "." + payload + ".")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(header + "." + payload + ".c2ln+")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(encode("RS256") + "." + payload + ".c2ln")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(encode("{\"typ\":\"JWT\"}") + "." + payload + ".c2ln")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(header + "." + encode("[1]") + ".c2ln")).isEqualTo(TokenRejection.MALFORMED);
+        assertThat(prevalidator.check(encode("{\"alg\":\"dir\",\"enc\":\"A256GCM\"}") + "..aXY..dGFn")).isEqualTo(TokenRejection.MALFORMED);
+    }
+
+    @Test
+    @DisplayName("algorithms out of allowlists are rejected")
+    void testAlgorithms() throws ParseException, JOSEException {
+        String payload = encode("{\"sub\":\"Alice\"}");
+
+        assertThat(prevalidator.check(token(config.getConfig("generator.sign.oct"), claims().build()))).isEqualTo(TokenRejection.ALGORITHM);
+        assertThat(prevalidator.check(encode("{\"alg\":\"none\"}") + "." + payload + ".")).isEqualTo(TokenRejection.ALGORITHM);
+        assertThat(prevalidator.check(encode("{\"alg\":\"dir\",\"enc\":\"A192GCM\"}") + "..aXY.Y2lwaGVy.dGFn")).isEqualTo(TokenRejection.ALGORITHM);
+        assertThat(prevalidator.check(encode("{\"alg\":\"A128KW\",\"enc\":\"A256GCM\"}") + ".a2V5.aXY.Y2lwaGVy.dGFn")).isEqualTo(TokenRejection.ALGORITHM);
+    }
+
+    @Test
+    @DisplayName("claims are checked before verification of signature and rejections are counted")
+    void testClaims() throws ParseException, JOSEException {
+        HdrHistogramSecurityMetrics metrics = new HdrHistogramSecurityMetrics();
+        authenticator.setSecurityMetrics(metrics);
+        long now = System.currentTimeMillis();
+        Config rsa = config.getConfig("generator.sign.rsa");
+
+        String expired = token(rsa, claims().expirationTime(new Date(now - 60_000L)).build());
+        assertThat(prevalidator.check(token(rsa, claims().expirationTime(new Date(now - 10_000L)).build()))).isNull();
+        assertThat(prevalidator.check(expired)).isEqualTo(TokenRejection.EXPIRED);
+        assertThat(prevalidator.check(token(rsa, claims().notBeforeTime(new Date(now + 10_000L)).build()))).isNull();
+        assertThat(prevalidator.check(token(rsa, claims().notBeforeTime(new Date(now + 60_000L)).build()))).isEqualTo(TokenRejection.NOT_YET_VALID);
+        assertThat(prevalidator.check(token(rsa, claims().issuer("https://example.org").build()))).isEqualTo(TokenRejection.ISSUER);
+        assertThat(prevalidator.check(token(rsa, claims().audience("other").build()))).isEqualTo(TokenRejection.AUDIENCE);
+
+        // Signature is not verified, the same claims are rejected with any signature
+        assertThat(prevalidator.check(expired.substring(0, expired.lastIndexOf('.') + 1) + "c2ln")).isEqualTo(TokenRejection.EXPIRED);
+
+        assertThat(authenticator.validateToken(expired)).isNull();
+        assertThat(metrics.getRejectionCount(TokenRejection.EXPIRED)).isEqualTo(1);
+        assertThat(metrics.getVerificationCount("rsa-kid")).isZero();
+    }
+
+    private static JWTClaimsSet.Builder claims() {
+        return new JWTClaimsSet.Builder()
+            .issuer("https://pac4j.org")
+            .subject("Alice")
+            .audience(Arrays.asList("lagom", "other"))
+            .expirationTime(new Date(System.currentTimeMillis() + 60_000L));
+    }
+
+    private static String token(Config generator, JWTClaimsSet claims) throws ParseException, JOSEException {
+        return JwtGeneratorHelper.parse(generator).generate(claims.getClaims());
+    }
+
+    private static String encode(String json) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
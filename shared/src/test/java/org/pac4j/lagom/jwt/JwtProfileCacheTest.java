@@ -0,0 +1,101 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pac4j.lagom.jwt.JwtTestFixture.authenticator;
+import static org.pac4j.lagom.jwt.JwtTestFixture.claims;
+import static org.pac4j.lagom.jwt.JwtTestFixture.generator;
+
+/**
+ * Test of {@link JwtProfileCache} in {@link LagomJwtAuthenticator}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class JwtProfileCacheTest {
+
+    private LagomJwtAuthenticator authenticator;
+
+    private JwtGenerator<CommonProfile> generator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        authenticator = authenticator("cache { maximum-size = 100, ttl = 1m }");
+        generator = generator();
+    }
+
+    @Test
+    @DisplayName("second validation of the same token is served from cache")
+    void testCacheHit() {
+        String token = generator.generate(claims("Alice", new Date(System.currentTimeMillis() + 60_000L)));
+
+        CommonProfile first = authenticator.validateToken(token);
+        CommonProfile second = authenticator.validateToken(token);
+
+        assertThat(first.getId()).isEqualTo("Alice");
+        assertThat(second.getId()).isEqualTo("Alice");
+        assertThat(second).isNotSameAs(first);
+        assertThat(authenticator.getProfileCache().stats().missCount()).isEqualTo(1);
+        assertThat(authenticator.getProfileCache().stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("expired token is not cached")
+    void testExpiredToken() {
+        String token = generator.generate(claims("Bob", new Date(System.currentTimeMillis() - 60_000L)));
+
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.getProfileCache().stats().hitCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("removal of a key drops cached tokens, addition of a key keeps them")
+    void testKeyRemoval() {
+        String token = generator.generate(claims("Dave", new Date(System.currentTimeMillis() + 60_000L)));
+        JwtKeyIndex keys = authenticator.getKeys();
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Dave");
+
+        authenticator.setKeys(JwtKeyIndex.builder().addAll(keys).build());
+        assertThat(authenticator.getProfileCache().estimatedSize()).isEqualTo(1);
+
+        authenticator.setKeys(JwtKeyIndex.empty());
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.getProfileCache().stats().hitCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("mutation of returned profile does not leak into cache")
+    @SuppressWarnings("unchecked")
+    void testCopyOnHit() {
+        Map<String, Object> claims = new HashMap<>(claims("Carol", null));
+        claims.put("aud", Arrays.asList("orders", "payments"));
+        claims.put("address", Collections.singletonMap("country", "FR"));
+        String token = generator.generate(claims);
+
+        CommonProfile first = authenticator.validateToken(token);
+        first.addRole("admin");
+        ((List<String>) first.getAttribute("aud")).set(0, "admin");
+        ((Map<String, Object>) first.getAttribute("address")).put("country", "US");
+
+        CommonProfile second = authenticator.validateToken(token);
+        assertThat(second.getRoles()).doesNotContain("admin");
+        assertThat((List<String>) second.getAttribute("aud")).containsExactly("orders", "payments");
+        assertThat((Map<String, Object>) second.getAttribute("address")).containsEntry("country", "FR");
+    }
+}
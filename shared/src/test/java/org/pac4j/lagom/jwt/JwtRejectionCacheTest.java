@@ -0,0 +1,65 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pac4j.lagom.jwt.JwtTestFixture.authenticator;
+import static org.pac4j.lagom.jwt.JwtTestFixture.claims;
+import static org.pac4j.lagom.jwt.JwtTestFixture.generator;
+
+/**
+ * Test of {@link JwtRejectionCache} in {@link LagomJwtAuthenticator}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class JwtRejectionCacheTest {
+
+    private LagomJwtAuthenticator authenticator;
+
+    private JwtGenerator<CommonProfile> generator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        authenticator = authenticator("rejection-cache { maximum-size = 100, ttl = 1m }");
+        generator = generator();
+    }
+
+    @Test
+    @DisplayName("repeated invalid token is rejected from cache")
+    void testRepeatedRejection() {
+        String token = generator.generate(claims("Alice", new Date(System.currentTimeMillis() + 60_000L)));
+        String tampered = token.substring(0, token.length() - 4) + "AAAA";
+
+        assertThat(authenticator.validateToken(tampered)).isNull();
+        assertThat(authenticator.validateToken(tampered)).isNull();
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Alice");
+
+        assertThat(authenticator.getRejectionCache().stats().hitCount()).isEqualTo(1);
+        assertThat(authenticator.getRejectionCache().estimatedSize()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("rejected token is verified again after keys are replaced")
+    void testKeyRotation() {
+        JwtKeyIndex keys = authenticator.getKeys();
+        authenticator.setKeys(JwtKeyIndex.empty());
+        String token = generator.generate(claims("Bob", new Date(System.currentTimeMillis() + 60_000L)));
+
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.getRejectionCache().stats().hitCount()).isEqualTo(1);
+
+        authenticator.setKeys(keys);
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Bob");
+    }
+}
@@ -0,0 +1,89 @@
+package org.pac4j.lagom.jwt;
+
+import akka.actor.ActorSystem;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Fixture of tests of {@link LagomJwtAuthenticator}: authenticator and RSA generator from test configuration, claims of token.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+final class JwtTestFixture {
+
+    private JwtTestFixture() {
+    }
+
+    /**
+     * Authenticator from {@code pac4j.lagom.jwt.authenticator} of configuration.
+     *
+     * @param config    Configuration of test
+     * @param overrides Settings of authenticator overriding configuration (e.g. {@code cache { ... }})
+     * @return Authenticator
+     */
+    static LagomJwtAuthenticator authenticator(Config config, String overrides)
+        throws ParseException, JOSEException, MalformedURLException {
+        return authenticator(config, null, overrides);
+    }
+
+    static LagomJwtAuthenticator authenticator(Config config, ActorSystem system, String overrides)
+        throws ParseException, JOSEException, MalformedURLException {
+        return JwtAuthenticatorHelper.parseLagom(
+            ConfigFactory.parseString(overrides).withFallback(config.getConfig("pac4j.lagom.jwt.authenticator")),
+            system
+        );
+    }
+
+    static LagomJwtAuthenticator authenticator(String overrides)
+        throws ParseException, JOSEException, MalformedURLException {
+        return authenticator(ConfigFactory.load(), overrides);
+    }
+
+    /**
+     * Generator of tokens signed by RSA key of {@code pac4j.lagom.jwt.generator.sign.rsa} of configuration.
+     *
+     * @param config Configuration of test
+     * @return Generator
+     */
+    static JwtGenerator<CommonProfile> generator(Config config) throws ParseException, JOSEException {
+        return JwtGeneratorHelper.parse(config.getConfig("pac4j.lagom.jwt.generator.sign.rsa"));
+    }
+
+    static JwtGenerator<CommonProfile> generator() throws ParseException, JOSEException {
+        return generator(ConfigFactory.load());
+    }
+
+    static Map<String, Object> claims(String subject, Date expirationTime) {
+        return claims(subject, null, null, expirationTime);
+    }
+
+    /**
+     * Claims of token issued by {@code https://pac4j.org}.
+     *
+     * @param subject        Subject
+     * @param jti            ID of token or {@code null}
+     * @param issueTime      Issue time or {@code null}
+     * @param expirationTime Expiration time or {@code null}
+     * @return Claims
+     */
+    static Map<String, Object> claims(String subject, String jti, Date issueTime, Date expirationTime) {
+        return new JWTClaimsSet.Builder()
+            .issuer("https://pac4j.org")
+            .subject(subject)
+            .jwtID(jti)
+            .issueTime(issueTime)
+            .expirationTime(expirationTime)
+            .build()
+            .getClaims();
+    }
+}
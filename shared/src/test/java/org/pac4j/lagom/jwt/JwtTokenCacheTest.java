@@ -0,0 +1,86 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTParser;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of {@link JwtTokenCache}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class JwtTokenCacheTest {
+
+    private LagomJwtAuthenticator authenticator;
+
+    private JwtGenerator<CommonProfile> generator;
+
+    private CommonProfile service;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        Config config = ConfigFactory.load();
+        authenticator = JwtAuthenticatorHelper.parseLagom(config.getConfig("pac4j.lagom.jwt.authenticator"));
+        generator = JwtGeneratorHelper.parse(config.getConfig("pac4j.lagom.jwt.generator.sign.rsa"));
+        service = new CommonProfile();
+        service.setId("order-service");
+        service.addRole("service");
+    }
+
+    @Test
+    @DisplayName("token is minted once and reused")
+    void testReuse() throws ParseException {
+        JwtTokenCache tokens = new JwtTokenCache(generator, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+        String token = tokens.getToken(service);
+
+        assertThat(tokens.getToken(service)).isSameAs(token);
+        Date expirationTime = JWTParser.parse(token).getJWTClaimsSet().getExpirationTime();
+        assertThat(expirationTime).isAfter(new Date(System.currentTimeMillis() + Duration.ofMinutes(9).toMillis()));
+        CommonProfile profile = authenticator.validateToken(token);
+        assertThat(profile.getId()).isEqualTo("order-service");
+        assertThat(profile.getRoles()).containsExactly("service");
+    }
+
+    @Test
+    @DisplayName("token is renewed in background before expiration")
+    void testRenewal() throws InterruptedException {
+        JwtTokenCache tokens = new JwtTokenCache(generator, Duration.ofSeconds(10), Duration.ofMillis(9_950), 10, Runnable::run);
+
+        String token = tokens.getToken(service);
+        Thread.sleep(1_000L);
+
+        // renewal is started by this call, the current token is still valid
+        assertThat(tokens.getToken(service)).isEqualTo(token);
+        String renewed = tokens.getToken(service);
+        assertThat(renewed).isNotEqualTo(token);
+        assertThat(authenticator.validateToken(renewed).getId()).isEqualTo("order-service");
+    }
+
+    @Test
+    @DisplayName("rejected token is renewed once")
+    void testRenewRejected() {
+        JwtTokenCache tokens = new JwtTokenCache(generator, Duration.ofMinutes(10), Duration.ofMinutes(1));
+        String rejected = tokens.getToken(service);
+
+        String renewed = tokens.renewToken(service, rejected);
+
+        assertThat(renewed).isNotEqualTo(rejected);
+        assertThat(tokens.renewToken(service, rejected)).isSameAs(renewed);
+        assertThat(tokens.getToken(service)).isSameAs(renewed);
+    }
+}
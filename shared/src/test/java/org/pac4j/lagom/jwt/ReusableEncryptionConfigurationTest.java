@@ -0,0 +1,96 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.EncryptedJWT;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.jwt.config.encryption.EncryptionConfiguration;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of encryption configurations with reusable decrypters and routing of JWE by {@code kid} in {@link LagomJwtAuthenticator}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class ReusableEncryptionConfigurationTest {
+
+    private static final String[] KEYS = {"oct", "rsa", "ec"};
+
+    private Config config;
+
+    private LagomJwtAuthenticator authenticator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        config = ConfigFactory.load().getConfig("pac4j.lagom.jwt");
+        authenticator = JwtAuthenticatorHelper.parseLagom(config.getConfig("authenticator"));
+    }
+
+    @Test
+    @DisplayName("signed then encrypted token has kid in JWE header and is decrypted")
+    void testNestedToken() throws ParseException, JOSEException {
+        for (String key : KEYS) {
+            String token = token(key);
+
+            assertThat(EncryptedJWT.parse(token).getHeader().getKeyID()).as(key).isEqualTo(key + "-kid");
+            assertThat(authenticator.validateToken(token).getId()).as(key).isEqualTo("Alice");
+        }
+    }
+
+    @Test
+    @DisplayName("decrypter is built once per key")
+    void testReusableDecrypter() {
+        for (String key : KEYS) {
+            EncryptionConfiguration configuration = authenticator.getKeys().getEncryptionConfigurations(key + "-kid").get(0);
+            assertThat(configuration).isInstanceOfAny(ReusableSecretEncryptionConfiguration.class,
+                ReusableRSAEncryptionConfiguration.class, ReusableECEncryptionConfiguration.class);
+            assertThat(decrypter(configuration)).as(key).isSameAs(decrypter(configuration));
+        }
+    }
+
+    @Test
+    @DisplayName("token with kid of other key is decrypted by keys supporting its alg and enc")
+    void testUnknownKeyId() throws ParseException, JOSEException {
+        JwtKeyIndex keys = authenticator.getKeys();
+        authenticator.setKeys(JwtKeyIndex.builder()
+            .encryption("rsa-kid", keys.getEncryptionConfigurations("oct-kid").get(0))
+            .encryption("other-kid", keys.getEncryptionConfigurations("rsa-kid").get(0))
+            .signature("rsa-kid", keys.getSignatureConfigurations("rsa-kid").get(0))
+            .signature("oct-kid", keys.getSignatureConfigurations("oct-kid").get(0))
+            .build());
+
+        assertThat(authenticator.validateToken(token("rsa")).getId()).isEqualTo("Alice");
+        assertThat(authenticator.validateToken(token("oct")).getId()).isEqualTo("Alice");
+    }
+
+    private static Object decrypter(EncryptionConfiguration configuration) {
+        if (configuration instanceof ReusableSecretEncryptionConfiguration) {
+            return ((ReusableSecretEncryptionConfiguration) configuration).buildDecrypter();
+        } else if (configuration instanceof ReusableRSAEncryptionConfiguration) {
+            return ((ReusableRSAEncryptionConfiguration) configuration).buildDecrypter();
+        }
+        return ((ReusableECEncryptionConfiguration) configuration).buildDecrypter();
+    }
+
+    private String token(String key) throws ParseException, JOSEException {
+        Config generator = config.getConfig("generator.encrypt." + key).withFallback(config.getConfig("generator.sign." + key));
+        return JwtGeneratorHelper.parse(generator).generate(
+            new JWTClaimsSet.Builder()
+                .issuer("https://pac4j.org")
+                .subject("Alice")
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000L))
+                .build()
+                .getClaims()
+        );
+    }
+}
@@ -0,0 +1,107 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.jwt.config.signature.SignatureConfiguration;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test of signature configurations with reusable verifiers, parsed by {@link JwtAuthenticatorHelper}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class ReusableSignatureConfigurationTest {
+
+    private static final String[] KEYS = {"oct", "rsa", "ec"};
+
+    private Config config;
+
+    private LagomJwtAuthenticator authenticator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        config = ConfigFactory.load().getConfig("pac4j.lagom.jwt");
+        authenticator = JwtAuthenticatorHelper.parseLagom(config.getConfig("authenticator"));
+    }
+
+    @Test
+    @DisplayName("valid signature is accepted and tampered one is rejected")
+    void testVerify() throws ParseException, JOSEException {
+        for (String key : KEYS) {
+            verify(key);
+        }
+    }
+
+    @Test
+    @DisplayName("verifiers of threads do not interfere")
+    void testConcurrentVerify() throws Exception {
+        for (String key : KEYS) {
+            verifyConcurrently(key);
+        }
+    }
+
+    private void verify(String key) throws ParseException, JOSEException {
+        String token = token(key, "Alice");
+        String tampered = token.substring(0, token.lastIndexOf('.') + 1) + token(key, "Bob").substring(token.lastIndexOf('.') + 1);
+        SignatureConfiguration configuration = configuration(key);
+
+        assertThat(configuration).isInstanceOfAny(ReusableSecretSignatureConfiguration.class,
+            ReusableRSASignatureConfiguration.class, ReusableECSignatureConfiguration.class);
+        assertThat(configuration.verify(SignedJWT.parse(token))).as(key).isTrue();
+        assertThat(configuration.verify(SignedJWT.parse(tampered))).as(key).isFalse();
+        assertThat(configuration.verify(SignedJWT.parse(token))).as(key).isTrue();
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Alice");
+        assertThat(authenticator.validateToken(tampered)).isNull();
+    }
+
+    private void verifyConcurrently(String key) throws Exception {
+        SignatureConfiguration configuration = configuration(key);
+        String valid = token(key, "Alice");
+        String invalid = valid.substring(0, valid.length() - 8) + "AAAAAAAA";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String token = i % 2 == 0 ? valid : invalid;
+                results.add(executor.submit(() -> configuration.verify(SignedJWT.parse(token))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                assertThat(results.get(i).get()).as(key + " token " + i).isEqualTo(i % 2 == 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SignatureConfiguration configuration(String key) {
+        return authenticator.getKeys().getSignatureConfigurations(key + "-kid").get(0);
+    }
+
+    private String token(String key, String subject) throws ParseException, JOSEException {
+        return JwtGeneratorHelper.parse(config.getConfig("generator.sign." + key)).generate(
+            new JWTClaimsSet.Builder()
+                .issuer("https://pac4j.org")
+                .subject(subject)
+                .expirationTime(new Date(System.currentTimeMillis() + 60_000L))
+                .build()
+                .getClaims()
+        );
+    }
+}
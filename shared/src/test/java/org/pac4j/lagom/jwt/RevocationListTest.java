@@ -0,0 +1,112 @@
+package org.pac4j.lagom.jwt;
+
+import com.nimbusds.jose.JOSEException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.jwt.profile.JwtGenerator;
+
+import java.net.MalformedURLException;
+import java.text.ParseException;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pac4j.lagom.jwt.JwtTestFixture.authenticator;
+import static org.pac4j.lagom.jwt.JwtTestFixture.claims;
+import static org.pac4j.lagom.jwt.JwtTestFixture.generator;
+
+/**
+ * Test of {@link RevocationList} in {@link LagomJwtAuthenticator}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class RevocationListTest {
+
+    private final RevocationList revocations = new RevocationList();
+
+    private LagomJwtAuthenticator authenticator;
+
+    private JwtGenerator<CommonProfile> generator;
+
+    @BeforeEach
+    void beforeEach() throws ParseException, JOSEException, MalformedURLException {
+        authenticator = authenticator("cache { maximum-size = 100, ttl = 1m }");
+        authenticator.setRevocationList(revocations);
+        generator = generator();
+    }
+
+    @Test
+    @DisplayName("revoked token is rejected even if it is cached")
+    void testRevokedTokenId() {
+        long expiresAt = System.currentTimeMillis() + 60_000L;
+        String token = generator.generate(claims("Alice", "token-1", new Date(), new Date(expiresAt)));
+        String other = generator.generate(claims("Alice", "token-2", new Date(), new Date(expiresAt)));
+        assertThat(authenticator.validateToken(token).getId()).isEqualTo("Alice");
+
+        revocations.revoke(Revocation.ofTokenId("token-1", expiresAt));
+
+        assertThat(authenticator.validateToken(token)).isNull();
+        assertThat(authenticator.validateToken(other).getId()).isEqualTo("Alice");
+    }
+
+    @Test
+    @DisplayName("tokens of revoked subject issued before revocation are rejected")
+    void testRevokedSubject() {
+        long now = System.currentTimeMillis();
+        String before = generator.generate(claims("Bob", "token-3", new Date(now - 10_000L), new Date(now + 60_000L)));
+        revocations.revoke(new Revocation(Revocation.Type.SUBJECT, "Bob", now - 5_000L, now + 60_000L));
+        String after = generator.generate(claims("Bob", "token-4", new Date(now), new Date(now + 60_000L)));
+
+        assertThat(authenticator.validateToken(before)).isNull();
+        assertThat(authenticator.validateToken(after).getId()).isEqualTo("Bob");
+    }
+
+    @Test
+    @DisplayName("revocation is forgotten at its expiration")
+    void testExpiration() {
+        long now = System.currentTimeMillis();
+        revocations.revoke(Revocation.ofTokenId("expired", now - 1L));
+        revocations.revoke(Revocation.ofTokenId("expiring", now + 50L));
+        revocations.revoke(Revocation.ofTokenId("expiring", now + 50L));
+
+        assertThat(revocations.size()).isEqualTo(1);
+        assertThat(revocations.isRevoked("expiring", null, null)).isTrue();
+        assertThat(revocations.isRevoked("expired", null, null)).isFalse();
+
+        await(now + 100L);
+        assertThat(revocations.isRevoked("expiring", null, null)).isFalse();
+        revocations.prune();
+        assertThat(revocations.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("many revocations are looked up without false negatives")
+    void testManyEntries() {
+        long expiresAt = System.currentTimeMillis() + 60_000L;
+        for (int i = 0; i < 10_000; i += 2) {
+            revocations.revoke(Revocation.ofTokenId("jti-" + i, expiresAt));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            boolean revoked = revocations.isRevoked("jti-" + i, null, null);
+            if (i % 2 == 0) assertThat(revoked).as("jti-" + i).isTrue();
+            else if (revoked) falsePositives++;
+        }
+        assertThat(falsePositives).isZero();
+        assertThat(revocations.size()).isEqualTo(5_000);
+    }
+
+    private static void await(long time) {
+        while (System.currentTimeMillis() <= time) {
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
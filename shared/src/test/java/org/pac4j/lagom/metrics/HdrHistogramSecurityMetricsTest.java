@@ -0,0 +1,57 @@
+package org.pac4j.lagom.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.authorization.authorizer.RequireAnyRoleAuthorizer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.pac4j.lagom.metrics.SecurityMetrics.Outcome.ANONYMOUS;
+import static org.pac4j.lagom.metrics.SecurityMetrics.Outcome.AUTHENTICATED;
+import static org.pac4j.lagom.metrics.SecurityMetrics.Outcome.FORBIDDEN;
+
+/**
+ * Test of {@link HdrHistogramSecurityMetrics}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class HdrHistogramSecurityMetricsTest {
+
+    @Test
+    @DisplayName("outcomes are counted per client")
+    void testOutcomes() {
+        HdrHistogramSecurityMetrics metrics = new HdrHistogramSecurityMetrics();
+
+        metrics.outcome("header", AUTHENTICATED);
+        metrics.outcome("header", AUTHENTICATED);
+        metrics.outcome("cookie", ANONYMOUS);
+
+        assertThat(metrics.getOutcomeCount("header", AUTHENTICATED)).isEqualTo(2);
+        assertThat(metrics.getOutcomeCount("header", ANONYMOUS)).isZero();
+        assertThat(metrics.getOutcomeCount("cookie", ANONYMOUS)).isEqualTo(1);
+        assertThat(metrics.getOutcomeCount("unknown", FORBIDDEN)).isZero();
+    }
+
+    @Test
+    @DisplayName("latencies are read by interval")
+    void testLatency() {
+        HdrHistogramSecurityMetrics metrics = new HdrHistogramSecurityMetrics();
+
+        metrics.credentialsExtracted("header", 1_000L);
+        metrics.credentialsExtracted("header", 3_000L);
+
+        Histogram first = metrics.getCredentialsLatency("header");
+        assertThat(first.getTotalCount()).isEqualTo(2);
+        assertThat(first.getMaxValue()).isBetween(3_000L, 3_010L);
+        assertThat(metrics.getCredentialsLatency("header").getTotalCount()).isZero();
+        assertThat(metrics.getProfileLatency("header").getTotalCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("authorizer is named by simple name of its class")
+    void testAuthorizerName() {
+        assertThat(SecurityMetrics.authorizerName(new RequireAnyRoleAuthorizer<>("user"))).isEqualTo("RequireAnyRoleAuthorizer");
+        assertThat(SecurityMetrics.authorizerName(null)).isEqualTo("null");
+    }
+}
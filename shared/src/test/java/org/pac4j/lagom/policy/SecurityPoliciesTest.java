@@ -0,0 +1,79 @@
+package org.pac4j.lagom.policy;
+
+import com.typesafe.config.ConfigFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.authorization.authorizer.AndAuthorizer;
+import org.pac4j.core.authorization.authorizer.RequireAnyRoleAuthorizer;
+import org.pac4j.core.client.direct.AnonymousClient;
+import org.pac4j.core.config.Config;
+import org.pac4j.core.exception.TechnicalException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.pac4j.core.authorization.authorizer.IsAuthenticatedAuthorizer.isAuthenticated;
+
+/**
+ * Test of {@link SecurityPolicies}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class SecurityPoliciesTest {
+
+    private Config securityConfig;
+
+    @BeforeEach
+    void beforeEach() {
+        AnonymousClient header = new AnonymousClient();
+        header.setName("header");
+        AnonymousClient cookie = new AnonymousClient();
+        cookie.setName("cookie");
+        securityConfig = new Config(header, cookie);
+        securityConfig.getClients().setDefaultSecurityClients("header");
+        securityConfig.addAuthorizer("_authenticated_", isAuthenticated());
+        securityConfig.addAuthorizer("admin", new RequireAnyRoleAuthorizer<>("admin"));
+    }
+
+    @Test
+    @DisplayName("clients and authorizers are resolved when policies are compiled")
+    void testCompile() {
+        SecurityPolicies policies = compile(
+            "\"TestService.hello\" { clients = \"header, cookie\", authorizer = \"admin\" }\n"
+                + "\"TestService.ping\" {}\n"
+                + "\"TestService.admin\" { clients = cookie, authorizer = \"_authenticated_,admin\" }"
+        );
+
+        SecurityPolicy hello = policies.get("TestService.hello");
+        assertThat(hello.getClients().getClients()).containsExactly(
+            securityConfig.getClients().findClient("header"), securityConfig.getClients().findClient("cookie"));
+        assertThat(hello.getAuthorizer()).isSameAs(securityConfig.getAuthorizers().get("admin"));
+        assertThat(policies.get("TestService.hello")).isSameAs(hello);
+
+        SecurityPolicy ping = policies.get("TestService.ping");
+        assertThat(ping.getClients().getName()).isEqualTo("header");
+        assertThat(ping.requiresAuthorization()).isFalse();
+
+        assertThat(policies.get("TestService.admin").getAuthorizer()).isInstanceOf(AndAuthorizer.class);
+        assertThat(policies.contains("TestService.unknown")).isFalse();
+        assertThatThrownBy(() -> policies.get("TestService.unknown")).isInstanceOf(TechnicalException.class);
+    }
+
+    @Test
+    @DisplayName("unknown names fail the compilation")
+    void testUnknownNames() {
+        assertThatThrownBy(() -> compile("hello { clients = \"header,jwt\" }"))
+            .isInstanceOf(TechnicalException.class)
+            .hasMessageContaining("hello");
+        assertThatThrownBy(() -> compile("hello { authorizer = \"admin,superuser\" }"))
+            .isInstanceOf(TechnicalException.class)
+            .hasMessageContaining("superuser");
+        assertThatThrownBy(() -> compile("hello = header"))
+            .isInstanceOf(TechnicalException.class);
+    }
+
+    private SecurityPolicies compile(String conf) {
+        return SecurityPolicies.compile(ConfigFactory.parseString(conf), securityConfig);
+    }
+}
@@ -0,0 +1,180 @@
+package org.pac4j.lagom.serialization;
+
+import akka.actor.ActorSystem;
+import akka.serialization.Serialization;
+import akka.serialization.SerializationExtension;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.CommonProfile;
+import org.pac4j.core.profile.Gender;
+import org.pac4j.jwt.profile.JwtProfile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of {@link ProfileSerializer}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class ProfileSerializerTest {
+
+    private static final AtomicBoolean PROBED = new AtomicBoolean();
+
+    private final ProfileSerializer serializer = new ProfileSerializer();
+
+    private JwtProfile profile;
+
+    @BeforeEach
+    void beforeEach() {
+        profile = new JwtProfile();
+        profile.build("Alice", Collections.singletonMap("email", "alice@example.org"));
+        profile.addAttribute("iss", "https://pac4j.org");
+        profile.addAttribute("exp", new Date(1_700_000_000_000L));
+        profile.addAttribute("locale", Locale.CANADA_FRENCH);
+        profile.addAttribute("profile_url", URI.create("https://pac4j.org/alice"));
+        profile.addAttribute("gender", Gender.FEMALE);
+        profile.addAttribute("level", 42);
+        profile.addAttribute("score", 1.5d);
+        profile.addAttribute("aud", Arrays.asList("orders", "payments", "orders"));
+        profile.addAuthenticationAttribute("mfa", true);
+        profile.addRoles(Arrays.asList("manager", "user"));
+        profile.addPermission("orders:read");
+        profile.setClientName("jwt");
+        profile.setLinkedId("alice@example.org");
+        profile.setRemembered(true);
+    }
+
+    @Test
+    @DisplayName("profile is restored with its class, roles, permissions and attributes")
+    void testRoundTrip() throws NotSerializableException {
+        byte[] bytes = serializer.toBinary(profile);
+        CommonProfile restored = (CommonProfile) serializer.fromBinary(bytes, serializer.manifest(profile));
+
+        assertThat(restored).isInstanceOf(JwtProfile.class);
+        assertThat(restored.getId()).isEqualTo("Alice");
+        assertThat(restored.getRoles()).containsExactlyInAnyOrder("manager", "user");
+        assertThat(restored.getPermissions()).containsExactly("orders:read");
+        assertThat(restored.getAttributes()).isEqualTo(profile.getAttributes());
+        assertThat(restored.getAuthenticationAttributes()).isEqualTo(profile.getAuthenticationAttributes());
+        assertThat(restored.getClientName()).isEqualTo("jwt");
+        assertThat(restored.getLinkedId()).isEqualTo("alice@example.org");
+        assertThat(restored.isRemembered()).isTrue();
+    }
+
+    @Test
+    @DisplayName("profile is several times smaller than in Java serialization")
+    void testSize() throws IOException {
+        ByteArrayOutputStream java = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(java)) {
+            output.writeObject(profile);
+        }
+
+        assertThat(serializer.toBinary(profile).length * 4).isLessThan(java.size());
+    }
+
+    @Test
+    @DisplayName("unknown version is rejected")
+    void testUnknownVersion() {
+        byte[] bytes = serializer.toBinary(profile);
+        bytes[0] = ProfileCodec.VERSION + 1;
+
+        assertThatThrownBy(() -> serializer.fromBinary(bytes, serializer.manifest(profile)))
+            .isInstanceOf(NotSerializableException.class)
+            .hasMessageContaining("version");
+    }
+
+    @Test
+    @DisplayName("attribute value without compact encoding is not serialized")
+    void testUnsupportedValue() {
+        profile.addAttribute("nickname", Optional.of("Al"));
+
+        assertThatThrownBy(() -> serializer.toBinary(profile))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining(Optional.class.getName());
+    }
+
+    @Test
+    @DisplayName("Java serialized attribute value is rejected")
+    void testSerializedValue() {
+        CommonProfile empty = new CommonProfile();
+        empty.setId("Alice");
+        byte[] bytes = serializer.toBinary(empty);
+        // attributes: one attribute "sub" (reference to well-known name) with tag 13, then no authentication attributes
+        ByteArrayOutputStream withValue = new ByteArrayOutputStream();
+        withValue.write(bytes, 0, bytes.length - 2);
+        withValue.write(1);
+        withValue.write(2 + 4);
+        withValue.write(13);
+        withValue.write(0);
+
+        assertThatThrownBy(() -> serializer.fromBinary(withValue.toByteArray(), serializer.manifest(empty)))
+            .isInstanceOf(NotSerializableException.class)
+            .hasMessageContaining("tag 13");
+    }
+
+    @Test
+    @DisplayName("class of profile that is not a profile is neither initialized nor instantiated")
+    void testNotProfileClass() {
+        byte[] name = Probe.class.getName().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(ProfileCodec.VERSION);
+        // inline name of class, then nothing: decoding must fail before reading the rest
+        bytes.write(1);
+        bytes.write(name.length);
+        bytes.write(name, 0, name.length);
+
+        assertThatThrownBy(() -> serializer.fromBinary(bytes.toByteArray(), serializer.manifest(profile)))
+            .isInstanceOf(NotSerializableException.class)
+            .hasMessageContaining("is not a profile");
+        assertThatThrownBy(() -> serializer.fromBinary(new byte[] {ProfileCodec.VERSION, 1, 3, 'F', 'o', 'o'}, serializer.manifest(profile)))
+            .isInstanceOf(NotSerializableException.class)
+            .hasMessageContaining("Unknown class Foo");
+        assertThat(PROBED.get()).isFalse();
+    }
+
+    @Test
+    @DisplayName("serializer is bound to profiles by reference.conf")
+    void testBinding() throws Exception {
+        ActorSystem system = ActorSystem.create("ProfileSerializerTest");
+        try {
+            Serialization serialization = SerializationExtension.get(system);
+
+            assertThat(serialization.findSerializerFor(profile)).isInstanceOf(ProfileSerializer.class);
+            assertThat(serialization.findSerializerFor(new CommonProfile())).isInstanceOf(ProfileSerializer.class);
+        } finally {
+            system.terminate();
+            system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Not a profile: neither its initializer nor its constructor may run on decoding.
+     */
+    public static final class Probe {
+
+        static {
+            PROBED.set(true);
+        }
+
+        public Probe() {
+            PROBED.set(true);
+        }
+    }
+}
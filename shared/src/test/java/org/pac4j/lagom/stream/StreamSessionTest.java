@@ -0,0 +1,140 @@
+package org.pac4j.lagom.stream;
+
+import akka.actor.ActorSystem;
+import akka.stream.ActorMaterializer;
+import akka.stream.Materializer;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.pac4j.core.profile.AnonymousProfile;
+import org.pac4j.core.profile.CommonProfile;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Test of {@link StreamSession}.
+ *
+ * @author Sergey Morgunov
+ * @since 2.2.2
+ */
+class StreamSessionTest {
+
+    private final Map<String, CommonProfile> tokens = new HashMap<>();
+
+    private final Set<CommonProfile> forbidden = new HashSet<>();
+
+    private ActorSystem system;
+
+    private Materializer materializer;
+
+    @BeforeEach
+    void beforeEach() {
+        system = ActorSystem.create("StreamSessionTest");
+        materializer = ActorMaterializer.create(system);
+    }
+
+    @AfterEach
+    void afterEach() throws Exception {
+        system.terminate();
+        system.getWhenTerminated().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    @DisplayName("stream is failed when profile expires")
+    void testExpiry() {
+        StreamSession session = session(profile("Alice", 300L));
+
+        CompletableFuture<?> stream = run(session);
+
+        assertThatThrownBy(() -> stream.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(TokenExpired.class);
+    }
+
+    @Test
+    @DisplayName("refreshed token of the same user prolongs stream")
+    void testRefresh() throws Exception {
+        StreamSession session = session(profile("Alice", 300L));
+        tokens.put("fresh", profile("Alice", 60_000L));
+
+        CompletableFuture<?> stream = run(session);
+
+        assertThat(session.refresh("fresh")).isTrue();
+        assertThatThrownBy(() -> stream.get(1, TimeUnit.SECONDS)).isInstanceOf(TimeoutException.class);
+        assertThat(session.getProfile()).isSameAs(tokens.get("fresh"));
+    }
+
+    @Test
+    @DisplayName("token of other user, invalid token or refresh of anonymous stream is rejected")
+    void testRejectedRefresh() {
+        CommonProfile alice = profile("Alice", 60_000L);
+        StreamSession session = session(alice);
+        tokens.put("bob", profile("Bob", 120_000L));
+        tokens.put("earlier", profile("Alice", 30_000L));
+
+        assertThat(session.refresh("bob")).isFalse();
+        assertThat(session.refresh("earlier")).isFalse();
+        assertThat(session.refresh("unknown")).isFalse();
+        assertThat(session.getProfile()).isSameAs(alice);
+        assertThat(session(new AnonymousProfile()).refresh("bob")).isFalse();
+    }
+
+    @Test
+    @DisplayName("refreshed token of a user who is not authorized anymore is rejected")
+    void testUnauthorizedRefresh() {
+        CommonProfile alice = profile("Alice", 60_000L);
+        StreamSession session = session(alice);
+        tokens.put("fresh", profile("Alice", 120_000L));
+        forbidden.add(tokens.get("fresh"));
+
+        assertThat(session.refresh("fresh")).isFalse();
+        assertThat(session.getProfile()).isSameAs(alice);
+        assertThat(session.getExpiresAt()).isEqualTo(((Date) alice.getAttribute("exp")).getTime());
+    }
+
+    @Test
+    @DisplayName("profile without exp never expires")
+    void testNoExpiration() {
+        StreamSession session = session(profile("Alice", null));
+
+        assertThat(session.getExpiresAt()).isEqualTo(Long.MAX_VALUE);
+        assertThatThrownBy(() -> run(session).get(500, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+    }
+
+    private StreamSession session(CommonProfile profile) {
+        return new StreamSession(profile, tokens::get, refreshed -> !forbidden.contains(refreshed), TokenExpired::new);
+    }
+
+    private CompletableFuture<?> run(StreamSession session) {
+        return Source.maybe()
+            .via(session.expiry())
+            .runWith(Sink.ignore(), materializer)
+            .toCompletableFuture();
+    }
+
+    private static CommonProfile profile(String id, Long expiresIn) {
+        CommonProfile profile = new CommonProfile();
+        profile.setId(id);
+        if (expiresIn != null) profile.addAttribute("exp", new Date(System.currentTimeMillis() + expiresIn));
+        return profile;
+    }
+
+    private static final class TokenExpired extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,60 @@
+package org.pac4j.lagom.scaladsl
+
+import java.net.URI
+
+import com.lightbend.lagom.scaladsl.api.transport.RequestHeader
+import org.pac4j.lagom.scaladsl.transport.Unauthorized
+import org.scalatest.{Matchers, WordSpec}
+import play.api.http.HeaderNames.COOKIE
+
+import scala.collection.JavaConverters._
+
+/**
+  * Test of [[LagomWebContext]] and [[Unauthorized]].
+  *
+  * @author Sergey Morgunov
+  * @since 2.2.2
+  */
+class LagomWebContextTest extends WordSpec with Matchers {
+
+  private val requestHeader = RequestHeader.Default
+    .withUri(URI.create("/test?token=abc&scope=read&scope=write"))
+    .withHeader(COOKIE, "auth=Alice; aaa=bbb")
+    .withHeader("X-Test", "test")
+
+  "LagomWebContext" should {
+
+    "return null for missing header" in {
+      val context = new LagomWebContext(requestHeader)
+      context.getRequestHeader("X-Test") should ===("test")
+      context.getRequestHeader("X-Missing") shouldBe null
+      context.getRequestHeader("X-Missing") shouldBe null
+    }
+
+    "parse cookies and parameters once" in {
+      val context = new LagomWebContext(requestHeader)
+      val cookies = context.getRequestCookies
+      cookies.asScala.map(_.getName).toList should ===(List("auth", "aaa"))
+      context.getRequestCookies should be theSameInstanceAs cookies
+      context.getRequestParameter("token") should ===("abc")
+      context.getRequestParameters.get("scope").toList should ===(List("read", "write"))
+      context.getRequestParameters should be theSameInstanceAs context.getRequestParameters
+    }
+
+    "have no cookies and parameters for request without them" in {
+      val context = new LagomWebContext(RequestHeader.Default)
+      context.getRequestCookies shouldBe empty
+      context.getRequestParameters shouldBe empty
+      context.getRequestParameter("token") shouldBe null
+    }
+  }
+
+  "Unauthorized" should {
+
+    "have no stack trace" in {
+      Unauthorized("Unauthorized").getStackTrace shouldBe empty
+      Unauthorized(new IllegalStateException("test")).getStackTrace shouldBe empty
+    }
+  }
+
+}
@@ -24,9 +24,14 @@ trait TestService extends Service {
   def headerAuthenticate: ServiceCall[NotUsed, String]
   def headerAuthorize: ServiceCall[NotUsed, String]
   def headerAuthorizeConfig: ServiceCall[NotUsed, String]
+  def headerAuthenticateAsync: ServiceCall[NotUsed, String]
+  def headerAuthorizeAsync: ServiceCall[NotUsed, String]
 
   def headerJwtAuthenticate: ServiceCall[NotUsed, String]
 
+  def chainAuthenticate: ServiceCall[NotUsed, String]
+  def chainAuthorize: ServiceCall[NotUsed, String]
+
   override def descriptor: Descriptor = named("default").withCalls(
     pathCall("/default/authenticate", this.defaultAuthenticate),
     pathCall("/default/authorize", this.defaultAuthorize),
@@ -38,7 +43,11 @@ trait TestService extends Service {
     pathCall("/header/authenticate", this.headerAuthenticate),
     pathCall("/header/authorize", this.headerAuthorize),
     pathCall("/header/authorize/config", this.headerAuthorizeConfig),
-    pathCall("/header/jwt/authenticate", this.headerJwtAuthenticate)
+    pathCall("/header/authenticate/async", this.headerAuthenticateAsync),
+    pathCall("/header/authorize/async", this.headerAuthorizeAsync),
+    pathCall("/header/jwt/authenticate", this.headerJwtAuthenticate),
+    pathCall("/chain/authenticate", this.chainAuthenticate),
+    pathCall("/chain/authorize", this.chainAuthorize)
   )
     .withAutoAcl(true)
     .withExceptionSerializer(Pac4jExceptionSerializer())
@@ -61,8 +61,24 @@ class TestServiceImpl(override val securityConfig: Config) extends TestService w
     authorize(HEADER_CLIENT, authorizerName, (profile: CommonProfile) => ServerServiceCall { _: NotUsed => Future.successful(profile.getId) })
   }
 
+  override def headerAuthenticateAsync: ServiceCall[NotUsed, String] = {
+    authenticateAsync(HEADER_CLIENT, (profile: CommonProfile) => ServerServiceCall { _: NotUsed => Future.successful(profile.getId) })
+  }
+
+  override def headerAuthorizeAsync: ServiceCall[NotUsed, String] = {
+    authorizeAsync(HEADER_CLIENT, isAuthenticated[CommonProfile](), (profile: CommonProfile) => ServerServiceCall { _: NotUsed => Future.successful(profile.getId) })
+  }
+
   override def headerJwtAuthenticate: ServiceCall[NotUsed, String] = {
     authenticate(HEADER_JWT_CLIENT, (profile: CommonProfile) => ServerServiceCall { _: NotUsed => Future.successful(profile.getId) })
   }
 
+  override def chainAuthenticate: ServiceCall[NotUsed, String] = {
+    authenticate(s"$HEADER_JWT_CLIENT,$COOKIE_CLIENT", (profile: CommonProfile) => ServerServiceCall { _: NotUsed => Future.successful(profile.getId) })
+  }
+
+  override def chainAuthorize: ServiceCall[NotUsed, String] = {
+    authorize(s"$HEADER_JWT_CLIENT,$COOKIE_CLIENT", isAuthenticated[CommonProfile](), (profile: CommonProfile) => ServerServiceCall { _: NotUsed => Future.successful(profile.getId) })
+  }
+
 }
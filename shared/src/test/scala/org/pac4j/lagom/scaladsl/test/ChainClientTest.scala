@@ -0,0 +1,92 @@
+package org.pac4j.lagom.scaladsl.test
+
+import com.lightbend.lagom.scaladsl.api.transport.RequestHeader
+import com.lightbend.lagom.scaladsl.server.{LagomApplication, LagomServer, LocalServiceLocator}
+import com.lightbend.lagom.scaladsl.testkit.ServiceTest
+import com.lightbend.lagom.scaladsl.testkit.ServiceTest.TestServer
+import com.nimbusds.jwt.JWTClaimsSet
+import com.softwaremill.macwire.wire
+import com.typesafe.config.ConfigFactory
+import org.pac4j.core.profile.CommonProfile
+import org.pac4j.jwt.profile.JwtGenerator
+import org.pac4j.lagom.jwt.JwtGeneratorHelper
+import org.pac4j.lagom.scaladsl.transport.RequestHeaderHelper.Pac4jRequestHeader
+import org.pac4j.lagom.scaladsl.transport.Unauthorized
+import org.pac4j.lagom.scaladsl.{TestModule, TestService, TestServiceImpl}
+import org.scalatest.{AsyncWordSpec, BeforeAndAfterAll, Matchers}
+import play.api.http.HeaderNames.COOKIE
+import play.api.libs.ws.ahc.AhcWSComponents
+
+/**
+  * Test of security logic for chain of clients
+  * ({@link org.pac4j.http.client.direct.HeaderClient} with JWT, then {@link org.pac4j.http.client.direct.CookieClient}).
+  *
+  * @author Sergey Morgunov
+  * @since 2.2.2
+  */
+class ChainClientTest extends AsyncWordSpec with Matchers with BeforeAndAfterAll {
+
+  lazy val server: TestServer[LagomApplication with LocalServiceLocator with AhcWSComponents] = {
+    ServiceTest.startServer(ServiceTest.defaultSetup.withCluster(false)) { ctx =>
+      new LagomApplication(ctx) with LocalServiceLocator with AhcWSComponents with TestModule {
+        override def lagomServer: LagomServer = serverFor[TestService](wire[TestServiceImpl])
+      }
+    }
+  }
+
+  lazy val service: TestService = server.serviceClient.implement[TestService]
+
+  private var jwtGenerator: JwtGenerator[CommonProfile] = _
+
+  "TestService" should {
+
+    "authenticate by anonymous" in {
+      service.chainAuthenticate.invoke.map { result =>
+        result should ===("anonymous")
+      }
+    }
+
+    "authenticate by first client (JWT)" in {
+      val jwt = jwtGenerator.generate(new JWTClaimsSet.Builder().subject("Alice").build.getClaims)
+      service.chainAuthenticate.handleRequestHeader((header: RequestHeader) => header.authorizationBearer(jwt).withHeader(COOKIE, "auth=Bob")).invoke.map { result =>
+        result should ===("Alice")
+      }
+    }
+
+    "authenticate by second client (cookie)" in {
+      service.chainAuthenticate.handleRequestHeader((header: RequestHeader) => header.withHeader(COOKIE, "auth=Bob")).invoke.map { result =>
+        result should ===("Bob")
+      }
+    }
+
+    "authenticate by second client if credentials of first one are invalid" in {
+      service.chainAuthenticate.handleRequestHeader((header: RequestHeader) => header.authorizationBearer("invalid").withHeader(COOKIE, "auth=Bob")).invoke.map { result =>
+        result should ===("Bob")
+      }
+    }
+
+    "not authorize by anonymous" in {
+      service.chainAuthorize.invoke.map { result =>
+        fail("authorize by anonymous should be forbidden")
+      } recoverWith {
+        case f: Unauthorized =>
+          f.getMessage should ===("Unauthorized")
+      }
+    }
+
+    "authorize by second client (cookie)" in {
+      service.chainAuthorize.handleRequestHeader((header: RequestHeader) => header.withHeader(COOKIE, "auth=Bob")).invoke.map { result =>
+        result should ===("Bob")
+      }
+    }
+
+  }
+
+  override protected def beforeAll(): Unit = {
+    server
+    jwtGenerator = JwtGeneratorHelper.parse(ConfigFactory.load.getConfig("pac4j.lagom.jwt.generator.sign.rsa"))
+  }
+
+  override protected def afterAll(): Unit = server.stop()
+
+}
@@ -75,6 +75,33 @@ class HeaderClientTest extends AsyncWordSpec with Matchers with BeforeAndAfterAl
       }
     }
 
+    "authenticate asynchronously by anonymous" in {
+      service.headerAuthenticateAsync.invoke.map { result =>
+        result should ===("anonymous")
+      }
+    }
+
+    "authenticate asynchronously by Alice" in {
+      service.headerAuthenticateAsync.handleRequestHeader((header: RequestHeader) => header.withHeader(AUTHORIZATION_HEADER, "Alice")).invoke.map { result =>
+        result should ===("Alice")
+      }
+    }
+
+    "not authorize asynchronously by anonymous" in {
+      service.headerAuthorizeAsync.invoke.map { result =>
+        fail("authorize by anonymous should be forbidden")
+      } recoverWith {
+        case f: Unauthorized =>
+          f.getMessage should ===("Unauthorized")
+      }
+    }
+
+    "authorize asynchronously by Alice" in {
+      service.headerAuthorizeAsync.handleRequestHeader((header: RequestHeader) => header.withHeader(AUTHORIZATION_HEADER, "Alice")).invoke.map { result =>
+        result should ===("Alice")
+      }
+    }
+
   }
 
   override protected def beforeAll(): Unit = server